@@ -0,0 +1,86 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joox.benchmarks;
+
+/**
+ * Generated test documents, modelled after the library document used in
+ * jOOX's unit tests.
+ */
+final class Documents {
+
+    /**
+     * The number of elements per <code>library</code> element, including the
+     * library itself.
+     */
+    static final int ELEMENTS_PER_LIBRARY = 55;
+
+    /**
+     * Generate a document of roughly the given size in bytes.
+     * <p>
+     * The document consists of a <code>document</code> root element containing
+     * <code>library</code> elements, each of which contains ten
+     * <code>book</code> elements and one <code>dvd</code> element.
+     */
+    static String library(int bytes) {
+        StringBuilder sb = new StringBuilder(bytes + 1024);
+        sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<document>\n");
+
+        for (int l = 0; sb.length() < bytes; l++)
+            library(sb, l);
+
+        sb.append("</document>\n");
+        return sb.toString();
+    }
+
+    /**
+     * Generate a document with at least the given number of elements.
+     *
+     * @see #library(int)
+     */
+    static String libraryWithElements(int elements) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<document>\n");
+
+        for (int l = 0; 1 + l * ELEMENTS_PER_LIBRARY < elements; l++)
+            library(sb, l);
+
+        sb.append("</document>\n");
+        return sb.toString();
+    }
+
+    private static void library(StringBuilder sb, int l) {
+        sb.append("  <library name=\"Library ").append(l).append("\">\n");
+        sb.append("    <books>\n");
+
+        for (int b = 1; b <= 10; b++) {
+            sb.append("      <book id=\"").append(b).append("\" lang=\"").append(b % 3 == 0 ? "de" : "en").append("\">\n");
+            sb.append("        <name>Book ").append(l).append('.').append(b).append("</name>\n");
+            sb.append("        <price>").append(b * 7 % 50).append(".95</price>\n");
+            sb.append("        <authors>\n");
+            sb.append("          <author>Author ").append(b % 4).append("</author>\n");
+            sb.append("        </authors>\n");
+            sb.append("      </book>\n");
+        }
+
+        sb.append("    </books>\n");
+        sb.append("    <dvds>\n");
+        sb.append("      <dvd id=\"11\">\n");
+        sb.append("        <name>DVD ").append(l).append("</name>\n");
+        sb.append("      </dvd>\n");
+        sb.append("    </dvds>\n");
+        sb.append("  </library>\n");
+    }
+
+    private Documents() {}
+}
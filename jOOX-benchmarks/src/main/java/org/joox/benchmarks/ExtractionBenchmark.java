@@ -0,0 +1,61 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joox.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Extract attributes and text content, and convert them to other types.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx8g" })
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ExtractionBenchmark {
+
+    @Benchmark
+    public List<String> attrs(LibraryState state) {
+        return state.books.attrs("lang");
+    }
+
+    @Benchmark
+    public List<String> texts(LibraryState state) {
+        return state.leaves.texts();
+    }
+
+    @Benchmark
+    public List<Integer> convertIds(LibraryState state) {
+        return state.books.ids(Integer.class);
+    }
+
+    @Benchmark
+    public List<Double> convertTexts(LibraryState state) {
+        return state.books.children("price").texts(Double.class);
+    }
+
+    @Benchmark
+    public List<Book> unmarshal(LibraryState state) {
+        return state.books.unmarshal(Book.class);
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joox.benchmarks;
+
+import static org.joox.JOOX.$;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.joox.FastFilter;
+import org.joox.JOOX;
+import org.joox.Match;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The filters and mappers of {@link JOOX}, applied to all elements of a
+ * document.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx8g" })
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class FilterBenchmark {
+
+    @Param({ "1000000" })
+    public int elements;
+
+    Match      all;
+    FastFilter attr;
+    FastFilter attrValue;
+    FastFilter ids;
+    FastFilter matchAttr;
+    FastFilter matchText;
+    FastFilter namespacePrefix;
+    FastFilter namespaceURI;
+
+    @Setup
+    public void setup() {
+        all = $(Documents.libraryWithElements(elements)).find();
+        attr = JOOX.attr("lang");
+        attrValue = JOOX.attr("lang", "de");
+        ids = JOOX.ids("3", "11");
+        matchAttr = JOOX.matchAttr("name", "Library 1.*");
+        matchText = JOOX.matchText("Author 1");
+        namespacePrefix = JOOX.namespacePrefix("ns");
+        namespaceURI = JOOX.namespaceURI("http://www.example.com");
+    }
+
+    @Benchmark
+    public Match attr() {
+        return all.filter(attr);
+    }
+
+    @Benchmark
+    public Match attrValue() {
+        return all.filter(attrValue);
+    }
+
+    @Benchmark
+    public Match ids() {
+        return all.filter(ids);
+    }
+
+    @Benchmark
+    public Match matchAttr() {
+        return all.filter(matchAttr);
+    }
+
+    @Benchmark
+    public Match matchText() {
+        return all.filter(matchText);
+    }
+
+    @Benchmark
+    public Match namespacePrefix() {
+        return all.filter(namespacePrefix);
+    }
+
+    @Benchmark
+    public Match namespaceURI() {
+        return all.filter(namespaceURI);
+    }
+
+    @Benchmark
+    public List<String> attrs() {
+        return all.map(JOOX.attrs("lang"));
+    }
+}
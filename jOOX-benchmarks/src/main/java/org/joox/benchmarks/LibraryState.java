@@ -0,0 +1,49 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joox.benchmarks;
+
+import static org.joox.JOOX.$;
+
+import org.joox.Match;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * A generated library document of 1 KB, 1 MB or 100 MB, shared by all
+ * benchmark threads.
+ * <p>
+ * The 100 MB document needs a large heap. The benchmarks using this state
+ * fork their JVM with <code>-Xmx8g</code>.
+ */
+@State(Scope.Benchmark)
+public class LibraryState {
+
+    @Param({ "1024", "1048576", "104857600" })
+    public int bytes;
+
+    String     xml;
+    Match      document;
+    Match      books;
+    Match      leaves;
+
+    @Setup
+    public void setup() {
+        xml = Documents.library(bytes);
+        document = $(xml);
+        books = document.find("book");
+        leaves = document.find("author");
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joox.benchmarks;
+
+import static org.joox.JOOX.$;
+
+import java.util.concurrent.TimeUnit;
+
+import org.joox.JOOX;
+import org.joox.Match;
+import org.joox.Query;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compare selectors and expressions passed as strings with prepared
+ * {@link Query} objects, on documents small enough for the per-call analysis
+ * to matter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class QueryBenchmark {
+
+    @Param({ "1024", "16384" })
+    public int    bytes;
+
+    Match         libraries;
+    Query         css;
+    Query         xpath;
+
+    @Setup
+    public void setup() {
+        libraries = $(Documents.library(bytes)).find("library");
+        css = JOOX.query("books > book[lang='en']");
+        xpath = JOOX.xpathQuery("books/book[@id > $1]");
+    }
+
+    @Benchmark
+    public Match cssString() {
+        return libraries.find("books > book[lang='en']");
+    }
+
+    @Benchmark
+    public Match cssQuery() {
+        return libraries.find(css);
+    }
+
+    @Benchmark
+    public Match xpathString() {
+        return libraries.xpath("books/book[@id > $1]", 3);
+    }
+
+    @Benchmark
+    public Match xpathQuery() {
+        return libraries.find(xpath.bind(3));
+    }
+}
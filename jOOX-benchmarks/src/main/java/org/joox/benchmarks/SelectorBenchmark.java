@@ -0,0 +1,89 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joox.benchmarks;
+
+import static org.joox.JOOX.$;
+import static org.joox.selector.CSS2XPath.css2xpath;
+
+import java.util.concurrent.TimeUnit;
+
+import org.joox.Match;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compare CSS selectors evaluated directly against the DOM with their
+ * equivalent XPath translations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SelectorBenchmark {
+
+    @Param({ "1024", "1048576" })
+    public int    bytes;
+
+    @Param({
+        "library book",
+        "books > book[lang='en']",
+        "book:first-child name",
+        ".x, #5"
+    })
+    public String selector;
+
+    Match         document;
+    Match         libraries;
+    String        rootXPath;
+    String        nonRootXPath;
+
+    @Setup
+    public void setup() {
+        document = $(Documents.library(bytes));
+        libraries = document.find("library");
+        rootXPath = css2xpath(selector, true);
+        nonRootXPath = css2xpath(selector, false);
+    }
+
+    @Benchmark
+    public Match findFromRootNative() {
+        return document.find(selector);
+    }
+
+    @Benchmark
+    public Match findFromRootXPath() {
+        return document.xpath(rootXPath);
+    }
+
+    @Benchmark
+    public Match findFromElementsNative() {
+        return libraries.find(selector);
+    }
+
+    @Benchmark
+    public Match findFromElementsXPath() {
+        return libraries.xpath(nonRootXPath);
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joox.benchmarks;
+
+import static org.joox.JOOX.$;
+
+import java.util.concurrent.TimeUnit;
+
+import org.joox.Match;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Traversals that produce large sets of matched elements, which need to be
+ * deduplicated.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class UniqueElementsBenchmark {
+
+    @Param({ "100000" })
+    public int elements;
+
+    Match      document;
+    Match      all;
+    Match      leaves;
+    Match      books;
+
+    @Setup
+    public void setup() {
+        document = $(Documents.libraryWithElements(elements));
+        all = document.find();
+        leaves = document.find("author");
+        books = document.find("book");
+    }
+
+    @Benchmark
+    public Match parentsOfLeaves() {
+        return leaves.parents();
+    }
+
+    @Benchmark
+    public Match childrenOfAll() {
+        return all.children();
+    }
+
+    @Benchmark
+    public Match findWithFilter() {
+        return document.find(context -> true);
+    }
+
+    @Benchmark
+    public Match siblingsOfBooks() {
+        return books.siblings();
+    }
+
+    @Benchmark
+    public Match addToLargeMatch() {
+        return all.add(leaves);
+    }
+
+    @Benchmark
+    public Match andSelf() {
+        return all.children().andSelf();
+    }
+}
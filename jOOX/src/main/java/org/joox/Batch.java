@@ -0,0 +1,207 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joox;
+
+import org.w3c.dom.Element;
+
+/**
+ * A set of edits that are applied to all elements in a set of matched
+ * elements at once.
+ * <p>
+ * Edits are collected in {@link Match#edit(java.util.function.Consumer)},
+ * and applied after all of them are known:
+ * <code><pre>
+ * $(document).find("book").edit(b -> b
+ *     .attr("available", "true")
+ *     .append("&lt;price/&gt;")
+ *     .after(ctx -> "&lt;!-- " + ctx.matchIndex() + " --&gt;"));
+ * </pre></code>
+ * <p>
+ * All {@link Content} callbacks are evaluated first, against the unmodified
+ * document. Only then is content that is added through {@link Element} or
+ * {@link Match} arguments moved out of the document, or imported into it.
+ * Such content must not contain any of the matched elements. Then, every
+ * matched element receives all of its edits in a single
+ * pass over the set of matched elements, in the order in which the edits were
+ * declared. Unlike with the corresponding methods of {@link Match}, the set of
+ * matched elements is not changed by the edits, except for renamed elements.
+ * <p>
+ * The callback {@link Context} is populated like this:
+ * <ul>
+ * <li> {@link Context#match()} - the matched element being edited</li>
+ * <li> {@link Context#matchIndex()} - the index of the matched element being
+ * edited</li>
+ * </ul>
+ */
+public interface Batch {
+
+    /**
+     * Add content before each element in the set of matched elements.
+     */
+    Batch before(String content);
+
+    /**
+     * Add content before each element in the set of matched elements.
+     */
+    Batch before(Content content);
+
+    /**
+     * Add content before each element in the set of matched elements.
+     * <p>
+     * If the added content is already contained in this document, then it is
+     * moved. Otherwise, it is cloned. If there are several elements in the set
+     * of matched elements, then the added content is duplicated.
+     */
+    Batch before(Match... content);
+
+    /**
+     * Add content before each element in the set of matched elements.
+     * <p>
+     * If the added content is already contained in this document, then it is
+     * moved. Otherwise, it is cloned. If there are several elements in the set
+     * of matched elements, then the added content is duplicated.
+     */
+    Batch before(Element... content);
+
+    /**
+     * Add content after each element in the set of matched elements.
+     */
+    Batch after(String content);
+
+    /**
+     * Add content after each element in the set of matched elements.
+     */
+    Batch after(Content content);
+
+    /**
+     * Add content after each element in the set of matched elements.
+     * <p>
+     * If the added content is already contained in this document, then it is
+     * moved. Otherwise, it is cloned. If there are several elements in the set
+     * of matched elements, then the added content is duplicated.
+     */
+    Batch after(Match... content);
+
+    /**
+     * Add content after each element in the set of matched elements.
+     * <p>
+     * If the added content is already contained in this document, then it is
+     * moved. Otherwise, it is cloned. If there are several elements in the set
+     * of matched elements, then the added content is duplicated.
+     */
+    Batch after(Element... content);
+
+    /**
+     * Append content to the end of each element's content in the set of
+     * matched elements.
+     */
+    Batch append(String content);
+
+    /**
+     * Append content to the end of each element's content in the set of
+     * matched elements.
+     */
+    Batch append(Content content);
+
+    /**
+     * Append content to the end of each element's content in the set of
+     * matched elements.
+     * <p>
+     * If the added content is already contained in this document, then it is
+     * moved. Otherwise, it is cloned. If there are several elements in the set
+     * of matched elements, then the added content is duplicated.
+     */
+    Batch append(Match... content);
+
+    /**
+     * Append content to the end of each element's content in the set of
+     * matched elements.
+     * <p>
+     * If the added content is already contained in this document, then it is
+     * moved. Otherwise, it is cloned. If there are several elements in the set
+     * of matched elements, then the added content is duplicated.
+     */
+    Batch append(Element... content);
+
+    /**
+     * Prepend content to the beginning of each element's content in the set
+     * of matched elements.
+     */
+    Batch prepend(String content);
+
+    /**
+     * Prepend content to the beginning of each element's content in the set
+     * of matched elements.
+     */
+    Batch prepend(Content content);
+
+    /**
+     * Prepend content to the beginning of each element's content in the set
+     * of matched elements.
+     * <p>
+     * If the added content is already contained in this document, then it is
+     * moved. Otherwise, it is cloned. If there are several elements in the set
+     * of matched elements, then the added content is duplicated.
+     */
+    Batch prepend(Match... content);
+
+    /**
+     * Prepend content to the beginning of each element's content in the set
+     * of matched elements.
+     * <p>
+     * If the added content is already contained in this document, then it is
+     * moved. Otherwise, it is cloned. If there are several elements in the set
+     * of matched elements, then the added content is duplicated.
+     */
+    Batch prepend(Element... content);
+
+    /**
+     * Set an attribute on all elements in the set of matched elements. If
+     * <code>value</code> is null, then the attribute is removed.
+     */
+    Batch attr(String name, String value);
+
+    /**
+     * Set an attribute on all elements in the set of matched elements. If the
+     * callback returns <code>null</code>, then the attribute is removed.
+     */
+    Batch attr(String name, Content value);
+
+    /**
+     * Remove an attribute from all elements in the set of matched elements.
+     */
+    Batch removeAttr(String name);
+
+    /**
+     * Rename all tags in the set of matched elements to some new tag name.
+     */
+    Batch rename(String tag);
+
+    /**
+     * Rename all tags in the set of matched elements to some new tag name.
+     */
+    Batch rename(Content tag);
+
+    /**
+     * Wrap all elements in the set of matched elements in a new parent
+     * element.
+     */
+    Batch wrap(String parent);
+
+    /**
+     * Wrap all elements in the set of matched elements in a new parent
+     * element.
+     */
+    Batch wrap(Content parent);
+}
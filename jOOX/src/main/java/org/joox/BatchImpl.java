@@ -0,0 +1,350 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joox;
+
+import static org.joox.Util.context;
+import static org.joox.Util.nonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.DocumentFragment;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * The default {@link Batch} implementation.
+ * <p>
+ * Edits are applied in two phases. First, all {@link Content} callbacks are
+ * evaluated, and content that is shared between all matched elements is
+ * prepared once as a {@link DocumentFragment} template. Then, all edits are
+ * applied in a single pass over the matched elements. Shared content is
+ * cloned from its template with a single deep clone per matched element,
+ * rather than one clone per added element.
+ */
+final class BatchImpl implements Batch {
+
+    private final List<Edit> edits = new ArrayList<>();
+
+    // -------------------------------------------------------------------------
+    // XXX: Batch API
+    // -------------------------------------------------------------------------
+
+    @Override
+    public final Batch before(String content) {
+        return before(JOOX.content(content));
+    }
+
+    @Override
+    public final Batch before(Content content) {
+        return add(new Edit(Type.BEFORE, null, content, null));
+    }
+
+    @Override
+    public final Batch before(Match... content) {
+        return before(Util.elements(content));
+    }
+
+    @Override
+    public final Batch before(Element... content) {
+        return add(new Edit(Type.BEFORE, null, null, content));
+    }
+
+    @Override
+    public final Batch after(String content) {
+        return after(JOOX.content(content));
+    }
+
+    @Override
+    public final Batch after(Content content) {
+        return add(new Edit(Type.AFTER, null, content, null));
+    }
+
+    @Override
+    public final Batch after(Match... content) {
+        return after(Util.elements(content));
+    }
+
+    @Override
+    public final Batch after(Element... content) {
+        return add(new Edit(Type.AFTER, null, null, content));
+    }
+
+    @Override
+    public final Batch append(String content) {
+        return append(JOOX.content(content));
+    }
+
+    @Override
+    public final Batch append(Content content) {
+        return add(new Edit(Type.APPEND, null, content, null));
+    }
+
+    @Override
+    public final Batch append(Match... content) {
+        return append(Util.elements(content));
+    }
+
+    @Override
+    public final Batch append(Element... content) {
+        return add(new Edit(Type.APPEND, null, null, content));
+    }
+
+    @Override
+    public final Batch prepend(String content) {
+        return prepend(JOOX.content(content));
+    }
+
+    @Override
+    public final Batch prepend(Content content) {
+        return add(new Edit(Type.PREPEND, null, content, null));
+    }
+
+    @Override
+    public final Batch prepend(Match... content) {
+        return prepend(Util.elements(content));
+    }
+
+    @Override
+    public final Batch prepend(Element... content) {
+        return add(new Edit(Type.PREPEND, null, null, content));
+    }
+
+    @Override
+    public final Batch attr(String name, String value) {
+        return attr(name, JOOX.content(value));
+    }
+
+    @Override
+    public final Batch attr(String name, Content value) {
+        return add(new Edit(Type.ATTR, name, value, null));
+    }
+
+    @Override
+    public final Batch removeAttr(String name) {
+        return attr(name, (String) null);
+    }
+
+    @Override
+    public final Batch rename(String tag) {
+        return rename(JOOX.content(tag));
+    }
+
+    @Override
+    public final Batch rename(Content tag) {
+        return add(new Edit(Type.RENAME, null, tag, null));
+    }
+
+    @Override
+    public final Batch wrap(String parent) {
+        return wrap(JOOX.content(parent));
+    }
+
+    @Override
+    public final Batch wrap(Content parent) {
+        return add(new Edit(Type.WRAP, null, parent, null));
+    }
+
+    private final Batch add(Edit edit) {
+        edits.add(edit);
+        return this;
+    }
+
+    // -------------------------------------------------------------------------
+    // XXX: Application
+    // -------------------------------------------------------------------------
+
+    /**
+     * Apply all collected edits to a list of elements. Renamed elements are
+     * replaced in the list.
+     */
+    final void apply(Document document, List<Element> elements) {
+        final int size = elements.size();
+
+        if (size == 0 || edits.isEmpty())
+            return;
+
+        // Evaluate all callbacks against the unmodified document, before any
+        // shared content is moved out of it
+        for (Edit edit : edits)
+            edit.evaluate(elements);
+
+        checkShared(document, elements);
+
+        for (Edit edit : edits)
+            edit.detach(document, size);
+
+        for (int matchIndex = 0; matchIndex < size; matchIndex++) {
+            Element match = elements.get(matchIndex);
+
+            for (Edit edit : edits)
+                match = edit.apply(match, matchIndex);
+
+            elements.set(matchIndex, match);
+        }
+    }
+
+    /**
+     * Reject shared content that contains any of the matched elements, as
+     * moving it would move or detach the very elements it is added to.
+     */
+    private final void checkShared(Document document, List<Element> elements) {
+        Set<Node> shared = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        for (Edit edit : edits)
+            if (edit.shared != null)
+                for (Element e : edit.shared)
+                    if (e.getOwnerDocument() == document)
+                        shared.add(e);
+
+        if (shared.isEmpty())
+            return;
+
+        for (Element match : elements)
+            for (Node node = match; node != null; node = node.getParentNode())
+                if (shared.contains(node))
+                    throw new IllegalArgumentException("Shared content must not contain matched elements: " + node.getNodeName());
+    }
+
+    private enum Type {
+        BEFORE, AFTER, APPEND, PREPEND, ATTR, RENAME, WRAP
+    }
+
+    /**
+     * A single edit, and its prepared content.
+     */
+    private static final class Edit {
+
+        private final Type       type;
+        private final String     name;
+        private final Content    content;
+        private final Element[]  shared;
+
+        /**
+         * The evaluated {@link #content} for every matched element
+         */
+        private String[]         values;
+
+        /**
+         * The {@link #shared} content, detached, for the first matched
+         * element
+         */
+        private DocumentFragment originals;
+
+        /**
+         * A copy of the {@link #shared} content, to be cloned for all other
+         * matched elements
+         */
+        private DocumentFragment template;
+
+        Edit(Type type, String name, Content content, Element[] shared) {
+            this.type = type;
+            this.name = name;
+            this.content = content;
+            this.shared = shared;
+        }
+
+        /**
+         * Evaluate the {@link #content} callback for every matched element.
+         */
+        final void evaluate(List<Element> elements) {
+            final int size = elements.size();
+
+            if (content != null) {
+                values = new String[size];
+
+                for (int matchIndex = 0; matchIndex < size; matchIndex++) {
+                    String value = content.content(context(elements.get(matchIndex), matchIndex, size));
+                    values[matchIndex] = type == Type.ATTR ? value : nonNull(value);
+                }
+            }
+        }
+
+        /**
+         * Import or detach the {@link #shared} content, and prepare its
+         * template.
+         */
+        final void detach(Document document, int size) {
+            if (shared != null) {
+                originals = document.createDocumentFragment();
+
+                for (Element e : Util.importOrDetach(document, shared))
+                    originals.appendChild(e);
+
+                if (size > 1)
+                    template = (DocumentFragment) originals.cloneNode(true);
+            }
+        }
+
+        final Element apply(Element match, int matchIndex) {
+            switch (type) {
+                case BEFORE:
+                    match.getParentNode().insertBefore(content(match, matchIndex), match);
+                    return match;
+
+                case AFTER:
+                    match.getParentNode().insertBefore(content(match, matchIndex), match.getNextSibling());
+                    return match;
+
+                case APPEND:
+                    match.appendChild(content(match, matchIndex));
+                    return match;
+
+                case PREPEND:
+                    match.insertBefore(content(match, matchIndex), match.getFirstChild());
+                    return match;
+
+                case ATTR:
+                    if (values[matchIndex] == null)
+                        match.removeAttribute(name);
+                    else
+                        match.setAttribute(name, values[matchIndex]);
+
+                    return match;
+
+                case RENAME:
+                    return (Element) match.getOwnerDocument().renameNode(match, "", values[matchIndex]);
+
+                case WRAP: {
+                    Element wrapper = match.getOwnerDocument().createElement(values[matchIndex]);
+                    match.getParentNode().replaceChild(wrapper, match);
+                    wrapper.appendChild(match);
+                    return match;
+                }
+            }
+
+            throw new IllegalStateException("Unsupported edit: " + type);
+        }
+
+        /**
+         * The content to be added to a matched element.
+         */
+        private final Node content(Element match, int matchIndex) {
+            if (values == null)
+                return matchIndex == 0 ? originals : template.cloneNode(true);
+
+            Document doc = match.getOwnerDocument();
+            DocumentFragment imported = Util.createContent(doc, values[matchIndex]);
+
+            if (imported != null)
+                return imported;
+            else
+                return doc.createTextNode(values[matchIndex]);
+        }
+    }
+}
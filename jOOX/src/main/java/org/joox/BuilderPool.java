@@ -0,0 +1,208 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joox;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * A bounded pool of namespace-aware {@link DocumentBuilder} instances.
+ * <p>
+ * Looking up a {@link DocumentBuilderFactory} and configuring it is expensive,
+ * so a single configured factory is shared for the lifetime of the class.
+ * Builders that were used internally by jOOX are {@link DocumentBuilder#reset()
+ * reset} and returned to the pool, from where they can be borrowed again by any
+ * thread.
+ * <p>
+ * The pool size can be configured with the
+ * <code>org.joox.builderPoolSize</code> system property. A size of
+ * <code>0</code> disables pooling.
+ *
+ * @see JOOX#builder()
+ * @see JOOX#builderStatistics()
+ */
+final class BuilderPool {
+
+    /**
+     * The maximum number of idle builders kept in the pool
+     */
+    private static final int                            SIZE    = Math.max(0, Integer.getInteger(
+        "org.joox.builderPoolSize", 2 * Runtime.getRuntime().availableProcessors()));
+
+    /**
+     * The idle builders, or <code>null</code> if pooling is disabled
+     */
+    private static final BlockingQueue<DocumentBuilder> POOL    = SIZE == 0 ? null : new ArrayBlockingQueue<>(SIZE);
+
+    /**
+     * The shared factory. Access must be synchronized, as factories are not
+     * thread-safe.
+     */
+    private static final DocumentBuilderFactory         FACTORY = newFactory();
+
+    private static final LongAdder                      HITS    = new LongAdder();
+    private static final LongAdder                      MISSES  = new LongAdder();
+
+    /**
+     * Create a new builder from the shared factory.
+     */
+    static final DocumentBuilder newBuilder() {
+        try {
+            synchronized (FACTORY) {
+                return FACTORY.newDocumentBuilder();
+            }
+        }
+        catch (ParserConfigurationException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Borrow a builder from the pool, or create a new one if the pool is empty.
+     * <p>
+     * Borrowed builders must be {@link #release(DocumentBuilder) released}
+     * after use, and must not be exposed to client code.
+     */
+    static final DocumentBuilder borrow() {
+        DocumentBuilder builder = POOL == null ? null : POOL.poll();
+
+        if (builder != null) {
+            HITS.increment();
+            return builder;
+        }
+
+        MISSES.increment();
+        return newBuilder();
+    }
+
+    /**
+     * Return a borrowed builder to the pool.
+     */
+    static final void release(DocumentBuilder builder) {
+        if (POOL != null) {
+            try {
+
+                // Reset error handlers, entity resolvers, etc. to their defaults
+                builder.reset();
+            }
+
+            // Some builders may not support resetting. Don't pool them.
+            catch (UnsupportedOperationException ignore) {
+                return;
+            }
+
+            // If the pool is full, the builder is discarded
+            POOL.offer(builder);
+        }
+    }
+
+    /**
+     * Create a new, empty document.
+     */
+    static final Document newDocument() {
+        DocumentBuilder builder = borrow();
+
+        try {
+            return builder.newDocument();
+        }
+        finally {
+            release(builder);
+        }
+    }
+
+    /**
+     * Parse a document from a file.
+     */
+    static final Document parse(File file) throws SAXException, IOException {
+        DocumentBuilder builder = borrow();
+
+        try {
+            return builder.parse(file);
+        }
+        finally {
+            release(builder);
+        }
+    }
+
+    /**
+     * Parse a document from an input source.
+     */
+    static final Document parse(InputSource source) throws SAXException, IOException {
+        DocumentBuilder builder = borrow();
+
+        try {
+            return builder.parse(source);
+        }
+        finally {
+            release(builder);
+        }
+    }
+
+    /**
+     * Take a snapshot of this pool's statistics.
+     */
+    static final CacheStatistics statistics() {
+        return new DefaultCacheStatistics(HITS.sum(), MISSES.sum(), POOL == null ? 0 : POOL.size());
+    }
+
+    private static final DocumentBuilderFactory newFactory() {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+
+        // -----------------------------------------------------------------
+        // [#136] FIX START: Prevent OWASP attack vectors
+        try {
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+        }
+        catch (ParserConfigurationException ignore) {}
+
+        try {
+            factory.setFeature("http://xml.org/sax/features/external-general-entities", false);
+        }
+        catch (ParserConfigurationException ignore) {}
+
+        try {
+            factory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+        }
+        catch (ParserConfigurationException ignore) {}
+
+        // [#149] Not implemented on Android
+        try {
+            factory.setXIncludeAware(false);
+        }
+        catch (UnsupportedOperationException ignore) {}
+
+        factory.setExpandEntityReferences(false);
+        // [#136] FIX END
+        // -----------------------------------------------------------------
+
+        // [#9] [#107] In order to take advantage of namespace-related DOM
+        // features, the internal builder should be namespace-aware
+        factory.setNamespaceAware(true);
+
+        return factory;
+    }
+
+    private BuilderPool() {}
+}
@@ -0,0 +1,80 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joox;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * An {@link InputStream} reading the remaining bytes of a {@link ByteBuffer}.
+ * <p>
+ * The stream reads from its own view of the buffer, so the buffer's position
+ * is not modified. Bytes are copied straight from the buffer into the
+ * reader's array, which avoids any intermediate buffers, also for direct and
+ * memory-mapped buffers.
+ */
+final class ByteBufferInputStream extends InputStream {
+
+    private final ByteBuffer buffer;
+    private int              mark;
+
+    ByteBufferInputStream(ByteBuffer buffer) {
+        this.buffer = buffer.duplicate();
+        this.mark = this.buffer.position();
+    }
+
+    @Override
+    public final int read() {
+        return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public final int read(byte[] b, int off, int len) {
+        if (len == 0)
+            return 0;
+        else if (!buffer.hasRemaining())
+            return -1;
+
+        int result = Math.min(len, buffer.remaining());
+        buffer.get(b, off, result);
+        return result;
+    }
+
+    @Override
+    public final long skip(long n) {
+        int result = (int) Math.max(0L, Math.min(n, buffer.remaining()));
+        buffer.position(buffer.position() + result);
+        return result;
+    }
+
+    @Override
+    public final int available() {
+        return buffer.remaining();
+    }
+
+    @Override
+    public final boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public final synchronized void mark(int readlimit) {
+        mark = buffer.position();
+    }
+
+    @Override
+    public final synchronized void reset() {
+        buffer.position(mark);
+    }
+}
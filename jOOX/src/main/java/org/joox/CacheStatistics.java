@@ -0,0 +1,47 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joox;
+
+/**
+ * A snapshot of the usage statistics of one of jOOX's internal caches or
+ * pools.
+ * <p>
+ * Statistics are collected across all threads. A snapshot does not change
+ * after it has been taken.
+ */
+public interface CacheStatistics {
+
+    /**
+     * The number of lookups that could be served from the cache or pool.
+     */
+    long hits();
+
+    /**
+     * The number of lookups that could not be served from the cache or pool,
+     * and that required creating a new object.
+     */
+    long misses();
+
+    /**
+     * The ratio of {@link #hits()} among all lookups, or <code>0.0</code> if
+     * there were no lookups yet.
+     */
+    double hitRate();
+
+    /**
+     * The number of objects that were held by the cache or pool when this
+     * snapshot was taken.
+     */
+    int size();
+}
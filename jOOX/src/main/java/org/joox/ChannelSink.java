@@ -0,0 +1,114 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joox;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A buffered {@link OutputStream} that drains into a
+ * {@link WritableByteChannel}.
+ * <p>
+ * {@link javax.xml.transform.Transformer}s flush their target after every
+ * transformation. Unlike {@link java.io.BufferedOutputStream}, this sink
+ * therefore ignores {@link #flush()}, and only drains its buffer when it is
+ * full, or when the sink is closed. Files are written through a
+ * {@link FileChannel} with a direct buffer.
+ */
+final class ChannelSink extends OutputStream {
+
+    /**
+     * The buffer size for streams
+     */
+    private static final int          STREAM_BUFFER = 64 * 1024;
+
+    /**
+     * The (direct) buffer size for files
+     */
+    private static final int          FILE_BUFFER   = 1024 * 1024;
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer          buffer;
+
+    private ChannelSink(WritableByteChannel channel, ByteBuffer buffer) {
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Create a sink that writes to a stream.
+     */
+    static final ChannelSink sink(OutputStream stream) {
+        return new ChannelSink(Channels.newChannel(stream), ByteBuffer.allocate(STREAM_BUFFER));
+    }
+
+    /**
+     * Create a sink that writes to a file, replacing any existing content.
+     */
+    static final ChannelSink sink(Path path) throws IOException {
+        return new ChannelSink(
+            FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING),
+            ByteBuffer.allocateDirect(FILE_BUFFER)
+        );
+    }
+
+    @Override
+    public final void write(int b) throws IOException {
+        if (!buffer.hasRemaining())
+            drain();
+
+        buffer.put((byte) b);
+    }
+
+    @Override
+    public final void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (!buffer.hasRemaining())
+                drain();
+
+            int chunk = Math.min(len, buffer.remaining());
+            buffer.put(b, off, chunk);
+            off += chunk;
+            len -= chunk;
+        }
+    }
+
+    @Override
+    public final void flush() {}
+
+    @Override
+    public final void close() throws IOException {
+        try {
+            drain();
+        }
+        finally {
+            channel.close();
+        }
+    }
+
+    private final void drain() throws IOException {
+        buffer.flip();
+
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+
+        buffer.clear();
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joox;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * A {@link Writer} that receives a serialised element, and that passes on only
+ * the element's content, dropping its start and end tags.
+ * <p>
+ * The start tag is skipped up to its first <code>&gt;</code> outside of
+ * attribute values. The end tag is known to be the last
+ * <code>&lt;/name&gt;</code>, so that many trailing characters are always held
+ * back, and never written. Everything in between is written through to the
+ * target in chunks, without buffering the whole element.
+ * <p>
+ * The target writer is never closed.
+ */
+final class ContentWriter extends Writer {
+
+    private final Writer target;
+    private final char[] buffer;
+    private final int    hold;
+    private int          length;
+    private boolean      content;
+    private char         quote;
+
+    ContentWriter(Writer target, String name) {
+        this.target = target;
+        this.hold = name.length() + 3;
+        this.buffer = new char[Math.max(1024, 2 * hold)];
+    }
+
+    @Override
+    public final void write(int c) throws IOException {
+        if (content) {
+            if (length == buffer.length)
+                drain();
+
+            buffer[length++] = (char) c;
+        }
+        else {
+            skip((char) c);
+        }
+    }
+
+    @Override
+    public final void write(char[] cbuf, int off, int len) throws IOException {
+        int end = off + len;
+
+        while (!content && off < end)
+            skip(cbuf[off++]);
+
+        while (off < end) {
+            if (length == buffer.length)
+                drain();
+
+            int chunk = Math.min(end - off, buffer.length - length);
+            System.arraycopy(cbuf, off, buffer, length, chunk);
+            length += chunk;
+            off += chunk;
+        }
+    }
+
+    @Override
+    public final void write(String str, int off, int len) throws IOException {
+        int end = off + len;
+
+        while (!content && off < end)
+            skip(str.charAt(off++));
+
+        while (off < end) {
+            if (length == buffer.length)
+                drain();
+
+            int chunk = Math.min(end - off, buffer.length - length);
+            str.getChars(off, off + chunk, buffer, length);
+            length += chunk;
+            off += chunk;
+        }
+    }
+
+    /**
+     * Consume a character of the start tag.
+     */
+    private final void skip(char c) {
+        if (quote != 0) {
+            if (c == quote)
+                quote = 0;
+        }
+        else if (c == '"' || c == '\'')
+            quote = c;
+        else if (c == '>')
+            content = true;
+    }
+
+    /**
+     * Write all buffered content, except for the characters that may belong to
+     * the end tag.
+     */
+    private final void drain() throws IOException {
+        int write = length - hold;
+
+        if (write > 0) {
+            target.write(buffer, 0, write);
+            System.arraycopy(buffer, write, buffer, 0, hold);
+            length = hold;
+        }
+    }
+
+    @Override
+    public final void flush() throws IOException {
+        drain();
+        target.flush();
+    }
+
+    @Override
+    public final void close() {}
+}
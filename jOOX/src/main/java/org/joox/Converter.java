@@ -0,0 +1,42 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joox;
+
+/**
+ * A conversion of string values, such as attribute values or text content, to
+ * a Java type.
+ * <p>
+ * Converters are used by {@link JOOX#convert(String, Class)} and by all
+ * {@link Match} methods that accept a target type, such as
+ * {@link Match#attrs(String, Class)}. Custom converters can be registered for
+ * types that jOOX does not support out of the box, such as enums,
+ * {@link java.util.UUID} or <code>java.time</code> types, through
+ * {@link JOOX#converter(Class, Converter)}.
+ *
+ * @see JOOX#converter(Class)
+ */
+@FunctionalInterface
+public interface Converter<T> {
+
+    /**
+     * Convert a string value.
+     *
+     * @param value The value to convert. This is never <code>null</code>, as
+     *            <code>null</code> values are not passed to converters.
+     * @return The converted value, or <code>null</code> if the value cannot
+     *         be converted. Registered converters may also throw an exception
+     *         for such values, which is treated like <code>null</code>.
+     */
+    T convert(String value);
+}
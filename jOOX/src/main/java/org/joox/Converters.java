@@ -0,0 +1,470 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joox;
+
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The registry of {@link Converter}s, as used by
+ * {@link JOOX#convert(String, Class)}.
+ * <p>
+ * Converters are resolved once per type, and then cached in a
+ * {@link ClassValue}. The built-in numeric converters parse plain integers
+ * such as <code>-42</code> without allocating, and reject values that are not
+ * numbers with a syntax check, rather than by catching exceptions. All other
+ * numbers are parsed through {@link BigDecimal}, as before, such that e.g.
+ * <code>1.5</code> converts to the integer <code>1</code>.
+ */
+final class Converters {
+
+    /**
+     * Converters registered through {@link JOOX#converter(Class, Converter)}
+     */
+    private static final Map<Class<?>, Converter<?>> REGISTERED = new ConcurrentHashMap<>();
+
+    /**
+     * Resolved converters, registered or built-in
+     */
+    private static final ClassValue<Converter<?>>    RESOLVED   = new ClassValue<Converter<?>>() {
+        @Override
+        protected Converter<?> computeValue(Class<?> type) {
+            Converter<?> result = REGISTERED.get(type);
+            return result != null ? lenient(result) : builtIn(type);
+        }
+    };
+
+    /**
+     * Marks values that are not plain integers
+     */
+    private static final long                        NOT_SIMPLE = Long.MIN_VALUE;
+
+    /**
+     * Get the converter for a type.
+     */
+    @SuppressWarnings("unchecked")
+    static final <T> Converter<T> get(Class<T> type) {
+        return (Converter<T>) RESOLVED.get(type);
+    }
+
+    /**
+     * Register a converter for a type, or restore the built-in converter if
+     * <code>converter</code> is <code>null</code>.
+     */
+    static final <T> void register(Class<T> type, Converter<T> converter) {
+        if (converter == null)
+            REGISTERED.remove(type);
+        else
+            REGISTERED.put(type, converter);
+
+        RESOLVED.remove(type);
+    }
+
+    /**
+     * Convert a value with a previously resolved converter.
+     */
+    static final <T> T convert(String value, Class<T> type, Converter<T> converter) {
+        if (value == null) {
+            if (!type.isPrimitive())
+                return null;
+
+            value = "0";
+        }
+
+        return converter.convert(value);
+    }
+
+    /**
+     * Convert several values, resolving the converter only once.
+     */
+    static final <T> List<T> convert(List<String> values, Class<T> type) {
+        Converter<T> converter = get(type);
+        List<T> result = new ArrayList<>(values.size());
+
+        for (String value : values)
+            result.add(convert(value, type, converter));
+
+        return result;
+    }
+
+    // -------------------------------------------------------------------------
+    // XXX: Built-in converters
+    // -------------------------------------------------------------------------
+
+    private static final Converter<?> builtIn(Class<?> type) {
+
+        // [#28] Array conversion will recurse for split values
+        if (type.isArray()) {
+            Class<?> component = type.getComponentType();
+
+            return value -> {
+                List<String> split = Util.split(value);
+                return convert(split, component).toArray((Object[]) Array.newInstance(component, split.size()));
+            };
+        }
+
+        // Strings are not converted, and all types can be converted to Object
+        else if (type == String.class || type == Object.class)
+            return value -> value;
+
+        // Various number types
+        else if (type == Byte.class)
+            return Converters::toByte;
+        else if (type == byte.class)
+            return primitive(Converters::toByte, (byte) 0);
+        else if (type == Short.class)
+            return Converters::toShort;
+        else if (type == short.class)
+            return primitive(Converters::toShort, (short) 0);
+        else if (type == Integer.class)
+            return Converters::toInteger;
+        else if (type == int.class)
+            return primitive(Converters::toInteger, 0);
+        else if (type == Long.class)
+            return Converters::toLong;
+        else if (type == long.class)
+            return primitive(Converters::toLong, 0L);
+        else if (type == Float.class)
+            return Converters::toFloat;
+        else if (type == float.class)
+            return primitive(Converters::toFloat, 0.0f);
+        else if (type == Double.class)
+            return Converters::toDouble;
+        else if (type == double.class)
+            return primitive(Converters::toDouble, 0.0);
+        else if (type == BigDecimal.class)
+            return Converters::toBigDecimal;
+        else if (type == BigInteger.class)
+            return Converters::toBigInteger;
+
+        // Booleans have a set of allowed values
+        else if (type == Boolean.class)
+            return Converters::toBoolean;
+        else if (type == boolean.class)
+            return primitive(Converters::toBoolean, false);
+
+        // [#29] TODO: Date-time types
+        else if (type == java.util.Date.class)
+            return lenient(value -> Util.parseDate(value));
+        else if (type == Calendar.class)
+            return lenient(value -> {
+                Calendar cal = Calendar.getInstance();
+                cal.setTime(Util.parseDate(value));
+                return cal;
+            });
+        else if (type == GregorianCalendar.class)
+            return lenient(value -> {
+                Calendar cal = new GregorianCalendar();
+                cal.setTime(Util.parseDate(value));
+                return cal;
+            });
+        else if (type == java.sql.Timestamp.class)
+            return lenient(value -> new java.sql.Timestamp(Util.parseDate(value).getTime()));
+        else if (type == java.sql.Date.class)
+            return lenient(value -> new java.sql.Date(Util.parseDate(value).getTime()));
+        else if (type == java.sql.Time.class)
+            return lenient(value -> new java.sql.Time(Util.parseDate(value).getTime()));
+
+        // All other types are ignored
+        else
+            return value -> null;
+    }
+
+    /**
+     * Primitive types convert illegal values to <code>0</code> or
+     * <code>false</code>, rather than to <code>null</code>.
+     */
+    private static final <T> Converter<T> primitive(Converter<T> converter, T defaultValue) {
+        return value -> {
+            T result = converter.convert(value);
+            return result == null ? defaultValue : result;
+        };
+    }
+
+    /**
+     * Date parsing and registered converters, e.g. <code>UUID::fromString</code>,
+     * report illegal values through various exceptions.
+     */
+    private static final <T> Converter<T> lenient(Converter<T> converter) {
+        return value -> {
+            try {
+                return converter.convert(value);
+            }
+            catch (Exception e) {
+                return null;
+            }
+        };
+    }
+
+    private static final Byte toByte(String value) {
+        long simple = simpleLong(value);
+
+        if (simple != NOT_SIMPLE)
+            return (byte) simple;
+
+        BigDecimal decimal = toBigDecimal(value);
+        return decimal == null ? null : decimal.byteValue();
+    }
+
+    private static final Short toShort(String value) {
+        long simple = simpleLong(value);
+
+        if (simple != NOT_SIMPLE)
+            return (short) simple;
+
+        BigDecimal decimal = toBigDecimal(value);
+        return decimal == null ? null : decimal.shortValue();
+    }
+
+    private static final Integer toInteger(String value) {
+        long simple = simpleLong(value);
+
+        if (simple != NOT_SIMPLE)
+            return (int) simple;
+
+        BigDecimal decimal = toBigDecimal(value);
+        return decimal == null ? null : decimal.intValue();
+    }
+
+    private static final Long toLong(String value) {
+        long simple = simpleLong(value);
+
+        if (simple != NOT_SIMPLE)
+            return simple;
+
+        BigDecimal decimal = toBigDecimal(value);
+        return decimal == null ? null : decimal.longValue();
+    }
+
+    private static final Float toFloat(String value) {
+        if (!isFloatingPoint(value))
+            return null;
+
+        try {
+            return Float.valueOf(value);
+        }
+        catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static final Double toDouble(String value) {
+        if (!isFloatingPoint(value))
+            return null;
+
+        try {
+            return Double.valueOf(value);
+        }
+        catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static final BigDecimal toBigDecimal(String value) {
+        if (!isDecimal(value))
+            return null;
+
+        // Exponents may still overflow
+        try {
+            return new BigDecimal(value);
+        }
+        catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static final BigInteger toBigInteger(String value) {
+        long simple = simpleLong(value);
+
+        if (simple != NOT_SIMPLE)
+            return BigInteger.valueOf(simple);
+
+        BigDecimal decimal = toBigDecimal(value);
+        return decimal == null ? null : decimal.toBigInteger();
+    }
+
+    /**
+     * Case-insensitively check for any of <code>1, y, yes, true, on,
+     * enabled</code> or <code>0, n, no, false, off, disabled</code>.
+     */
+    private static final Boolean toBoolean(String value) {
+        switch (value.length()) {
+            case 1: {
+                char c = value.charAt(0);
+
+                if (c == '1' || c == 'y' || c == 'Y')
+                    return Boolean.TRUE;
+                else if (c == '0' || c == 'n' || c == 'N')
+                    return Boolean.FALSE;
+                else
+                    return null;
+            }
+
+            case 2:
+                return "on".equalsIgnoreCase(value) ? Boolean.TRUE : "no".equalsIgnoreCase(value) ? Boolean.FALSE : null;
+            case 3:
+                return "yes".equalsIgnoreCase(value) ? Boolean.TRUE : "off".equalsIgnoreCase(value) ? Boolean.FALSE : null;
+            case 4:
+                return "true".equalsIgnoreCase(value) ? Boolean.TRUE : null;
+            case 5:
+                return "false".equalsIgnoreCase(value) ? Boolean.FALSE : null;
+            case 7:
+                return "enabled".equalsIgnoreCase(value) ? Boolean.TRUE : null;
+            case 8:
+                return "disabled".equalsIgnoreCase(value) ? Boolean.FALSE : null;
+            default:
+                return null;
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // XXX: Parsing utilities
+    // -------------------------------------------------------------------------
+
+    /**
+     * Parse a plain integer of up to 18 digits with an optional sign, which
+     * always fits in a <code>long</code>, or return {@link #NOT_SIMPLE}.
+     */
+    private static final long simpleLong(String value) {
+        final int length = value.length();
+        int i = 0;
+
+        if (length == 0)
+            return NOT_SIMPLE;
+
+        char c = value.charAt(0);
+        boolean negative = c == '-';
+
+        if (negative || c == '+')
+            i++;
+
+        if (i == length || length - i > 18)
+            return NOT_SIMPLE;
+
+        long result = 0;
+        for (; i < length; i++) {
+            c = value.charAt(i);
+
+            if (c < '0' || c > '9')
+                return NOT_SIMPLE;
+
+            result = result * 10 + (c - '0');
+        }
+
+        return negative ? -result : result;
+    }
+
+    /**
+     * Check whether a value may be accepted by
+     * {@link BigDecimal#BigDecimal(String)}, i.e. whether it is an optionally
+     * signed decimal number with an optional exponent.
+     * <p>
+     * Non-ASCII characters may be digits of other scripts. They are left to
+     * {@link BigDecimal} to check.
+     */
+    private static final boolean isDecimal(String value) {
+        final int length = value.length();
+        int i = 0;
+        int digits = 0;
+
+        if (length > 0 && (value.charAt(0) == '-' || value.charAt(0) == '+'))
+            i++;
+
+        for (; i < length; i++) {
+            char c = value.charAt(i);
+
+            if (c >= '0' && c <= '9')
+                digits++;
+            else if (c > 127)
+                return true;
+            else
+                break;
+        }
+
+        if (i < length && value.charAt(i) == '.') {
+            for (i++; i < length; i++) {
+                char c = value.charAt(i);
+
+                if (c >= '0' && c <= '9')
+                    digits++;
+                else if (c > 127)
+                    return true;
+                else
+                    break;
+            }
+        }
+
+        if (digits == 0)
+            return false;
+
+        if (i < length && (value.charAt(i) == 'e' || value.charAt(i) == 'E')) {
+            i++;
+
+            if (i < length && (value.charAt(i) == '-' || value.charAt(i) == '+'))
+                i++;
+
+            int exponent = 0;
+            for (; i < length; i++) {
+                char c = value.charAt(i);
+
+                if (c >= '0' && c <= '9')
+                    exponent++;
+                else if (c > 127)
+                    return true;
+                else
+                    return false;
+            }
+
+            return exponent > 0;
+        }
+
+        return i == length;
+    }
+
+    /**
+     * Check whether a value may be accepted by {@link Double#valueOf(String)},
+     * rejecting most illegal values by their first character.
+     */
+    private static final boolean isFloatingPoint(String value) {
+        final int length = value.length();
+        int i = 0;
+
+        // Double.valueOf() trims whitespace
+        while (i < length && value.charAt(i) <= ' ')
+            i++;
+
+        if (i == length)
+            return false;
+
+        char c = value.charAt(i);
+
+        if (c == '-' || c == '+') {
+            if (++i == length)
+                return false;
+
+            c = value.charAt(i);
+        }
+
+        return (c >= '0' && c <= '9') || c == '.' || c == 'N' || c == 'I';
+    }
+
+    private Converters() {}
+}
@@ -0,0 +1,57 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joox;
+
+class DefaultCacheStatistics implements CacheStatistics {
+
+    private final long hits;
+    private final long misses;
+    private final int  size;
+
+    DefaultCacheStatistics(long hits, long misses, int size) {
+        this.hits = hits;
+        this.misses = misses;
+        this.size = size;
+    }
+
+    @Override
+    public final long hits() {
+        return hits;
+    }
+
+    @Override
+    public final long misses() {
+        return misses;
+    }
+
+    @Override
+    public final double hitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    @Override
+    public final int size() {
+        return size;
+    }
+
+    // -------------------------------------------------------------------------
+    // XXX: Object
+    // -------------------------------------------------------------------------
+
+    @Override
+    public String toString() {
+        return "CacheStatistics [hits=" + hits + ", misses=" + misses + ", size=" + size + "]";
+    }
+}
@@ -0,0 +1,333 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joox;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * An index of all elements in a {@link Document}, by tag name and by
+ * attribute value.
+ * <p>
+ * Indexes are opt-in, see {@link Match#index()}. They are attached to their
+ * document as {@link Node#setUserData(String, Object, org.w3c.dom.UserDataHandler)
+ * user data}, so they can be garbage collected along with it. Every index is
+ * built lazily on first use, and rebuilt lazily after it has been
+ * {@link #invalidate(Document) invalidated} by a modification.
+ * <p>
+ * All elements are numbered in document order. Each element also knows the
+ * number of its last descendant, such that the descendants of an element
+ * matching a filter can be found by binary search in a sorted list of
+ * candidates.
+ */
+final class ElementIndex {
+
+    /**
+     * The user data key of the index
+     */
+    private static final String                   KEY        = "org.joox.index";
+
+    private final Document                        document;
+    private boolean                               stale      = true;
+
+    /**
+     * All elements in document order
+     */
+    private Element[]                             elements;
+
+    /**
+     * The number of each element's last descendant, or the element's own
+     * number if it has no descendants
+     */
+    private int[]                                 ends;
+    private Map<Element, Integer>                 numbers;
+
+    /**
+     * Element numbers by tag name, ignoring namespace prefixes
+     */
+    private Map<String, int[]>                    tags;
+
+    /**
+     * Element numbers by attribute name and value, built for each attribute
+     * name on first use
+     */
+    private final Map<String, Map<String, int[]>> attributes = new HashMap<>();
+
+    private ElementIndex(Document document) {
+        this.document = document;
+    }
+
+    /**
+     * Start indexing a document, or rebuild its existing index.
+     */
+    static final void index(Document document) {
+        ElementIndex index = (ElementIndex) document.getUserData(KEY);
+
+        if (index == null)
+            document.setUserData(KEY, new ElementIndex(document), null);
+        else
+            index.invalidate();
+    }
+
+    /**
+     * Get a document's up to date index, or <code>null</code> if the document
+     * is not indexed.
+     */
+    static final ElementIndex get(Document document) {
+        return document == null ? null : (ElementIndex) document.getUserData(KEY);
+    }
+
+    /**
+     * Mark a document's index as stale after a modification.
+     */
+    static final void invalidate(Document document) {
+        ElementIndex index = get(document);
+
+        if (index != null)
+            index.invalidate();
+    }
+
+    private final synchronized void invalidate() {
+        if (!stale) {
+            stale = true;
+            elements = null;
+            ends = null;
+            numbers = null;
+            tags = null;
+            attributes.clear();
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // XXX: Lookups
+    // -------------------------------------------------------------------------
+
+    /**
+     * The numbers of all elements with a given tag name, ignoring namespace
+     * prefixes.
+     */
+    final synchronized int[] tag(String tagName) {
+        build();
+
+        int[] result = tags.get(tagName);
+        return result == null ? new int[0] : result;
+    }
+
+    /**
+     * The numbers of all elements with an attribute having any of the given
+     * values, ignoring namespace prefixes.
+     */
+    final synchronized int[] attr(String name, Collection<String> values) {
+        build();
+
+        Map<String, int[]> index = attributes.get(name);
+        if (index == null) {
+            Map<String, List<Element>> lists = new HashMap<>();
+
+            for (Element element : elements) {
+                String value = Util.attr(element, name);
+
+                if (value != null)
+                    lists.computeIfAbsent(value, v -> new ArrayList<>()).add(element);
+            }
+
+            attributes.put(name, index = numbers(lists));
+        }
+
+        if (values.size() == 1) {
+            int[] result = index.get(values.iterator().next());
+            return result == null ? new int[0] : result;
+        }
+
+        int length = 0;
+        for (String value : values) {
+            int[] n = index.get(value);
+
+            if (n != null)
+                length += n.length;
+        }
+
+        int[] result = new int[length];
+        int position = 0;
+        for (String value : values) {
+            int[] n = index.get(value);
+
+            if (n != null) {
+                System.arraycopy(n, 0, result, position, n.length);
+                position += n.length;
+            }
+        }
+
+        // Each element has only one value per attribute, so there are no
+        // duplicates
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * Find all elements among a set of candidates that are descendants of the
+     * given scopes, in document order per scope.
+     *
+     * @return The matching elements, or <code>null</code> if any scope is not
+     *         part of the indexed document.
+     */
+    final synchronized List<Element> find(List<Element> scopes, int[] candidates) {
+        List<Element> result = new ArrayList<>();
+
+        for (Element scope : scopes) {
+            Integer number = numbers.get(scope);
+
+            if (number == null)
+                return null;
+
+            int from = lowerBound(candidates, number + 1);
+            int to = lowerBound(candidates, ends[number] + 1);
+
+            for (int i = from; i < to; i++)
+                result.add(elements[candidates[i]]);
+        }
+
+        return result;
+    }
+
+    /**
+     * Find all scopes that have a descendant among a set of candidates.
+     *
+     * @return The matching scopes, or <code>null</code> if any scope is not
+     *         part of the indexed document.
+     */
+    final synchronized List<Element> has(List<Element> scopes, int[] candidates) {
+        List<Element> result = new ArrayList<>();
+
+        for (Element scope : scopes) {
+            Integer number = numbers.get(scope);
+
+            if (number == null)
+                return null;
+
+            int from = lowerBound(candidates, number + 1);
+
+            if (from < candidates.length && candidates[from] <= ends[number])
+                result.add(scope);
+        }
+
+        return result;
+    }
+
+    // -------------------------------------------------------------------------
+    // XXX: Construction
+    // -------------------------------------------------------------------------
+
+    /**
+     * Number all elements in document order, if the index is stale.
+     */
+    private final void build() {
+        if (!stale)
+            return;
+
+        List<Element> list = new ArrayList<>();
+        List<Integer> open = new ArrayList<>();
+        List<Integer> ends = new ArrayList<>();
+        Map<String, List<Element>> tagLists = new HashMap<>();
+
+        // Iterative pre-order traversal of all elements
+        Node node = document.getDocumentElement();
+        while (node != null) {
+            if (node.getNodeType() == Node.ELEMENT_NODE) {
+                Element element = (Element) node;
+
+                ends.add(list.size());
+                list.add(element);
+                tagLists.computeIfAbsent(Util.stripNamespace(element.getTagName()), t -> new ArrayList<>()).add(element);
+
+                Node child = node.getFirstChild();
+                if (child != null) {
+                    open.add(list.size() - 1);
+                    node = child;
+                    continue;
+                }
+            }
+
+            // All descendants of an element have been visited when moving up
+            // to it again
+            while (node != null && node.getNextSibling() == null) {
+                node = node.getParentNode();
+
+                if (node == document)
+                    node = null;
+                else
+                    ends.set(open.remove(open.size() - 1), list.size() - 1);
+            }
+
+            if (node != null)
+                node = node.getNextSibling();
+        }
+
+        this.elements = list.toArray(new Element[0]);
+        this.ends = new int[elements.length];
+        this.numbers = new IdentityHashMap<>(elements.length);
+
+        for (int i = 0; i < elements.length; i++) {
+            this.ends[i] = ends.get(i);
+            this.numbers.put(elements[i], i);
+        }
+
+        this.tags = numbers(tagLists);
+        this.stale = false;
+    }
+
+    private final Map<String, int[]> numbers(Map<String, List<Element>> lists) {
+        Map<String, int[]> result = new HashMap<>();
+
+        for (Map.Entry<String, List<Element>> entry : lists.entrySet()) {
+            List<Element> list = entry.getValue();
+            int[] n = new int[list.size()];
+
+            for (int i = 0; i < n.length; i++)
+                n[i] = numbers.get(list.get(i));
+
+            result.put(entry.getKey(), n);
+        }
+
+        return result;
+    }
+
+    /**
+     * The index of the first candidate that is not less than a number.
+     */
+    private static final int lowerBound(int[] candidates, int number) {
+        int low = 0;
+        int high = candidates.length;
+
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+
+            if (candidates[mid] < number)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+
+        return low;
+    }
+}
@@ -21,6 +21,10 @@ package org.joox;
  * to indicate that {@link Context#elementSize()} may not be needed for
  * filtering. This is particularly interesting for filters, such as
  * {@link JOOX#tag(String)}, {@link JOOX#all()}, etc
+ * <p>
+ * The {@link Context} passed to a fast filter may be reused for subsequent
+ * elements of the same traversal. Fast filters must therefore not keep any
+ * references to their context after returning from {@link #filter(Context)}.
  *
  * @author Lukas Eder
  */
@@ -0,0 +1,446 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joox;
+
+import static javax.xml.XMLConstants.XMLNS_ATTRIBUTE_NS_URI;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.DocumentFragment;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.ext.DefaultHandler2;
+
+/**
+ * A parsed XML fragment, which can be instantiated in any {@link Document}.
+ * <p>
+ * Fragments are parsed once with SAX into an immutable template. Every
+ * instantiation then creates the fragment's nodes directly with the target
+ * document's factory methods, rather than parsing a new document and
+ * importing its nodes.
+ * <p>
+ * Templates are cached by their text, as the same fragments are often added
+ * repeatedly, e.g. in loops. The maximum number of cached templates can be
+ * configured with the <code>org.joox.fragmentCacheSize</code> system
+ * property. A size of <code>0</code> disables caching.
+ */
+final class Fragment {
+
+    /**
+     * The maximum number of cached templates
+     */
+    private static final int                     SIZE       = Math.max(0, Integer.getInteger("org.joox.fragmentCacheSize", 512));
+
+    /**
+     * The maximum length of cached fragment texts. Longer texts are unlikely
+     * to be repeated.
+     */
+    private static final int                     MAX_LENGTH = 4096;
+
+    /**
+     * Cached templates
+     */
+    private static final Map<String, Fragment>   CACHE      = new ConcurrentHashMap<>();
+
+    /**
+     * A marker for texts that are not well-formed XML fragments
+     */
+    private static final Fragment                INVALID    = new Fragment(new Template[0]);
+
+    /**
+     * The idle readers. Readers are not thread-safe, so they are borrowed from
+     * this bounded pool by one thread at a time.
+     */
+    private static final BlockingQueue<XMLReader> READERS    = new ArrayBlockingQueue<>(
+        2 * Runtime.getRuntime().availableProcessors());
+
+    /**
+     * The shared factory. Access must be synchronized, as factories are not
+     * thread-safe.
+     */
+    private static final SAXParserFactory        FACTORY    = newFactory();
+
+    private final Template[]                     nodes;
+
+    private Fragment(Template[] nodes) {
+        this.nodes = nodes;
+    }
+
+    /**
+     * Parse some text into a {@link DocumentFragment} of a given document.
+     *
+     * @return The fragment, or <code>null</code> if <code>text</code> is not a
+     *         well-formed XML fragment
+     */
+    static final DocumentFragment create(Document document, String text) {
+        Fragment fragment = SIZE == 0 || text.length() > MAX_LENGTH ? null : CACHE.get(text);
+
+        if (fragment == null) {
+            fragment = parse(text);
+
+            if (SIZE > 0 && text.length() <= MAX_LENGTH) {
+
+                // Fragments are not expected to be generated dynamically. If
+                // they are, start over rather than growing without bounds.
+                if (CACHE.size() >= SIZE)
+                    CACHE.clear();
+
+                CACHE.put(text, fragment);
+            }
+        }
+
+        if (fragment == INVALID)
+            return null;
+
+        DocumentFragment result = document.createDocumentFragment();
+
+        for (Template node : fragment.nodes)
+            result.appendChild(node.create(document));
+
+        return result;
+    }
+
+    private static final Fragment parse(String text) {
+        Recorder recorder;
+
+        // There is a processing instruction. We can safely assume valid XML
+        // and parse it as such
+        if (text.startsWith("<?xml"))
+            recorder = new Recorder(0);
+
+        // Any XML document fragment. To be on the safe side, fragments are
+        // wrapped in a dummy root node
+        else {
+            recorder = new Recorder(1);
+            text = "<dummy>" + text + "</dummy>";
+        }
+
+        XMLReader reader = READERS.poll();
+        if (reader == null)
+            reader = newReader();
+
+        reader.setContentHandler(recorder);
+
+        // Readers that failed may be left in an undefined state, and are
+        // discarded rather than released
+        try {
+            reader.setProperty("http://xml.org/sax/properties/lexical-handler", recorder);
+            reader.parse(new InputSource(new StringReader(text)));
+            release(reader);
+            return new Fragment(recorder.nodes.toArray(new Template[0]));
+        }
+
+        // This does not occur
+        catch (IOException e) {
+            return INVALID;
+        }
+
+        // The XML content is invalid
+        catch (SAXException e) {
+            return INVALID;
+        }
+    }
+
+    /**
+     * Return a reader to the pool, once it no longer holds on to its recorder.
+     */
+    private static final void release(XMLReader reader) {
+        reader.setContentHandler(null);
+
+        try {
+            reader.setProperty("http://xml.org/sax/properties/lexical-handler", null);
+        }
+
+        // Readers that cannot be reset are not pooled
+        catch (SAXException ignore) {
+            return;
+        }
+
+        // If the pool is full, the reader is discarded
+        READERS.offer(reader);
+    }
+
+    private static final XMLReader newReader() {
+        try {
+            XMLReader reader;
+
+            synchronized (FACTORY) {
+                reader = FACTORY.newSAXParser().getXMLReader();
+            }
+
+            // [#162] Prevent log output
+            reader.setErrorHandler(new DefaultHandler2());
+            return reader;
+        }
+        catch (ParserConfigurationException | SAXException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static final SAXParserFactory newFactory() {
+        SAXParserFactory factory = SAXParserFactory.newInstance();
+
+        // -----------------------------------------------------------------
+        // [#136] Prevent OWASP attack vectors, like the DocumentBuilders of
+        // BuilderPool
+        try {
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+        }
+        catch (ParserConfigurationException | SAXException ignore) {}
+
+        try {
+            factory.setFeature("http://xml.org/sax/features/external-general-entities", false);
+        }
+        catch (ParserConfigurationException | SAXException ignore) {}
+
+        try {
+            factory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+        }
+        catch (ParserConfigurationException | SAXException ignore) {}
+
+        // [#149] Not implemented on Android
+        try {
+            factory.setXIncludeAware(false);
+        }
+        catch (UnsupportedOperationException ignore) {}
+
+        // -----------------------------------------------------------------
+        // Report namespace declarations as attributes, like the DOM does
+        factory.setNamespaceAware(true);
+
+        try {
+            factory.setFeature("http://xml.org/sax/features/namespace-prefixes", true);
+            factory.setFeature("http://xml.org/sax/features/xmlns-uris", true);
+        }
+        catch (ParserConfigurationException | SAXException e) {
+            throw new RuntimeException(e);
+        }
+
+        return factory;
+    }
+
+    /**
+     * An immutable node of a parsed fragment.
+     */
+    private static final class Template {
+
+        private final short      type;
+        private final String     uri;
+        private final String     name;
+        private final String     value;
+
+        /**
+         * Triples of attribute namespace URIs, qualified names, and values
+         */
+        private final String[]   attributes;
+        private final Template[] children;
+
+        Template(short type, String uri, String name, String value, String[] attributes, Template[] children) {
+            this.type = type;
+            this.uri = uri;
+            this.name = name;
+            this.value = value;
+            this.attributes = attributes;
+            this.children = children;
+        }
+
+        final Node create(Document document) {
+            switch (type) {
+                case Node.ELEMENT_NODE: {
+                    Element element = document.createElementNS(uri, name);
+
+                    for (int i = 0; i < attributes.length; i += 3)
+                        element.setAttributeNS(attributes[i], attributes[i + 1], attributes[i + 2]);
+
+                    for (Template child : children)
+                        element.appendChild(child.create(document));
+
+                    return element;
+                }
+
+                case Node.TEXT_NODE:
+                    return document.createTextNode(value);
+
+                case Node.CDATA_SECTION_NODE:
+                    return document.createCDATASection(value);
+
+                case Node.COMMENT_NODE:
+                    return document.createComment(value);
+
+                case Node.PROCESSING_INSTRUCTION_NODE:
+                    return document.createProcessingInstruction(name, value);
+
+                default:
+                    throw new IllegalStateException("Unsupported node type: " + type);
+            }
+        }
+    }
+
+    /**
+     * A SAX handler recording the nodes of a fragment as {@link Template}s.
+     */
+    private static final class Recorder extends DefaultHandler2 {
+
+        /**
+         * The depth from which elements are recorded. Other nodes are only
+         * recorded inside elements.
+         */
+        private final int                  minDepth;
+        private final List<Template>       nodes;
+        private final Deque<Open>          open;
+        private final StringBuilder        text;
+        private boolean                    cdata;
+
+        Recorder(int minDepth) {
+            this.minDepth = minDepth;
+            this.nodes = new ArrayList<>();
+            this.open = new ArrayDeque<>();
+            this.text = new StringBuilder();
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes atts) {
+            flushText();
+
+            if (open.size() < minDepth) {
+                open.push(new Open(null, null, null));
+                return;
+            }
+
+            String[] attributes = new String[atts.getLength() * 3];
+            for (int i = 0; i < atts.getLength(); i++) {
+                String name = atts.getQName(i);
+                boolean xmlns = "xmlns".equals(name) || name.startsWith("xmlns:");
+
+                attributes[3 * i] = xmlns ? XMLNS_ATTRIBUTE_NS_URI : emptyToNull(atts.getURI(i));
+                attributes[3 * i + 1] = name;
+                attributes[3 * i + 2] = atts.getValue(i);
+            }
+
+            open.push(new Open(emptyToNull(uri), qName, attributes));
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            flushText();
+
+            Open element = open.pop();
+            if (element.name != null)
+                add(new Template(Node.ELEMENT_NODE, element.uri, element.name, null, element.attributes, element.children.toArray(new Template[0])));
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (recording())
+                text.append(ch, start, length);
+        }
+
+        @Override
+        public void startCDATA() {
+            flushText();
+            cdata = true;
+        }
+
+        @Override
+        public void endCDATA() {
+            if (recording())
+                add(new Template(Node.CDATA_SECTION_NODE, null, null, text.toString(), null, null));
+
+            text.setLength(0);
+            cdata = false;
+        }
+
+        @Override
+        public void comment(char[] ch, int start, int length) {
+            flushText();
+
+            if (recording())
+                add(new Template(Node.COMMENT_NODE, null, null, new String(ch, start, length), null, null));
+        }
+
+        @Override
+        public void processingInstruction(String target, String data) {
+            flushText();
+
+            if (recording())
+                add(new Template(Node.PROCESSING_INSTRUCTION_NODE, null, target, data, null, null));
+        }
+
+        /**
+         * Whether nodes other than elements are currently recorded. They are
+         * only recorded inside of elements, including the dummy root element.
+         */
+        private final boolean recording() {
+            return !open.isEmpty();
+        }
+
+        /**
+         * Record adjacent character events as a single text node
+         */
+        private final void flushText() {
+            if (!cdata && text.length() > 0) {
+                add(new Template(Node.TEXT_NODE, null, null, text.toString(), null, null));
+                text.setLength(0);
+            }
+        }
+
+        private final void add(Template node) {
+            Open parent = open.peek();
+
+            if (parent == null || parent.name == null)
+                nodes.add(node);
+            else
+                parent.children.add(node);
+        }
+    }
+
+    /**
+     * An element that is being recorded.
+     */
+    private static final class Open {
+
+        private final String         uri;
+        private final String         name;
+        private final String[]       attributes;
+        private final List<Template> children;
+
+        Open(String uri, String name, String[] attributes) {
+            this.uri = uri;
+            this.name = name;
+            this.attributes = attributes;
+            this.children = new ArrayList<>();
+        }
+    }
+
+    private static final String emptyToNull(String string) {
+        return string == null || string.isEmpty() ? null : string;
+    }
+}
@@ -0,0 +1,1644 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joox;
+
+import static javax.xml.XMLConstants.XMLNS_ATTRIBUTE;
+import static javax.xml.XMLConstants.XMLNS_ATTRIBUTE_NS_URI;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.xml.parsers.DocumentBuilder;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.CDATASection;
+import org.w3c.dom.CharacterData;
+import org.w3c.dom.Comment;
+import org.w3c.dom.DOMConfiguration;
+import org.w3c.dom.DOMException;
+import org.w3c.dom.DOMImplementation;
+import org.w3c.dom.Document;
+import org.w3c.dom.DocumentFragment;
+import org.w3c.dom.DocumentType;
+import org.w3c.dom.Element;
+import org.w3c.dom.EntityReference;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.w3c.dom.ProcessingInstruction;
+import org.w3c.dom.Text;
+import org.w3c.dom.TypeInfo;
+import org.w3c.dom.UserDataHandler;
+
+/**
+ * An immutable snapshot of a DOM document, which can be read by any number of
+ * threads at once.
+ * <p>
+ * The snapshot is a table of nodes in document order, the document being node
+ * <code>0</code>. Each node is described by its type, by the indexes of its
+ * parent, first and last child, and previous and next sibling, and by the
+ * index after its last descendant, such that the descendants of node
+ * <code>i</code> are the nodes <code>i + 1</code> to
+ * <code>ends[i] - 1</code>. Qualified names, together with their local names,
+ * prefixes and namespace URIs, are interned into a shared name table, and all
+ * character data is stored in a single shared <code>char</code> buffer. Attributes are kept in a separate table.
+ * <p>
+ * The table is exposed through read-only implementations of the DOM
+ * interfaces, so that it can be queried through {@link Match}, including
+ * XPath. All methods that would modify the snapshot throw a
+ * {@link DOMException#NO_MODIFICATION_ALLOWED_ERR}. DOM nodes are created
+ * lazily, but there is exactly one DOM node per table entry, as DOM nodes
+ * have identity semantics.
+ * <p>
+ * Entity references are replaced by their children. Document types are not
+ * part of the snapshot.
+ *
+ * @see JOOX#freeze(Document)
+ */
+final class Frozen {
+
+    private static final int                  NONE = -1;
+
+    // Node table
+    private final short[]                     types;
+    private final int[]                       parents;
+    private final int[]                       firstChildren;
+    private final int[]                       lastChildren;
+    private final int[]                       previousSiblings;
+    private final int[]                       nextSiblings;
+    private final int[]                       ends;
+    private final int[]                       names;
+    private final int[]                       textStarts;
+    private final int[]                       textLengths;
+    private final int[]                       attributeStarts;
+    private final int[]                       attributeCounts;
+
+    // Attribute table
+    private final int[]                       attributeOwners;
+    private final int[]                       attributeNames;
+    private final String[]                    attributeValues;
+
+    // Shared names and character data
+    private final Name[]                      nameTable;
+    private final char[]                      text;
+
+    // Document properties
+    private final String                      documentURI;
+    private final String                      inputEncoding;
+    private final String                      xmlEncoding;
+    private final String                      xmlVersion;
+    private final boolean                     xmlStandalone;
+
+    // Lazily created DOM nodes
+    private final AtomicReferenceArray<Node>  nodes;
+    private final AtomicReferenceArray<Attr>  attributes;
+
+    // Build state, discarded after construction
+    private Map<Name, Integer>                interned;
+    private List<Name>                        internedList;
+    private int                               nodeCount;
+    private int                               attributeCount;
+    private int                               textLength;
+
+    /**
+     * Freeze a document.
+     *
+     * @param source The document to freeze
+     * @param lookup Nodes of the document whose frozen indexes are requested.
+     *            The indexes are added to this map as values.
+     */
+    private Frozen(Document source, Map<Node, Integer> lookup) {
+
+        // The first pass counts nodes, attributes and characters
+        nodeCount = 1;
+        walk(source, true, null);
+
+        int n = nodeCount;
+        int a = attributeCount;
+
+        types = new short[n];
+        parents = new int[n];
+        firstChildren = new int[n];
+        lastChildren = new int[n];
+        previousSiblings = new int[n];
+        nextSiblings = new int[n];
+        ends = new int[n];
+        names = new int[n];
+        textStarts = new int[n];
+        textLengths = new int[n];
+        attributeStarts = new int[n];
+        attributeCounts = new int[n];
+
+        attributeOwners = new int[a];
+        attributeNames = new int[a];
+        attributeValues = new String[a];
+
+        text = new char[textLength];
+
+        for (int[] array : new int[][] { parents, firstChildren, lastChildren, previousSiblings, nextSiblings, names })
+            Arrays.fill(array, NONE);
+
+        types[0] = Node.DOCUMENT_NODE;
+        ends[0] = n;
+
+        // The second pass fills the tables
+        interned = new HashMap<>();
+        internedList = new ArrayList<>();
+        nodeCount = 1;
+        attributeCount = 0;
+        textLength = 0;
+        walk(source, false, lookup);
+
+        nameTable = internedList.toArray(new Name[0]);
+        interned = null;
+        internedList = null;
+
+        documentURI = source.getDocumentURI();
+        inputEncoding = source.getInputEncoding();
+        xmlEncoding = source.getXmlEncoding();
+        xmlVersion = source.getXmlVersion();
+        xmlStandalone = source.getXmlStandalone();
+
+        nodes = new AtomicReferenceArray<>(n);
+        attributes = new AtomicReferenceArray<>(a);
+    }
+
+    /**
+     * Freeze the documents of a list of elements, and return the frozen
+     * elements in the same order.
+     * <p>
+     * Elements that are not attached to their owner document are frozen in a
+     * document of their own.
+     */
+    static final List<Element> freeze(List<Element> elements) {
+        Map<Node, Integer> lookup = new IdentityHashMap<>();
+        Map<Document, Frozen> documents = new IdentityHashMap<>();
+        List<Element> result = new ArrayList<>(elements.size());
+
+        for (Element element : elements)
+            lookup.put(element, null);
+
+        for (Element element : elements) {
+            if (element instanceof FrozenNode) {
+                result.add(element);
+                continue;
+            }
+
+            Document document = element.getOwnerDocument();
+            Frozen frozen = documents.get(document);
+
+            if (frozen == null)
+                documents.put(document, frozen = new Frozen(document, lookup));
+
+            Integer index = lookup.get(element);
+
+            // Detached elements are not reachable from their document
+            if (index == null) {
+                Document copy = BuilderPool.newDocument();
+                copy.appendChild(copy.importNode(element, true));
+                result.add((Element) new Frozen(copy, lookup).node(1));
+            }
+            else {
+                result.add((Element) frozen.node(index));
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Freeze a document.
+     */
+    static final Document freeze(Document document) {
+        if (document instanceof FrozenNode)
+            return document;
+        else
+            return (Document) new Frozen(document, new IdentityHashMap<>()).node(0);
+    }
+
+    /**
+     * Whether a node is part of a frozen document.
+     */
+    static final boolean isFrozen(Node node) {
+        return node instanceof FrozenNode;
+    }
+
+    // -------------------------------------------------------------------------
+    // XXX: Construction
+    // -------------------------------------------------------------------------
+
+    /**
+     * Walk the source document in document order, visiting all nodes except
+     * the document itself.
+     */
+    private final void walk(Document source, boolean count, Map<Node, Integer> lookup) {
+        int[] stack = new int[16];
+        int depth = 0;
+        stack[0] = 0;
+
+        Node node = source.getFirstChild();
+
+        while (node != null) {
+            short type = node.getNodeType();
+            boolean descend = false;
+
+            if (type == Node.ELEMENT_NODE) {
+                int index = count ? countElement(node) : addElement((Element) node, stack[depth]);
+
+                if (lookup != null && lookup.containsKey(node))
+                    lookup.put(node, index);
+
+                if (++depth == stack.length)
+                    stack = Arrays.copyOf(stack, depth * 2);
+
+                stack[depth] = index;
+                descend = true;
+            }
+            else if (type == Node.TEXT_NODE || type == Node.CDATA_SECTION_NODE || type == Node.COMMENT_NODE || type == Node.PROCESSING_INSTRUCTION_NODE) {
+                if (count)
+                    countCharacterData(node);
+                else
+                    addCharacterData(node, stack[depth]);
+            }
+
+            // Entity references are replaced by their children
+            else if (type == Node.ENTITY_REFERENCE_NODE) {
+                descend = true;
+            }
+
+            Node child = descend ? node.getFirstChild() : null;
+
+            if (child != null) {
+                node = child;
+                continue;
+            }
+
+            if (descend && type == Node.ELEMENT_NODE)
+                depth = leave(count, stack, depth);
+
+            while (node.getNextSibling() == null) {
+                node = node.getParentNode();
+
+                if (node == source)
+                    return;
+                else if (node.getNodeType() == Node.ELEMENT_NODE)
+                    depth = leave(count, stack, depth);
+            }
+
+            node = node.getNextSibling();
+        }
+    }
+
+    private final int leave(boolean count, int[] stack, int depth) {
+        if (!count)
+            ends[stack[depth]] = nodeCount;
+
+        return depth - 1;
+    }
+
+    private final int countElement(Node node) {
+        if (node.hasAttributes())
+            attributeCount += node.getAttributes().getLength();
+
+        return nodeCount++;
+    }
+
+    private final void countCharacterData(Node node) {
+        textLength += data(node).length();
+        nodeCount++;
+    }
+
+    private final int addElement(Element element, int parent) {
+        int index = add(Node.ELEMENT_NODE, parent);
+
+        names[index] = intern(element.getTagName(), element.getLocalName(), element.getPrefix(), element.getNamespaceURI());
+        attributeStarts[index] = attributeCount;
+
+        if (element.hasAttributes()) {
+            NamedNodeMap map = element.getAttributes();
+            int length = map.getLength();
+
+            for (int i = 0; i < length; i++) {
+                Node attr = map.item(i);
+                int a = attributeCount++;
+
+                attributeOwners[a] = index;
+                attributeNames[a] = intern(attr.getNodeName(), attr.getLocalName(), attr.getPrefix(), attr.getNamespaceURI());
+                attributeValues[a] = attr.getNodeValue();
+            }
+
+            attributeCounts[index] = length;
+        }
+
+        return index;
+    }
+
+    private final void addCharacterData(Node node, int parent) {
+        int index = add(node.getNodeType(), parent);
+        String data = data(node);
+
+        if (node.getNodeType() == Node.PROCESSING_INSTRUCTION_NODE)
+            names[index] = intern(((ProcessingInstruction) node).getTarget(), null, null, null);
+
+        data.getChars(0, data.length(), text, textLength);
+        textStarts[index] = textLength;
+        textLengths[index] = data.length();
+        textLength += data.length();
+        ends[index] = index + 1;
+    }
+
+    private final int add(short type, int parent) {
+        int index = nodeCount++;
+        int previous = lastChildren[parent];
+
+        types[index] = type;
+        parents[index] = parent;
+        previousSiblings[index] = previous;
+
+        if (previous == NONE)
+            firstChildren[parent] = index;
+        else
+            nextSiblings[previous] = index;
+
+        lastChildren[parent] = index;
+        return index;
+    }
+
+    private static final String data(Node node) {
+        if (node.getNodeType() == Node.PROCESSING_INSTRUCTION_NODE)
+            return ((ProcessingInstruction) node).getData();
+        else
+            return ((CharacterData) node).getData();
+    }
+
+    private final int intern(String name, String localName, String prefix, String namespaceURI) {
+        Name key = new Name(name, localName, prefix, namespaceURI);
+        Integer result = interned.get(key);
+
+        if (result == null) {
+            interned.put(key, result = internedList.size());
+            internedList.add(key);
+        }
+
+        return result;
+    }
+
+    // -------------------------------------------------------------------------
+    // XXX: Table access
+    // -------------------------------------------------------------------------
+
+    private final Name name(int index) {
+        return nameTable[names[index]];
+    }
+
+    private final Name attributeName(int index) {
+        return nameTable[attributeNames[index]];
+    }
+
+    private final String text(int index) {
+        return new String(text, textStarts[index], textLengths[index]);
+    }
+
+    /**
+     * The DOM node for a table entry, or <code>null</code> for {@link #NONE}.
+     */
+    final Node node(int index) {
+        if (index == NONE)
+            return null;
+
+        Node result = nodes.get(index);
+
+        if (result == null) {
+            switch (types[index]) {
+                case Node.DOCUMENT_NODE:
+                    result = new FrozenDocument(this, index);
+                    break;
+                case Node.ELEMENT_NODE:
+                    result = new FrozenElement(this, index);
+                    break;
+                case Node.TEXT_NODE:
+                    result = new FrozenText(this, index);
+                    break;
+                case Node.CDATA_SECTION_NODE:
+                    result = new FrozenCDATASection(this, index);
+                    break;
+                case Node.COMMENT_NODE:
+                    result = new FrozenComment(this, index);
+                    break;
+                default:
+                    result = new FrozenProcessingInstruction(this, index);
+                    break;
+            }
+
+            // Another thread may have been faster
+            if (!nodes.compareAndSet(index, null, result))
+                result = nodes.get(index);
+        }
+
+        return result;
+    }
+
+    /**
+     * The DOM node for an attribute table entry.
+     */
+    final Attr attribute(int index) {
+        Attr result = attributes.get(index);
+
+        if (result == null && !attributes.compareAndSet(index, null, result = new FrozenAttr(this, index)))
+            result = attributes.get(index);
+
+        return result;
+    }
+
+    /**
+     * The index of an attribute of an element, or {@link #NONE}.
+     */
+    private final int attribute(int element, String namespaceURI, String localName, String name) {
+        int start = attributeStarts[element];
+        int end = start + attributeCounts[element];
+
+        for (int a = start; a < end; a++) {
+            Name n = attributeName(a);
+
+            if (name != null) {
+                if (name.equals(n.name))
+                    return a;
+            }
+            else if (localName.equals(n.localName == null ? n.name : n.localName)
+                && Objects.equals(emptyToNull(namespaceURI), n.namespaceURI)) {
+                return a;
+            }
+        }
+
+        return NONE;
+    }
+
+    /**
+     * The descendant elements of a node with a given name.
+     */
+    private final NodeList elements(int index, String namespaceURI, String localName, String name) {
+        int[] result = new int[16];
+        int size = 0;
+
+        for (int i = index + 1; i < ends[index]; i++) {
+            if (types[i] != Node.ELEMENT_NODE)
+                continue;
+
+            Name n = name(i);
+
+            if (name != null) {
+                if (!"*".equals(name) && !name.equals(n.name))
+                    continue;
+            }
+            else {
+                if (!"*".equals(localName) && !localName.equals(n.localName))
+                    continue;
+                if (!"*".equals(namespaceURI) && !Objects.equals(emptyToNull(namespaceURI), n.namespaceURI))
+                    continue;
+            }
+
+            if (size == result.length)
+                result = Arrays.copyOf(result, size * 2);
+
+            result[size++] = i;
+        }
+
+        return new FrozenNodeList(this, result, size);
+    }
+
+    private static final String emptyToNull(String string) {
+        return string == null || string.isEmpty() ? null : string;
+    }
+
+    private static final DOMException readOnly() {
+        return new DOMException(DOMException.NO_MODIFICATION_ALLOWED_ERR, "Frozen documents cannot be modified");
+    }
+
+    private static final DOMException notSupported() {
+        return new DOMException(DOMException.NOT_SUPPORTED_ERR, "Operation not supported by frozen documents");
+    }
+
+    // -------------------------------------------------------------------------
+    // XXX: DOM implementation
+    // -------------------------------------------------------------------------
+
+    /**
+     * Common behaviour of all frozen DOM nodes, including attributes.
+     */
+    private static abstract class ReadOnlyNode implements Node {
+
+        final Frozen frozen;
+        final int    index;
+
+        ReadOnlyNode(Frozen frozen, int index) {
+            this.frozen = frozen;
+            this.index = index;
+        }
+
+        @Override
+        public final Document getOwnerDocument() {
+            return getNodeType() == DOCUMENT_NODE ? null : (Document) frozen.node(0);
+        }
+
+        @Override
+        public void setNodeValue(String nodeValue) {
+            throw readOnly();
+        }
+
+        @Override
+        public final Node insertBefore(Node newChild, Node refChild) {
+            throw readOnly();
+        }
+
+        @Override
+        public final Node replaceChild(Node newChild, Node oldChild) {
+            throw readOnly();
+        }
+
+        @Override
+        public final Node removeChild(Node oldChild) {
+            throw readOnly();
+        }
+
+        @Override
+        public final Node appendChild(Node newChild) {
+            throw readOnly();
+        }
+
+        @Override
+        public final Node cloneNode(boolean deep) {
+            throw notSupported();
+        }
+
+        @Override
+        public final void normalize() {}
+
+        @Override
+        public final boolean isSupported(String feature, String version) {
+            return false;
+        }
+
+        @Override
+        public final void setPrefix(String prefix) {
+            throw readOnly();
+        }
+
+        @Override
+        public final String getBaseURI() {
+            return frozen.documentURI;
+        }
+
+        @Override
+        public final void setTextContent(String textContent) {
+            throw readOnly();
+        }
+
+        @Override
+        public final boolean isSameNode(Node other) {
+            return this == other;
+        }
+
+        @Override
+        public final String lookupPrefix(String namespaceURI) {
+            if (namespaceURI == null)
+                return null;
+
+            for (Node node = scope(); node instanceof Element; node = node.getParentNode()) {
+                if (namespaceURI.equals(node.getNamespaceURI()) && node.getPrefix() != null)
+                    return node.getPrefix();
+
+                NamedNodeMap map = node.getAttributes();
+                for (int i = 0; i < map.getLength(); i++) {
+                    Node attr = map.item(i);
+
+                    if (XMLNS_ATTRIBUTE.equals(attr.getPrefix()) && namespaceURI.equals(attr.getNodeValue()))
+                        return attr.getLocalName();
+                }
+            }
+
+            return null;
+        }
+
+        @Override
+        public final boolean isDefaultNamespace(String namespaceURI) {
+            return Objects.equals(emptyToNull(namespaceURI), lookupNamespaceURI(null));
+        }
+
+        @Override
+        public final String lookupNamespaceURI(String prefix) {
+            for (Node node = scope(); node instanceof Element; node = node.getParentNode()) {
+                if (node.getNamespaceURI() != null && Objects.equals(prefix, node.getPrefix()))
+                    return node.getNamespaceURI();
+
+                NamedNodeMap map = node.getAttributes();
+                for (int i = 0; i < map.getLength(); i++) {
+                    Node attr = map.item(i);
+
+                    if (!XMLNS_ATTRIBUTE_NS_URI.equals(attr.getNamespaceURI()))
+                        continue;
+
+                    if (prefix == null ? XMLNS_ATTRIBUTE.equals(attr.getNodeName()) : XMLNS_ATTRIBUTE.equals(attr.getPrefix()) && prefix.equals(attr.getLocalName()))
+                        return emptyToNull(attr.getNodeValue());
+                }
+            }
+
+            return null;
+        }
+
+        /**
+         * The element from which namespaces are looked up.
+         */
+        abstract Node scope();
+
+        @Override
+        public final boolean isEqualNode(Node other) {
+            if (this == other)
+                return true;
+            if (other == null || getNodeType() != other.getNodeType())
+                return false;
+            if (!Objects.equals(getNodeName(), other.getNodeName())
+                || !Objects.equals(getLocalName(), other.getLocalName())
+                || !Objects.equals(getNamespaceURI(), other.getNamespaceURI())
+                || !Objects.equals(getPrefix(), other.getPrefix())
+                || !Objects.equals(getNodeValue(), other.getNodeValue()))
+                return false;
+
+            NamedNodeMap a1 = getAttributes();
+            NamedNodeMap a2 = other.getAttributes();
+
+            if (a1 != null) {
+                if (a2 == null || a1.getLength() != a2.getLength())
+                    return false;
+
+                for (int i = 0; i < a1.getLength(); i++) {
+                    Node attr = a1.item(i);
+                    Node match = attr.getLocalName() == null ? a2.getNamedItem(attr.getNodeName()) : a2.getNamedItemNS(attr.getNamespaceURI(), attr.getLocalName());
+
+                    if (match == null || !attr.isEqualNode(match))
+                        return false;
+                }
+            }
+            else if (a2 != null) {
+                return false;
+            }
+
+            // Attribute values have already been compared
+            if (getNodeType() == ATTRIBUTE_NODE)
+                return true;
+
+            NodeList c1 = getChildNodes();
+            NodeList c2 = other.getChildNodes();
+
+            if (c1.getLength() != c2.getLength())
+                return false;
+
+            for (int i = 0; i < c1.getLength(); i++)
+                if (!c1.item(i).isEqualNode(c2.item(i)))
+                    return false;
+
+            return true;
+        }
+
+        @Override
+        public final Object getFeature(String feature, String version) {
+            return null;
+        }
+
+        @Override
+        public final Object setUserData(String key, Object data, UserDataHandler handler) {
+            throw readOnly();
+        }
+
+        @Override
+        public final Object getUserData(String key) {
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return "[" + getNodeName() + ": " + getNodeValue() + "]";
+        }
+    }
+
+    /**
+     * A node of the node table.
+     */
+    private static abstract class FrozenNode extends ReadOnlyNode {
+
+        FrozenNode(Frozen frozen, int index) {
+            super(frozen, index);
+        }
+
+        @Override
+        public final short getNodeType() {
+            return frozen.types[index];
+        }
+
+        @Override
+        public final Node getParentNode() {
+            return frozen.node(frozen.parents[index]);
+        }
+
+        @Override
+        public final NodeList getChildNodes() {
+            int[] result = new int[8];
+            int size = 0;
+
+            for (int child = frozen.firstChildren[index]; child != NONE; child = frozen.nextSiblings[child]) {
+                if (size == result.length)
+                    result = Arrays.copyOf(result, size * 2);
+
+                result[size++] = child;
+            }
+
+            return new FrozenNodeList(frozen, result, size);
+        }
+
+        @Override
+        public final Node getFirstChild() {
+            return frozen.node(frozen.firstChildren[index]);
+        }
+
+        @Override
+        public final Node getLastChild() {
+            return frozen.node(frozen.lastChildren[index]);
+        }
+
+        @Override
+        public final Node getPreviousSibling() {
+            return frozen.node(frozen.previousSiblings[index]);
+        }
+
+        @Override
+        public final Node getNextSibling() {
+            return frozen.node(frozen.nextSiblings[index]);
+        }
+
+        @Override
+        public NamedNodeMap getAttributes() {
+            return null;
+        }
+
+        @Override
+        public final boolean hasChildNodes() {
+            return frozen.firstChildren[index] != NONE;
+        }
+
+        @Override
+        public String getNamespaceURI() {
+            return null;
+        }
+
+        @Override
+        public String getPrefix() {
+            return null;
+        }
+
+        @Override
+        public String getLocalName() {
+            return null;
+        }
+
+        @Override
+        public boolean hasAttributes() {
+            return false;
+        }
+
+        @Override
+        public final short compareDocumentPosition(Node other) {
+            if (other == this)
+                return 0;
+
+            if (other instanceof FrozenAttr && ((FrozenAttr) other).frozen == frozen) {
+                FrozenAttr attr = (FrozenAttr) other;
+                int owner = frozen.attributeOwners[attr.index];
+
+                if (owner == index)
+                    return DOCUMENT_POSITION_CONTAINED_BY | DOCUMENT_POSITION_FOLLOWING;
+                else
+                    return position(owner, true);
+            }
+
+            if (other instanceof FrozenNode && ((FrozenNode) other).frozen == frozen)
+                return position(((FrozenNode) other).index, false);
+
+            return (short) (DOCUMENT_POSITION_DISCONNECTED | DOCUMENT_POSITION_IMPLEMENTATION_SPECIFIC
+                | (System.identityHashCode(this) < System.identityHashCode(other) ? DOCUMENT_POSITION_FOLLOWING : DOCUMENT_POSITION_PRECEDING));
+        }
+
+        /**
+         * The position of another table entry relative to this one.
+         */
+        final short position(int other, boolean attribute) {
+            if (other > index && other < frozen.ends[index])
+                return DOCUMENT_POSITION_CONTAINED_BY | DOCUMENT_POSITION_FOLLOWING;
+            else if (other < index && index < frozen.ends[other])
+                return attribute ? DOCUMENT_POSITION_PRECEDING : DOCUMENT_POSITION_CONTAINS | DOCUMENT_POSITION_PRECEDING;
+            else if (other == index)
+                return DOCUMENT_POSITION_FOLLOWING;
+            else
+                return other < index ? DOCUMENT_POSITION_PRECEDING : DOCUMENT_POSITION_FOLLOWING;
+        }
+
+        @Override
+        final Node scope() {
+            for (int i = index; i != NONE; i = frozen.parents[i])
+                if (frozen.types[i] == ELEMENT_NODE)
+                    return frozen.node(i);
+
+            return frozen.node(0) == this ? ((Document) this).getDocumentElement() : null;
+        }
+    }
+
+    private static final class FrozenDocument extends FrozenNode implements Document {
+
+        FrozenDocument(Frozen frozen, int index) {
+            super(frozen, index);
+        }
+
+        @Override
+        public final String getNodeName() {
+            return "#document";
+        }
+
+        @Override
+        public final String getNodeValue() {
+            return null;
+        }
+
+        @Override
+        public final String getTextContent() {
+            return null;
+        }
+
+        @Override
+        public final DocumentType getDoctype() {
+            return null;
+        }
+
+        @Override
+        public final DOMImplementation getImplementation() {
+            DocumentBuilder builder = BuilderPool.borrow();
+
+            try {
+                return builder.getDOMImplementation();
+            }
+            finally {
+                BuilderPool.release(builder);
+            }
+        }
+
+        @Override
+        public final Element getDocumentElement() {
+            for (int child = frozen.firstChildren[index]; child != NONE; child = frozen.nextSiblings[child])
+                if (frozen.types[child] == ELEMENT_NODE)
+                    return (Element) frozen.node(child);
+
+            return null;
+        }
+
+        @Override
+        public final Element createElement(String tagName) {
+            throw readOnly();
+        }
+
+        @Override
+        public final DocumentFragment createDocumentFragment() {
+            throw readOnly();
+        }
+
+        @Override
+        public final Text createTextNode(String data) {
+            throw readOnly();
+        }
+
+        @Override
+        public final Comment createComment(String data) {
+            throw readOnly();
+        }
+
+        @Override
+        public final CDATASection createCDATASection(String data) {
+            throw readOnly();
+        }
+
+        @Override
+        public final ProcessingInstruction createProcessingInstruction(String target, String data) {
+            throw readOnly();
+        }
+
+        @Override
+        public final Attr createAttribute(String name) {
+            throw readOnly();
+        }
+
+        @Override
+        public final EntityReference createEntityReference(String name) {
+            throw readOnly();
+        }
+
+        @Override
+        public final NodeList getElementsByTagName(String tagname) {
+            return frozen.elements(index, null, null, tagname);
+        }
+
+        @Override
+        public final Node importNode(Node importedNode, boolean deep) {
+            throw readOnly();
+        }
+
+        @Override
+        public final Element createElementNS(String namespaceURI, String qualifiedName) {
+            throw readOnly();
+        }
+
+        @Override
+        public final Attr createAttributeNS(String namespaceURI, String qualifiedName) {
+            throw readOnly();
+        }
+
+        @Override
+        public final NodeList getElementsByTagNameNS(String namespaceURI, String localName) {
+            return frozen.elements(index, namespaceURI, localName, null);
+        }
+
+        @Override
+        public final Element getElementById(String elementId) {
+            return null;
+        }
+
+        @Override
+        public final String getInputEncoding() {
+            return frozen.inputEncoding;
+        }
+
+        @Override
+        public final String getXmlEncoding() {
+            return frozen.xmlEncoding;
+        }
+
+        @Override
+        public final boolean getXmlStandalone() {
+            return frozen.xmlStandalone;
+        }
+
+        @Override
+        public final void setXmlStandalone(boolean xmlStandalone) {
+            throw readOnly();
+        }
+
+        @Override
+        public final String getXmlVersion() {
+            return frozen.xmlVersion;
+        }
+
+        @Override
+        public final void setXmlVersion(String xmlVersion) {
+            throw readOnly();
+        }
+
+        @Override
+        public final boolean getStrictErrorChecking() {
+            return true;
+        }
+
+        @Override
+        public final void setStrictErrorChecking(boolean strictErrorChecking) {
+            throw readOnly();
+        }
+
+        @Override
+        public final String getDocumentURI() {
+            return frozen.documentURI;
+        }
+
+        @Override
+        public final void setDocumentURI(String documentURI) {
+            throw readOnly();
+        }
+
+        @Override
+        public final Node adoptNode(Node source) {
+            throw readOnly();
+        }
+
+        @Override
+        public final DOMConfiguration getDomConfig() {
+            return null;
+        }
+
+        @Override
+        public final void normalizeDocument() {}
+
+        @Override
+        public final Node renameNode(Node n, String namespaceURI, String qualifiedName) {
+            throw readOnly();
+        }
+    }
+
+    private static final class FrozenElement extends FrozenNode implements Element {
+
+        FrozenElement(Frozen frozen, int index) {
+            super(frozen, index);
+        }
+
+        @Override
+        public final String getNodeName() {
+            return getTagName();
+        }
+
+        @Override
+        public final String getNodeValue() {
+            return null;
+        }
+
+        @Override
+        public final String getTagName() {
+            return frozen.name(index).name;
+        }
+
+        @Override
+        public final String getNamespaceURI() {
+            return frozen.name(index).namespaceURI;
+        }
+
+        @Override
+        public final String getPrefix() {
+            return frozen.name(index).prefix;
+        }
+
+        @Override
+        public final String getLocalName() {
+            return frozen.name(index).localName;
+        }
+
+        @Override
+        public final String getTextContent() {
+            int length = 0;
+
+            for (int i = index + 1; i < frozen.ends[index]; i++)
+                if (frozen.types[i] == TEXT_NODE || frozen.types[i] == CDATA_SECTION_NODE)
+                    length += frozen.textLengths[i];
+
+            char[] result = new char[length];
+            int position = 0;
+
+            for (int i = index + 1; i < frozen.ends[index]; i++) {
+                if (frozen.types[i] == TEXT_NODE || frozen.types[i] == CDATA_SECTION_NODE) {
+                    System.arraycopy(frozen.text, frozen.textStarts[i], result, position, frozen.textLengths[i]);
+                    position += frozen.textLengths[i];
+                }
+            }
+
+            return new String(result);
+        }
+
+        @Override
+        public final NamedNodeMap getAttributes() {
+            return new FrozenNamedNodeMap(frozen, index);
+        }
+
+        @Override
+        public final boolean hasAttributes() {
+            return frozen.attributeCounts[index] > 0;
+        }
+
+        @Override
+        public final String getAttribute(String name) {
+            int a = frozen.attribute(index, null, null, name);
+            return a == NONE ? "" : frozen.attributeValues[a];
+        }
+
+        @Override
+        public final void setAttribute(String name, String value) {
+            throw readOnly();
+        }
+
+        @Override
+        public final void removeAttribute(String name) {
+            throw readOnly();
+        }
+
+        @Override
+        public final Attr getAttributeNode(String name) {
+            int a = frozen.attribute(index, null, null, name);
+            return a == NONE ? null : frozen.attribute(a);
+        }
+
+        @Override
+        public final Attr setAttributeNode(Attr newAttr) {
+            throw readOnly();
+        }
+
+        @Override
+        public final Attr removeAttributeNode(Attr oldAttr) {
+            throw readOnly();
+        }
+
+        @Override
+        public final NodeList getElementsByTagName(String name) {
+            return frozen.elements(index, null, null, name);
+        }
+
+        @Override
+        public final String getAttributeNS(String namespaceURI, String localName) {
+            int a = frozen.attribute(index, namespaceURI, localName, null);
+            return a == NONE ? "" : frozen.attributeValues[a];
+        }
+
+        @Override
+        public final void setAttributeNS(String namespaceURI, String qualifiedName, String value) {
+            throw readOnly();
+        }
+
+        @Override
+        public final void removeAttributeNS(String namespaceURI, String localName) {
+            throw readOnly();
+        }
+
+        @Override
+        public final Attr getAttributeNodeNS(String namespaceURI, String localName) {
+            int a = frozen.attribute(index, namespaceURI, localName, null);
+            return a == NONE ? null : frozen.attribute(a);
+        }
+
+        @Override
+        public final Attr setAttributeNodeNS(Attr newAttr) {
+            throw readOnly();
+        }
+
+        @Override
+        public final NodeList getElementsByTagNameNS(String namespaceURI, String localName) {
+            return frozen.elements(index, namespaceURI, localName, null);
+        }
+
+        @Override
+        public final boolean hasAttribute(String name) {
+            return frozen.attribute(index, null, null, name) != NONE;
+        }
+
+        @Override
+        public final boolean hasAttributeNS(String namespaceURI, String localName) {
+            return frozen.attribute(index, namespaceURI, localName, null) != NONE;
+        }
+
+        @Override
+        public final TypeInfo getSchemaTypeInfo() {
+            return NO_TYPE;
+        }
+
+        @Override
+        public final void setIdAttribute(String name, boolean isId) {
+            throw readOnly();
+        }
+
+        @Override
+        public final void setIdAttributeNS(String namespaceURI, String localName, boolean isId) {
+            throw readOnly();
+        }
+
+        @Override
+        public final void setIdAttributeNode(Attr idAttr, boolean isId) {
+            throw readOnly();
+        }
+    }
+
+    /**
+     * Common behaviour of text, CDATA section, comment and processing
+     * instruction nodes.
+     */
+    private static abstract class FrozenCharacterData extends FrozenNode {
+
+        FrozenCharacterData(Frozen frozen, int index) {
+            super(frozen, index);
+        }
+
+        @Override
+        public final String getNodeValue() {
+            return frozen.text(index);
+        }
+
+        @Override
+        public final String getTextContent() {
+            return getNodeValue();
+        }
+
+        public final String getData() {
+            return getNodeValue();
+        }
+
+        public final void setData(String data) {
+            throw readOnly();
+        }
+
+        public final int getLength() {
+            return frozen.textLengths[index];
+        }
+
+        public final String substringData(int offset, int count) {
+            if (offset < 0 || offset > getLength() || count < 0)
+                throw new DOMException(DOMException.INDEX_SIZE_ERR, "Index out of bounds: " + offset);
+
+            return new String(frozen.text, frozen.textStarts[index] + offset, Math.min(count, getLength() - offset));
+        }
+
+        public final void appendData(String arg) {
+            throw readOnly();
+        }
+
+        public final void insertData(int offset, String arg) {
+            throw readOnly();
+        }
+
+        public final void deleteData(int offset, int count) {
+            throw readOnly();
+        }
+
+        public final void replaceData(int offset, int count, String arg) {
+            throw readOnly();
+        }
+    }
+
+    private static class FrozenText extends FrozenCharacterData implements Text {
+
+        FrozenText(Frozen frozen, int index) {
+            super(frozen, index);
+        }
+
+        @Override
+        public String getNodeName() {
+            return "#text";
+        }
+
+        @Override
+        public final Text splitText(int offset) {
+            throw readOnly();
+        }
+
+        @Override
+        public final boolean isElementContentWhitespace() {
+            return false;
+        }
+
+        @Override
+        public final String getWholeText() {
+            int first = index;
+            while (isText(frozen.previousSiblings[first]))
+                first = frozen.previousSiblings[first];
+
+            StringBuilder sb = new StringBuilder();
+            for (int i = first; isText(i); i = frozen.nextSiblings[i])
+                sb.append(frozen.text, frozen.textStarts[i], frozen.textLengths[i]);
+
+            return sb.toString();
+        }
+
+        private final boolean isText(int i) {
+            return i != NONE && (frozen.types[i] == TEXT_NODE || frozen.types[i] == CDATA_SECTION_NODE);
+        }
+
+        @Override
+        public final Text replaceWholeText(String content) {
+            throw readOnly();
+        }
+    }
+
+    private static final class FrozenCDATASection extends FrozenText implements CDATASection {
+
+        FrozenCDATASection(Frozen frozen, int index) {
+            super(frozen, index);
+        }
+
+        @Override
+        public final String getNodeName() {
+            return "#cdata-section";
+        }
+    }
+
+    private static final class FrozenComment extends FrozenCharacterData implements Comment {
+
+        FrozenComment(Frozen frozen, int index) {
+            super(frozen, index);
+        }
+
+        @Override
+        public final String getNodeName() {
+            return "#comment";
+        }
+    }
+
+    private static final class FrozenProcessingInstruction extends FrozenCharacterData implements ProcessingInstruction {
+
+        FrozenProcessingInstruction(Frozen frozen, int index) {
+            super(frozen, index);
+        }
+
+        @Override
+        public final String getNodeName() {
+            return getTarget();
+        }
+
+        @Override
+        public final String getTarget() {
+            return frozen.name(index).name;
+        }
+    }
+
+    private static final class FrozenAttr extends ReadOnlyNode implements Attr {
+
+        FrozenAttr(Frozen frozen, int index) {
+            super(frozen, index);
+        }
+
+        @Override
+        public final String getNodeName() {
+            return getName();
+        }
+
+        @Override
+        public final String getNodeValue() {
+            return getValue();
+        }
+
+        @Override
+        public final short getNodeType() {
+            return ATTRIBUTE_NODE;
+        }
+
+        @Override
+        public final Node getParentNode() {
+            return null;
+        }
+
+        @Override
+        public final NodeList getChildNodes() {
+            return new FrozenNodeList(frozen, new int[0], 0);
+        }
+
+        @Override
+        public final Node getFirstChild() {
+            return null;
+        }
+
+        @Override
+        public final Node getLastChild() {
+            return null;
+        }
+
+        @Override
+        public final Node getPreviousSibling() {
+            return null;
+        }
+
+        @Override
+        public final Node getNextSibling() {
+            return null;
+        }
+
+        @Override
+        public final NamedNodeMap getAttributes() {
+            return null;
+        }
+
+        @Override
+        public final boolean hasChildNodes() {
+            return false;
+        }
+
+        @Override
+        public final String getNamespaceURI() {
+            return frozen.attributeName(index).namespaceURI;
+        }
+
+        @Override
+        public final String getPrefix() {
+            return frozen.attributeName(index).prefix;
+        }
+
+        @Override
+        public final String getLocalName() {
+            return frozen.attributeName(index).localName;
+        }
+
+        @Override
+        public final boolean hasAttributes() {
+            return false;
+        }
+
+        @Override
+        public final short compareDocumentPosition(Node other) {
+            if (other == this)
+                return 0;
+
+            Node owner = getOwnerElement();
+
+            if (other == owner)
+                return DOCUMENT_POSITION_CONTAINS | DOCUMENT_POSITION_PRECEDING;
+
+            short position = owner.compareDocumentPosition(other);
+
+            // Attributes are not contained by their owner's ancestors
+            if (other instanceof FrozenAttr && ((FrozenAttr) other).getOwnerElement() == owner)
+                return ((FrozenAttr) other).index < index ? DOCUMENT_POSITION_PRECEDING : DOCUMENT_POSITION_FOLLOWING;
+            else
+                return (short) (position & ~DOCUMENT_POSITION_CONTAINED_BY);
+        }
+
+        @Override
+        public final String getTextContent() {
+            return getValue();
+        }
+
+        @Override
+        final Node scope() {
+            return getOwnerElement();
+        }
+
+        @Override
+        public final String getName() {
+            return frozen.attributeName(index).name;
+        }
+
+        @Override
+        public final boolean getSpecified() {
+            return true;
+        }
+
+        @Override
+        public final String getValue() {
+            return frozen.attributeValues[index];
+        }
+
+        @Override
+        public final void setValue(String value) {
+            throw readOnly();
+        }
+
+        @Override
+        public final Element getOwnerElement() {
+            return (Element) frozen.node(frozen.attributeOwners[index]);
+        }
+
+        @Override
+        public final TypeInfo getSchemaTypeInfo() {
+            return NO_TYPE;
+        }
+
+        @Override
+        public final boolean isId() {
+            return false;
+        }
+    }
+
+    private static final class FrozenNodeList implements NodeList {
+
+        private final Frozen frozen;
+        private final int[]  indexes;
+        private final int    length;
+
+        FrozenNodeList(Frozen frozen, int[] indexes, int length) {
+            this.frozen = frozen;
+            this.indexes = indexes;
+            this.length = length;
+        }
+
+        @Override
+        public final Node item(int i) {
+            return i >= 0 && i < length ? frozen.node(indexes[i]) : null;
+        }
+
+        @Override
+        public final int getLength() {
+            return length;
+        }
+    }
+
+    private static final class FrozenNamedNodeMap implements NamedNodeMap {
+
+        private final Frozen frozen;
+        private final int    element;
+
+        FrozenNamedNodeMap(Frozen frozen, int element) {
+            this.frozen = frozen;
+            this.element = element;
+        }
+
+        @Override
+        public final Node getNamedItem(String name) {
+            int a = frozen.attribute(element, null, null, name);
+            return a == NONE ? null : frozen.attribute(a);
+        }
+
+        @Override
+        public final Node setNamedItem(Node arg) {
+            throw readOnly();
+        }
+
+        @Override
+        public final Node removeNamedItem(String name) {
+            throw readOnly();
+        }
+
+        @Override
+        public final Node item(int i) {
+            return i >= 0 && i < getLength() ? frozen.attribute(frozen.attributeStarts[element] + i) : null;
+        }
+
+        @Override
+        public final int getLength() {
+            return frozen.attributeCounts[element];
+        }
+
+        @Override
+        public final Node getNamedItemNS(String namespaceURI, String localName) {
+            int a = frozen.attribute(element, namespaceURI, localName, null);
+            return a == NONE ? null : frozen.attribute(a);
+        }
+
+        @Override
+        public final Node setNamedItemNS(Node arg) {
+            throw readOnly();
+        }
+
+        @Override
+        public final Node removeNamedItemNS(String namespaceURI, String localName) {
+            throw readOnly();
+        }
+    }
+
+    /**
+     * A qualified name, together with its local name, prefix and namespace
+     * URI.
+     */
+    private static final class Name {
+
+        final String name;
+        final String localName;
+        final String prefix;
+        final String namespaceURI;
+
+        Name(String name, String localName, String prefix, String namespaceURI) {
+            this.name = name;
+            this.localName = localName;
+            this.prefix = prefix;
+            this.namespaceURI = namespaceURI;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(name, localName, prefix, namespaceURI);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof Name))
+                return false;
+
+            Name other = (Name) obj;
+            return name.equals(other.name)
+                && Objects.equals(localName, other.localName)
+                && Objects.equals(prefix, other.prefix)
+                && Objects.equals(namespaceURI, other.namespaceURI);
+        }
+    }
+
+    /**
+     * Frozen documents carry no schema type information.
+     */
+    private static final TypeInfo NO_TYPE = new TypeInfo() {
+
+        @Override
+        public String getTypeName() {
+            return null;
+        }
+
+        @Override
+        public String getTypeNamespace() {
+            return null;
+        }
+
+        @Override
+        public boolean isDerivedFrom(String typeNamespaceArg, String typeNameArg, int derivationMethod) {
+            return false;
+        }
+    };
+}
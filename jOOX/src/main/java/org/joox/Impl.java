@@ -13,7 +13,6 @@
  */
 package org.joox;
 
-import static java.util.Collections.emptyList;
 import static org.joox.JOOX.all;
 import static org.joox.JOOX.chain;
 import static org.joox.JOOX.convert;
@@ -28,12 +27,11 @@ import static org.joox.Util.stripNamespace;
 import static org.joox.selector.CSS2XPath.css2xpath;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.io.Reader;
+import java.io.StringWriter;
 import java.io.Writer;
 import java.net.URL;
 import java.util.ArrayList;
@@ -42,17 +40,24 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import jakarta.xml.bind.JAXB;
-import javax.xml.namespace.NamespaceContext;
 import javax.xml.namespace.QName;
 import javax.xml.transform.Source;
 import javax.xml.transform.Transformer;
@@ -62,13 +67,10 @@ import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMResult;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamSource;
-import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
-import javax.xml.xpath.XPathVariableResolver;
 
+import org.joox.selector.SelectorMatcher;
 import org.w3c.dom.Attr;
 import org.w3c.dom.Document;
 import org.w3c.dom.DocumentFragment;
@@ -125,19 +127,29 @@ class Impl implements Match {
     final Impl addUniqueElements(List<Element> e) {
         final int size = e.size();
 
-        if (size == 1) {
-            Element element = e.get(0);
+        if (size == 0)
+            return this;
 
-            elements.remove(element);
-            elements.add(element);
+        // Most calls add elements to a new, empty Impl
+        if (size == 1 && elements.isEmpty()) {
+            elements.add(e.get(0));
+            return this;
         }
-        else if (size > 1) {
-            Set<Element> set = new LinkedHashSet<>(e);
 
-            elements.removeAll(set);
-            elements.addAll(set);
-        }
+        // DOM nodes have identity semantics, so there is no need to call
+        // equals() and hashCode() on them
+        Set<Element> unique = Collections.newSetFromMap(new IdentityHashMap<>(size));
+        List<Element> added = new ArrayList<>(size);
+
+        for (Element element : e)
+            if (unique.add(element))
+                added.add(element);
+
+        // Previously contained elements are moved to the end, in a single pass
+        if (!elements.isEmpty())
+            elements.removeAll(unique);
 
+        elements.addAll(added);
         return this;
     }
 
@@ -160,6 +172,48 @@ class Impl implements Match {
         return elements.iterator();
     }
 
+    @Override
+    public final Spliterator<Element> spliterator() {
+        return Spliterators.spliterator(elements.toArray(),
+            Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE);
+    }
+
+    // -------------------------------------------------------------------------
+    // XXX: Stream API
+    // -------------------------------------------------------------------------
+
+    @Override
+    public final Stream<Element> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    @Override
+    public final Stream<Element> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    @Override
+    public final Stream<Context> contexts() {
+        return contexts0().sequential();
+    }
+
+    @Override
+    public final Stream<Context> parallelContexts() {
+        return contexts0().parallel();
+    }
+
+    private final Stream<Context> contexts0() {
+        final Element[] array = elements.toArray(new Element[0]);
+        final int size = array.length;
+
+        return IntStream.range(0, size).mapToObj(matchIndex -> context(array[matchIndex], matchIndex, size));
+    }
+
+    @Override
+    public final LazyImpl lazy() {
+        return new LazyImpl(document, namespaces, elements::iterator);
+    }
+
     // -------------------------------------------------------------------------
     // XXX: Namespace-related API
     // -------------------------------------------------------------------------
@@ -176,6 +230,13 @@ class Impl implements Match {
         return result;
     }
 
+    /**
+     * The namespaces that are applied to XPath queries on this match.
+     */
+    final Map<String, String> namespaces() {
+        return namespaces;
+    }
+
     @Override
     public final String namespaceURI() {
         return namespaceURI(0);
@@ -374,7 +435,9 @@ class Impl implements Match {
 
     @Override
     public final Impl children(Filter filter) {
+        filter = QueryImpl.withNamespaces(filter, namespaces);
         final int size = size();
+        final MutableContext cursor = Util.cursor(filter);
 
         List<Element> result = new ArrayList<>();
         for (int matchIndex = 0; matchIndex < size; matchIndex++) {
@@ -385,7 +448,7 @@ class Impl implements Match {
             for (int elementIndex = 0; elementIndex < elementSize; elementIndex++) {
                 Element e = list.get(elementIndex);
 
-                if (filter.filter(context(match, matchIndex, size, e, elementIndex, elementSize)))
+                if (filter.filter(context(cursor, match, matchIndex, size, e, elementIndex, elementSize)))
                     result.add(e);
             }
         }
@@ -423,6 +486,17 @@ class Impl implements Match {
         return each(chain(each));
     }
 
+    @Override
+    public final Impl parallelEach(Each each) {
+        return parallelEach(each, ForkJoinPool.commonPool());
+    }
+
+    @Override
+    public final Impl parallelEach(Each each, Executor executor) {
+        Parallel.each(elements, each, executor);
+        return this;
+    }
+
     @Override
     public final Impl filter(String selector) {
         return filter(selector(selector));
@@ -433,14 +507,41 @@ class Impl implements Match {
         return new Impl(document, namespaces).addElements(filter0(filter));
     }
 
+    @Override
+    public final Impl filter(Query query) {
+        if (!(query instanceof QueryImpl) || !((QueryImpl) query).isXPath())
+            return filter((Filter) query);
+
+        QueryImpl q = (QueryImpl) query;
+        List<Element> result = new ArrayList<>();
+
+        for (Element element : elements)
+            if (q.test(element, namespaces))
+                result.add(element);
+
+        return new Impl(document, namespaces).addElements(result);
+    }
+
+    @Override
+    public final Impl parallelFilter(Filter filter) {
+        return parallelFilter(filter, ForkJoinPool.commonPool());
+    }
+
+    @Override
+    public final Impl parallelFilter(Filter filter, Executor executor) {
+        return new Impl(document, namespaces).addElements(Parallel.filter(elements, QueryImpl.withNamespaces(filter, namespaces), executor));
+    }
+
     private final List<Element> filter0(Filter filter) {
+        filter = QueryImpl.withNamespaces(filter, namespaces);
         final int size = size();
+        final MutableContext cursor = Util.cursor(filter);
         List<Element> result = new ArrayList<>();
 
         for (int matchIndex = 0; matchIndex < size; matchIndex++) {
             Element match = get(matchIndex);
 
-            if (filter.filter(context(match, matchIndex, size)))
+            if (filter.filter(context(cursor, match, matchIndex, size)))
                 result.add(match);
         }
 
@@ -485,9 +586,166 @@ class Impl implements Match {
             return find(JOOX.tag(selector, true));
         }
 
-        // CSS selectors are transformed to XPath expressions
+        // CSS selectors are evaluated directly against the DOM, if possible
         else {
-            return new Impl(document, namespaces, this).addElements(xpath(css2xpath(selector, isRoot())).get());
+            SelectorMatcher matcher = SelectorMatcher.compile(selector);
+
+            if (matcher.isSupported())
+                return find(matcher);
+
+            // Other CSS selectors are transformed to XPath expressions
+            else
+                return new Impl(document, namespaces, this).addElements(xpath(css2xpath(selector, isRoot())).get());
+        }
+    }
+
+    @Override
+    public final Impl find(Query query) {
+        if (!(query instanceof QueryImpl))
+            return find((Filter) query);
+
+        QueryImpl q = (QueryImpl) query;
+
+        if (q.isXPath())
+            return xpath(q.pool, q.variables);
+        else if (q.matcher != null)
+            return find(q.matcher);
+        else if ("*".equals(q.expression))
+            return find(q.expression);
+        else if (q.tag != null)
+            return find(q.tag);
+        else
+            return new Impl(document, namespaces, this).addElements(xpath(isRoot() ? q.xpathFromDocument : q.xpathFromElement).get());
+    }
+
+    private final Impl find(SelectorMatcher matcher) {
+        List<Element> result = new ArrayList<>();
+        boolean isRoot = isRoot();
+        Node previous = null;
+
+        // Root selectors are matched against the whole document, like their
+        // equivalent XPath expressions
+        for (Element element : elements) {
+            Node scope = isRoot ? element.getOwnerDocument() : element;
+
+            if (scope != previous)
+                matcher.find(scope, result);
+
+            previous = scope;
+        }
+
+        return new Impl(document, namespaces, this).addUniqueElements(result);
+    }
+
+    @Override
+    public final boolean exists(String selector) {
+        String expression = fallbackXPath(selector);
+
+        if (expression == null)
+            return lazy().find(selector).isNotEmpty();
+        else
+            return xpathFirst(expression) != null;
+    }
+
+    @Override
+    public final boolean exists(Filter filter) {
+        if (isIndexed(filter))
+            return find(filter).isNotEmpty();
+        else
+            return lazy().find(filter).isNotEmpty();
+    }
+
+    @Override
+    public final Impl findFirst(String selector) {
+        String expression = fallbackXPath(selector);
+
+        if (expression == null)
+            return first(lazy().find(selector).get(0));
+        else
+            return first(xpathFirst(expression));
+    }
+
+    @Override
+    public final Impl findFirst(Filter filter) {
+        if (isIndexed(filter))
+            return find(filter).first();
+        else
+            return first(lazy().find(filter).get(0));
+    }
+
+    @Override
+    public final int count(String selector) {
+        String expression = fallbackXPath(selector);
+
+        if (expression == null)
+            return lazy().find(selector).size();
+
+        // Results of several elements may overlap, and must be deduplicated
+        else if (size() > 1)
+            return find(selector).size();
+        else if (size() == 1)
+            return ((Number) xpath0(get(0), "count(" + expression + ")", XPathConstants.NUMBER)).intValue();
+        else
+            return 0;
+    }
+
+    @Override
+    public final int count(Filter filter) {
+        if (isIndexed(filter))
+            return find(filter).size();
+        else
+            return lazy().find(filter).size();
+    }
+
+    private final Impl first(Element element) {
+        Impl result = new Impl(document, namespaces);
+
+        if (element != null)
+            result.addElements(element);
+
+        return result;
+    }
+
+    /**
+     * The XPath expression that {@link #find(String)} evaluates for a CSS
+     * selector, or <code>null</code> if the selector is evaluated against the
+     * DOM
+     */
+    private final String fallbackXPath(String selector) {
+        if ("*".equals(selector) || SIMPLE_SELECTOR.matcher(selector).matches() || SelectorMatcher.compile(selector).isSupported())
+            return null;
+        else
+            return css2xpath(selector, isRoot());
+    }
+
+    /**
+     * The first element matched by an XPath expression, evaluated using
+     * {@link XPathConstants#NODE}, which stops at the first match
+     */
+    private final Element xpathFirst(String expression) {
+        for (Element element : elements) {
+            Object result = xpath0(element, expression, XPathConstants.NODE);
+
+            if (result instanceof Element)
+                return (Element) result;
+        }
+
+        return null;
+    }
+
+    private final Object xpath0(Element element, String expression, QName returnType) {
+        try {
+            XPathCache.CompiledXPath exp = XPathCache.borrow(expression, namespaces);
+
+            try {
+                return exp.evaluate(element, returnType);
+            }
+            finally {
+                XPathCache.release(exp);
+            }
+        }
+        catch (XPathExpressionException e) {
+            throw new RuntimeException(e);
         }
     }
 
@@ -505,10 +763,23 @@ class Impl implements Match {
 
     @Override
     public final Impl find(Filter filter) {
+        if (filter instanceof IndexedFilter) {
+            ElementIndex index = ElementIndex.get(document);
+
+            if (index != null) {
+                List<Element> result = index.find(elements, ((IndexedFilter) filter).lookup(index));
+
+                if (result != null)
+                    return new Impl(document, namespaces, this).addUniqueElements(result);
+            }
+        }
+
+        filter = QueryImpl.withNamespaces(filter, namespaces);
         List<Element> result = new ArrayList<>();
 
         final int size = size();
         final boolean fast = isFast(filter);
+        final MutableContext cursor = Util.cursor(filter);
 
         for (int matchIndex = 0; matchIndex < size; matchIndex++) {
             Element match = get(matchIndex);
@@ -521,7 +792,7 @@ class Impl implements Match {
 
                 if (e == null)
                     break inner;
-                else if (filter.filter(context(match, matchIndex, size, e, elementIndex, elementSize)))
+                else if (filter.filter(context(cursor, match, matchIndex, size, e, elementIndex, elementSize)))
                     result.add(e);
             }
         }
@@ -539,24 +810,34 @@ class Impl implements Match {
         List<Element> result = new ArrayList<>();
 
         try {
-            XPathFactory factory = XPathFactory.newInstance();
-            XPath xpath = factory.newXPath();
+            XPathCache.CompiledXPath exp = XPathCache.borrow(expression, namespaces, variables);
 
-            // Add the xalan ExtensionNamespaceContext if Xalan is available
-            Util.xalanExtensionAware(xpath);
+            try {
+                xpath(exp, result);
+            }
+            finally {
+                XPathCache.release(exp);
+            }
+        }
+        catch (XPathExpressionException e) {
+            throw new RuntimeException(e);
+        }
+
+        return new Impl(document, namespaces).addUniqueElements(result);
+    }
 
-            // Add a variable resolver if we have any variables
-            if (variables != null && variables.length != 0)
-                xpath.setXPathVariableResolver(new VariableResolver(expression, variables));
+    private final Impl xpath(XPathCache.Pool pool, Object[] variables) {
+        List<Element> result = new ArrayList<>();
 
-            // [#9] Chain namespace contexts, in case namespaces could be needed
-            if (!namespaces.isEmpty() || expression.contains(":"))
-                xpath.setNamespaceContext(new ChainedContext(xpath.getNamespaceContext()));
+        try {
+            XPathCache.CompiledXPath exp = pool.borrow(namespaces, variables);
 
-            XPathExpression exp = xpath.compile(expression);
-            for (Element element : get())
-                for (Element match : iterable((NodeList) exp.evaluate(element, XPathConstants.NODESET)))
-                    result.add(match);
+            try {
+                xpath(exp, result);
+            }
+            finally {
+                pool.release(exp);
+            }
         }
         catch (XPathExpressionException e) {
             throw new RuntimeException(e);
@@ -565,6 +846,12 @@ class Impl implements Match {
         return new Impl(document, namespaces).addUniqueElements(result);
     }
 
+    private final void xpath(XPathCache.CompiledXPath exp, List<Element> result) throws XPathExpressionException {
+        for (Element element : elements)
+            for (Element match : iterable((NodeList) exp.evaluate(element, XPathConstants.NODESET)))
+                result.add(match);
+    }
+
     @Override
     public final Impl first() {
         if (size() > 0)
@@ -580,10 +867,23 @@ class Impl implements Match {
 
     @Override
     public final Impl has(Filter filter) {
+        if (filter instanceof IndexedFilter) {
+            ElementIndex index = ElementIndex.get(document);
+
+            if (index != null) {
+                List<Element> result = index.has(elements, ((IndexedFilter) filter).lookup(index));
+
+                if (result != null)
+                    return new Impl(document, namespaces).addElements(result);
+            }
+        }
+
+        filter = QueryImpl.withNamespaces(filter, namespaces);
         List<Element> result = new ArrayList<>();
 
         final int size = size();
         final boolean fast = isFast(filter);
+        final MutableContext cursor = Util.cursor(filter);
 
         for (int matchIndex = 0; matchIndex < size; matchIndex++) {
             Element match = get(matchIndex);
@@ -597,7 +897,7 @@ class Impl implements Match {
                 if (e == null) {
                     break inner;
                 }
-                else if (filter.filter(context(match, matchIndex, size, e, elementIndex, elementSize))) {
+                else if (filter.filter(context(cursor, match, matchIndex, size, e, elementIndex, elementSize))) {
                     result.add(match);
                     break inner;
                 }
@@ -614,12 +914,14 @@ class Impl implements Match {
 
     @Override
     public final boolean is(Filter filter) {
+        filter = QueryImpl.withNamespaces(filter, namespaces);
         final int size = size();
+        final MutableContext cursor = Util.cursor(filter);
 
         for (int matchIndex = 0; matchIndex < size; matchIndex++) {
             Element match = get(matchIndex);
 
-            if (filter.filter(context(match, matchIndex, size)))
+            if (filter.filter(context(cursor, match, matchIndex, size)))
                 return true;
         }
 
@@ -647,6 +949,16 @@ class Impl implements Match {
         return result;
     }
 
+    @Override
+    public final <E> List<E> parallelMap(Mapper<E> map) {
+        return parallelMap(map, ForkJoinPool.commonPool());
+    }
+
+    @Override
+    public final <E> List<E> parallelMap(Mapper<E> map, Executor executor) {
+        return Parallel.map(elements, map, executor);
+    }
+
     @Override
     public final Impl next() {
         return next(all());
@@ -718,7 +1030,7 @@ class Impl implements Match {
 
     @Override
     public final Impl not(Filter filter) {
-        return filter(JOOX.not(filter));
+        return filter(JOOX.not(QueryImpl.withNamespaces(filter, namespaces)));
     }
 
     @Override
@@ -850,7 +1162,11 @@ class Impl implements Match {
     }
 
     private final Impl axis(boolean all, Filter until, Filter filter, Function<Node, Node> iterate, Consumer<List<Element>> finisher) {
+        until = QueryImpl.withNamespaces(until, namespaces);
+        filter = QueryImpl.withNamespaces(filter, namespaces);
         final int size = size();
+        final MutableContext untilCursor = Util.cursor(until);
+        final MutableContext cursor = Util.cursor(filter);
         List<Element> result = new ArrayList<>();
 
         for (int matchIndex = 0; matchIndex < size; matchIndex++) {
@@ -867,11 +1183,11 @@ class Impl implements Match {
                     Element e = (Element) node;
 
                     // TODO: [#34] Calculate elementSize()
-                    if (until.filter(context(match, matchIndex, size, e, elementIndex, -1)))
+                    if (until.filter(context(untilCursor, match, matchIndex, size, e, elementIndex, -1)))
                         break;
 
                     // TODO: [#34] Calculate elementSize()
-                    if (filter.filter(context(match, matchIndex, size, e, elementIndex++, -1)))
+                    if (filter.filter(context(cursor, match, matchIndex, size, e, elementIndex++, -1)))
                         result.add(e);
 
                     if (!all)
@@ -995,6 +1311,8 @@ class Impl implements Match {
             else {
                 parent.insertBefore(doc.createTextNode(text), next);
             }
+
+            changed();
         }
 
         elements.clear();
@@ -1029,6 +1347,7 @@ class Impl implements Match {
                     result.add((Element) parent.insertBefore(e.cloneNode(true), next));
         }
 
+        changed();
         elements.clear();
         elements.addAll(result);
 
@@ -1061,6 +1380,8 @@ class Impl implements Match {
                 parent.insertBefore(doc.createTextNode(text), match);
             }
 
+            changed();
+
             result.add(match);
         }
 
@@ -1095,6 +1416,7 @@ class Impl implements Match {
             result.add(element);
         }
 
+        changed();
         elements.clear();
         elements.addAll(result);
 
@@ -1121,6 +1443,8 @@ class Impl implements Match {
                 match.appendChild(imported);
             else
                 match.appendChild(doc.createTextNode(text));
+
+            changed();
         }
 
         return this;
@@ -1144,6 +1468,7 @@ class Impl implements Match {
                 else
                     get(i).appendChild(e.cloneNode(true));
 
+        changed();
         return this;
     }
 
@@ -1168,6 +1493,8 @@ class Impl implements Match {
                 match.insertBefore(imported, first);
             else
                 match.insertBefore(doc.createTextNode(text), first);
+
+            changed();
         }
 
         return this;
@@ -1196,6 +1523,7 @@ class Impl implements Match {
             }
         }
 
+        changed();
         return this;
     }
 
@@ -1261,6 +1589,8 @@ class Impl implements Match {
                 match.removeAttribute(name);
             else
                 match.setAttribute(name, value);
+
+            changed();
         }
 
         return this;
@@ -1312,15 +1642,50 @@ class Impl implements Match {
             return "";
 
         // The element contains only text
-        // [#151] TODO: Check this code's efficiency
         else if (Util.textNodesOnly(children))
             return element.getTextContent().replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
 
         // The element contains content
         else {
-            // [#151] TODO: Check this code's efficiency
-            String name = element.getTagName();
-            return Util.toString(element).replaceAll("(?s)^<" + name + "(?:[^>]*)>(.*)</" + name + ">$", "$1");
+            StringWriter writer = new StringWriter();
+
+            try {
+                content(element, writer);
+            }
+            catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+
+            return writer.toString();
+        }
+    }
+
+    @Override
+    public final Match content(Writer writer) throws IOException {
+        Element element = get(0);
+
+        if (element != null) {
+            if (Util.textNodesOnly(element.getChildNodes()))
+                writer.write(content(element));
+            else
+                content(element, writer);
+        }
+
+        return this;
+    }
+
+    /**
+     * [#151] Serialise an element's child nodes directly into a writer,
+     * without serialising the element itself to a String first.
+     */
+    private final void content(Element element, Writer writer) throws IOException {
+        try {
+            Transformer transformer = Util.transformer(XMLFormat.DEFAULT);
+            Util.writeContent(element, writer, transformer);
+            Util.release(XMLFormat.DEFAULT, transformer);
+        }
+        catch (TransformerException e) {
+            throw new IOException(e);
         }
     }
 
@@ -1350,6 +1715,8 @@ class Impl implements Match {
             else {
                 match.setTextContent(text);
             }
+
+            changed();
         }
 
         return this;
@@ -1412,6 +1779,7 @@ class Impl implements Match {
         for (int matchIndex = 0; matchIndex < size; matchIndex++) {
             Element match = get(matchIndex);
             match.setTextContent(content.content(context(match, matchIndex, size)));
+            changed();
         }
 
         return this;
@@ -1461,6 +1829,7 @@ class Impl implements Match {
             String text = content.content(context(match, matchIndex, size));
             empty(match);
             match.appendChild(match.getOwnerDocument().createCDATASection(text));
+            changed();
         }
 
         return this;
@@ -1495,6 +1864,7 @@ class Impl implements Match {
     private final void remove(Element element) {
         element.getParentNode().removeChild(element);
         elements.remove(element);
+        changed();
     }
 
     private final void empty(Element element) {
@@ -1502,6 +1872,8 @@ class Impl implements Match {
 
         while ((child = element.getFirstChild()) != null)
             element.removeChild(child);
+
+        changed();
     }
 
     @Override
@@ -1522,6 +1894,7 @@ class Impl implements Match {
             Element wrapper = doc.createElement(text);
             parent.replaceChild(wrapper, match);
             wrapper.appendChild(match);
+            changed();
         }
 
         return this;
@@ -1546,6 +1919,7 @@ class Impl implements Match {
             parent.replaceChild(match, wrapper);
         }
 
+        changed();
         return this;
     }
 
@@ -1574,6 +1948,8 @@ class Impl implements Match {
             else {
                 parent.replaceChild(doc.createTextNode(text), match);
             }
+
+            changed();
         }
 
         elements.clear();
@@ -1613,12 +1989,22 @@ class Impl implements Match {
             parent.removeChild(element);
         }
 
+        changed();
         elements.clear();
         elements.addAll(result);
 
         return this;
     }
 
+    @Override
+    public final Impl edit(Consumer<? super Batch> edits) {
+        BatchImpl batch = new BatchImpl();
+        edits.accept(batch);
+        batch.apply(document, elements);
+        changed();
+        return this;
+    }
+
     @Override
     public final Match rename(String tag) {
         return rename(JOOX.content(tag));
@@ -1635,6 +2021,7 @@ class Impl implements Match {
 
             String text = nonNull(tag.content(context(match, matchIndex, size)));
             result.add((Element) document.renameNode(match, "", text));
+            changed();
         }
 
         elements.clear();
@@ -1651,6 +2038,29 @@ class Impl implements Match {
         return filter instanceof FastFilter;
     }
 
+    /**
+     * Whether a filter can be evaluated using the document's
+     * {@link ElementIndex}
+     */
+    private final boolean isIndexed(Filter filter) {
+        return filter instanceof IndexedFilter && ElementIndex.get(document) != null;
+    }
+
+    /**
+     * Mark the document's {@link ElementIndex} as stale after a modification
+     */
+    private final void changed() {
+        ElementIndex.invalidate(document);
+    }
+
+    @Override
+    public final Impl index() {
+        if (document != null)
+            ElementIndex.index(document);
+
+        return this;
+    }
+
     @Override
     public final Impl copy() {
         Impl copy = new Impl(document, namespaces, previousMatch);
@@ -1769,9 +2179,28 @@ class Impl implements Match {
 
     @Override
     public final Match write(Writer writer) throws IOException {
+        return write(writer, XMLFormat.DEFAULT);
+    }
+
+    @Override
+    public final Match write(Writer writer, XMLFormat format) throws IOException {
         try (Writer w = writer) {
-            for (Element e : this)
-                writer.write(JOOX.$(e).toString());
+            Transformer transformer = Util.transformer(format);
+            String separator = "";
+
+            if (format.header())
+                w.write(Util.declaration(format));
+
+            for (Element e : this) {
+                w.write(separator);
+                Util.write(e, w, transformer);
+                separator = format.separator();
+            }
+
+            Util.release(format, transformer);
+        }
+        catch (TransformerException e) {
+            throw new IOException(e);
         }
 
         return this;
@@ -1779,13 +2208,50 @@ class Impl implements Match {
 
     @Override
     public final Match write(OutputStream stream) throws IOException {
-        return write(new OutputStreamWriter(stream));
+        return write(stream, XMLFormat.DEFAULT);
+    }
+
+    @Override
+    public final Match write(OutputStream stream, XMLFormat format) throws IOException {
+        return write(ChannelSink.sink(stream), format);
     }
 
-    @SuppressWarnings("resource")
     @Override
     public final Match write(File file) throws IOException {
-        return write(new FileOutputStream(file));
+        return write(file, XMLFormat.DEFAULT);
+    }
+
+    @Override
+    public final Match write(File file, XMLFormat format) throws IOException {
+        return write(ChannelSink.sink(file.toPath()), format);
+    }
+
+    /**
+     * Serialise all elements into a sink, encoding text directly into its
+     * buffer.
+     */
+    private final Match write(ChannelSink sink, XMLFormat format) throws IOException {
+        try (ChannelSink s = sink) {
+            Transformer transformer = Util.transformer(format);
+            byte[] separator = format.separator().getBytes(format.encoding());
+
+            if (format.header())
+                s.write(Util.declaration(format).getBytes(format.encoding()));
+
+            for (int i = 0; i < elements.size(); i++) {
+                if (i > 0)
+                    s.write(separator);
+
+                Util.write(elements.get(i), s, transformer);
+            }
+
+            Util.release(format, transformer);
+        }
+        catch (TransformerException e) {
+            throw new IOException(e);
+        }
+
+        return this;
     }
 
     @Override
@@ -1845,6 +2311,8 @@ class Impl implements Match {
             newElements.add(result);
         }
 
+        changed();
+
         return new Impl(document, namespaces).addElements(newElements);
     }
 
@@ -1983,70 +2451,4 @@ class Impl implements Match {
      * A selector pattern that can be evaluated using standard DOM API
      */
     public final static Pattern SIMPLE_SELECTOR = Pattern.compile("[\\w\\-]+");
-
-    /**
-     * A simple variable resolver mapping variable names to their respective
-     * index in an XPath expression.
-     */
-    private static class VariableResolver implements XPathVariableResolver {
-
-        private final String expression;
-        private final Object[] variables;
-
-        VariableResolver(String expression, Object[] variables) {
-            this.expression = expression;
-            this.variables = variables;
-        }
-
-        @Override
-        public final Object resolveVariable(QName variable) {
-            int index;
-
-            try {
-                index = Integer.parseInt(variable.getLocalPart()) - 1;
-            }
-            catch (NumberFormatException e) {
-                throw new IllegalArgumentException("Variable " + variable + " is not supported by jOOX. Only numerical variables can be used for " + expression);
-            }
-
-            if (index < variables.length)
-                return variables[index];
-            else
-                throw new IndexOutOfBoundsException("No variable defined for " + variable + " in " + expression);
-        }
-    }
-
-    /**
-     * A namespace context that is aware of this Impl's configured namespaces,
-     * as well as a chained context.
-     */
-    private class ChainedContext implements NamespaceContext {
-
-        private final NamespaceContext chained;
-
-        ChainedContext(NamespaceContext chained) {
-            this.chained = chained;
-        }
-
-        @SuppressWarnings("rawtypes")
-        @Override
-        public final Iterator getPrefixes(String namespaceURI) {
-            return chained == null ? emptyList().iterator() : chained.getPrefixes(namespaceURI);
-        }
-
-        @Override
-        public final String getPrefix(String namespaceURI) {
-            return chained == null ? "" : chained.getPrefix(namespaceURI);
-        }
-
-        @Override
-        public final String getNamespaceURI(String prefix) {
-            String namespaceURI = chained == null ? "" : chained.getNamespaceURI(prefix);
-
-            if ("".equals(namespaceURI) && namespaces.containsKey(prefix))
-                namespaceURI = namespaces.get(prefix);
-
-            return namespaceURI;
-        }
-    }
 }
@@ -0,0 +1,46 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joox;
+
+import java.util.function.Function;
+
+/**
+ * A {@link FastFilter} whose matches can also be looked up in an
+ * {@link ElementIndex}.
+ * <p>
+ * The lookup must return exactly the elements accepted by the filter.
+ */
+final class IndexedFilter implements FastFilter {
+
+    private final FastFilter                    filter;
+    private final Function<ElementIndex, int[]> lookup;
+
+    IndexedFilter(FastFilter filter, Function<ElementIndex, int[]> lookup) {
+        this.filter = filter;
+        this.lookup = lookup;
+    }
+
+    @Override
+    public final boolean filter(Context context) {
+        return filter.filter(context);
+    }
+
+    /**
+     * The numbers of all elements in an index accepted by this filter, in
+     * document order.
+     */
+    final int[] lookup(ElementIndex index) {
+        return lookup.apply(index);
+    }
+}
@@ -13,37 +13,52 @@
  */
 package org.joox;
 
+import static org.joox.Impl.SIMPLE_SELECTOR;
 import static org.w3c.dom.Node.CDATA_SECTION_NODE;
 import static org.w3c.dom.Node.TEXT_NODE;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
 import java.io.StringWriter;
-import java.lang.reflect.Array;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.net.URI;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Calendar;
-import java.util.GregorianCalendar;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.Executor;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.ZipFile;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.Result;
 import javax.xml.transform.dom.DOMResult;
 
+import org.joox.selector.CSS2XPath;
+import org.joox.selector.SelectorMatcher;
 import org.w3c.dom.Document;
 import org.w3c.dom.DocumentFragment;
 import org.w3c.dom.Element;
@@ -71,7 +86,7 @@ public final class JOOX {
      * Wrap a new empty document
      */
     public static Match $() {
-        return $(builder().newDocument());
+        return $(BuilderPool.newDocument());
     }
 
     /**
@@ -81,7 +96,7 @@ public final class JOOX {
      * @see Match#content(Object)
      */
     public static Match $(Object object) {
-        Document document = builder().newDocument();
+        Document document = BuilderPool.newDocument();
 
         if (object != null) {
             Result result = new DOMResult(document);
@@ -95,7 +110,7 @@ public final class JOOX {
      * Create a new DOM element in an independent document
      */
     public static Match $(String name) {
-        Document document = builder().newDocument();
+        Document document = BuilderPool.newDocument();
         DocumentFragment fragment = Util.createContent(document, name, true);
 
 
@@ -245,7 +260,7 @@ public final class JOOX {
      * @throws SAXException
      */
     public static Match $(File file) throws SAXException, IOException {
-        return $(builder().parse(file));
+        return $(BuilderPool.parse(file));
     }
 
     /**
@@ -258,6 +273,78 @@ public final class JOOX {
         return $(path.toFile());
     }
 
+    /**
+     * Read a DOM document from a file into a {@link Match} element set,
+     * optionally memory-mapping the file.
+     * <p>
+     * If <code>mapped</code> is <code>true</code>, the file is mapped into
+     * memory using {@link FileChannel#map(MapMode, long, long)}, and the
+     * parser reads directly from the mapped pages, rather than through an
+     * additional stream buffer. The mapping is released when the mapped buffer
+     * is garbage collected. Files larger than {@link Integer#MAX_VALUE} bytes
+     * cannot be mapped, and are read like in {@link #$(Path)}.
+     *
+     * @throws IOException
+     * @throws SAXException
+     */
+    public static Match $(Path path, boolean mapped) throws SAXException, IOException {
+        if (!mapped)
+            return $(path);
+
+        MappedByteBuffer buffer;
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+
+            if (size > Integer.MAX_VALUE)
+                return $(path);
+
+            buffer = channel.map(MapMode.READ_ONLY, 0, size);
+        }
+
+        InputSource source = new InputSource(new ByteBufferInputStream(buffer));
+        source.setSystemId(path.toUri().toString());
+        return $(source);
+    }
+
+    /**
+     * Read a DOM document from the remaining bytes of a buffer into a
+     * {@link Match} element set.
+     * <p>
+     * The buffer's position is not modified. Heap, direct and memory-mapped
+     * buffers are read without copying them first.
+     *
+     * @throws IOException
+     * @throws SAXException
+     */
+    public static Match $(ByteBuffer buffer) throws SAXException, IOException {
+        if (buffer.hasArray())
+            return $(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        else
+            return $(new ByteBufferInputStream(buffer));
+    }
+
+    /**
+     * Read a DOM document from a byte array into a {@link Match} element set
+     *
+     * @throws IOException
+     * @throws SAXException
+     */
+    public static Match $(byte[] bytes) throws SAXException, IOException {
+        return $(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Read a DOM document from a range of a byte array into a {@link Match}
+     * element set
+     *
+     * @throws IOException
+     * @throws SAXException
+     */
+    public static Match $(byte[] bytes, int offset, int length) throws SAXException, IOException {
+        return $(new ByteArrayInputStream(bytes, offset, length));
+    }
+
     /**
      * Read a DOM document from a stream into a {@link Match} element set
      *
@@ -265,7 +352,7 @@ public final class JOOX {
      * @throws SAXException
      */
     public static Match $(InputStream stream) throws SAXException, IOException {
-        return $(builder().parse(stream));
+        return $(BuilderPool.parse(new InputSource(stream)));
     }
 
     /**
@@ -275,7 +362,7 @@ public final class JOOX {
      * @throws SAXException
      */
     public static Match $(Reader reader) throws SAXException, IOException {
-        return $(builder().parse(new InputSource(reader)));
+        return $(BuilderPool.parse(new InputSource(reader)));
     }
 
     /**
@@ -285,7 +372,235 @@ public final class JOOX {
      * @throws SAXException
      */
     public static Match $(InputSource source) throws SAXException, IOException {
-        return $(builder().parse(source));
+        return $(BuilderPool.parse(source));
+    }
+
+    // ---------------------------------------------------------------------
+    // Streaming
+    // ---------------------------------------------------------------------
+
+    /**
+     * Stream records from a file, without reading the whole file into memory.
+     *
+     * @see #stream(InputStream, String)
+     * @throws IOException
+     */
+    public static Stream<Match> stream(Path path, String selector) throws IOException {
+        final InputStream stream = new BufferedInputStream(Files.newInputStream(path));
+
+        try {
+            return stream(stream, selector).onClose(() -> {
+                try {
+                    stream.close();
+                }
+                catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+        catch (RuntimeException e) {
+            stream.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Stream records from a file, without reading the whole file into memory.
+     *
+     * @see #stream(InputStream, String)
+     * @throws IOException
+     */
+    public static Stream<Match> stream(File file, String selector) throws IOException {
+        return stream(file.toPath(), selector);
+    }
+
+    /**
+     * Stream records from an input stream, without reading the whole document
+     * into memory.
+     * <p>
+     * The document is read using StAX. Every element that matches the
+     * <code>selector</code> is read into its own, detached DOM document, which
+     * is wrapped in a {@link Match}. Memory usage is thus bounded by the size
+     * of the largest record, rather than the size of the whole document.
+     * Namespace declarations of the record's ancestors are repeated on the
+     * record.
+     * <p>
+     * The <code>selector</code> is a simple selector path consisting of tag
+     * names or <code>*</code>, separated by the descendant (whitespace) or
+     * child (<code>&gt;</code>) combinators, e.g.
+     * <code>library > books book</code>. Elements nested in a record are
+     * never reported as separate records.
+     * <p>
+     * The returned stream is sequential, and should be closed after use. This
+     * does not close the underlying input stream.
+     *
+     * @throws IllegalArgumentException If the selector is not a simple
+     *             selector path
+     */
+    public static Stream<Match> stream(InputStream stream, String selector) {
+        RecordSpliterator records = new RecordSpliterator(stream, selector);
+        return StreamSupport.stream(records, false).onClose(records::close);
+    }
+
+    // ---------------------------------------------------------------------
+    // Loading several documents
+    // ---------------------------------------------------------------------
+
+    /**
+     * Read DOM documents from files concurrently, using the default executor.
+     *
+     * @see #$all(Collection, Executor)
+     */
+    public static Stream<Match> $all(Collection<Path> paths) {
+        return $all(paths, Loader.executor());
+    }
+
+    /**
+     * Read DOM documents from files concurrently.
+     * <p>
+     * The documents are parsed ahead of the consumer of the returned stream,
+     * on the supplied executor. The stream produces them in the order of the
+     * supplied paths. At most a bounded number of documents are parsed ahead,
+     * which can be configured with the <code>org.joox.loadWindow</code> system
+     * property.
+     * <p>
+     * The default executor uses virtual threads, if available, or a pool of
+     * daemon threads otherwise.
+     * <p>
+     * Documents that cannot be read make the stream throw an
+     * {@link UncheckedIOException}, or a {@link RuntimeException} wrapping a
+     * {@link SAXException}, when they are reached. Closing the stream cancels
+     * any documents that have not been consumed yet.
+     */
+    public static Stream<Match> $all(Collection<Path> paths, Executor executor) {
+        return Loader.load(paths.iterator(), executor);
+    }
+
+    /**
+     * Read DOM documents from files concurrently, using the default executor.
+     *
+     * @see #$all(Collection, Executor)
+     */
+    public static Stream<Match> $all(Stream<Path> paths) {
+        return $all(paths, Loader.executor());
+    }
+
+    /**
+     * Read DOM documents from files concurrently.
+     * <p>
+     * The supplied stream is consumed lazily, as documents are parsed, and
+     * closed along with the returned stream.
+     *
+     * @see #$all(Collection, Executor)
+     */
+    public static Stream<Match> $all(Stream<Path> paths, Executor executor) {
+        return Loader.load(paths.iterator(), executor).onClose(paths::close);
+    }
+
+    /**
+     * Read DOM documents from all file entries of a ZIP archive concurrently,
+     * using the default executor.
+     *
+     * @see #$all(ZipFile, Executor)
+     */
+    public static Stream<Match> $all(ZipFile zip) {
+        return $all(zip, Loader.executor());
+    }
+
+    /**
+     * Read DOM documents from all file entries of a ZIP archive concurrently.
+     * <p>
+     * The documents are produced in the order of the archive's entries.
+     * Directory entries are skipped. The archive is not closed by this method,
+     * and must remain open until the returned stream has been consumed.
+     *
+     * @see #$all(Collection, Executor)
+     */
+    public static Stream<Match> $all(ZipFile zip, Executor executor) {
+        return Loader.load(zip, executor);
+    }
+
+    // ---------------------------------------------------------------------
+    // Frozen documents
+    // ---------------------------------------------------------------------
+
+    /**
+     * Create an immutable snapshot of a DOM document, and wrap its document
+     * element in a jOOX {@link Match} element set.
+     * <p>
+     * DOM implementations are generally not thread-safe, not even for reads.
+     * Unlike the original document, the snapshot can be queried by any number
+     * of threads at once, using the read-only parts of the {@link Match} API,
+     * including CSS selectors, XPath and {@link Match#lazy()} pipelines. The
+     * snapshot is also more compact than most DOM implementations, as it is
+     * stored in a few flat arrays rather than as a graph of node objects.
+     * <p>
+     * Any attempt to modify the snapshot, including through {@link Match}
+     * methods such as {@link Match#attr(String, String)} or
+     * {@link Match#index()}, fails with a {@link org.w3c.dom.DOMException}.
+     * Entity references are replaced by their contents, and document types are
+     * not part of the snapshot. Later changes to the original document are not
+     * reflected in the snapshot.
+     */
+    public static Match freeze(Document document) {
+        if (document == null)
+            return $();
+        else
+            return $(Frozen.freeze(document));
+    }
+
+    /**
+     * Create immutable snapshots of the documents of a set of matched
+     * elements, and wrap the snapshots' copies of these elements in a jOOX
+     * {@link Match} element set, in the same order.
+     * <p>
+     * Every document is frozen only once, even if several of its elements are
+     * matched. Elements that are not attached to their document are frozen in
+     * a document of their own. Elements that are already frozen are kept as
+     * they are. The namespaces of the set of matched elements are kept as
+     * well.
+     *
+     * @see #freeze(Document)
+     */
+    public static Match freeze(Match match) {
+        if (match == null || match.isEmpty())
+            return $();
+
+        List<Element> elements = Frozen.freeze(match.get());
+        Map<String, String> namespaces = match instanceof Impl ? ((Impl) match).namespaces() : null;
+        return new Impl(elements.get(0).getOwnerDocument(), namespaces).addElements(elements);
+    }
+
+    // ---------------------------------------------------------------------
+    // Prepared queries
+    // ---------------------------------------------------------------------
+
+    /**
+     * Prepare a CSS selector for repeated use with {@link Match#find(Query)}
+     * and {@link Match#filter(Query)}.
+     * <p>
+     * The selector is parsed once, and the way it is evaluated is decided
+     * once, rather than every time it is passed to {@link Match#find(String)}.
+     * See {@link #selector(String)} for the supported selector syntax.
+     *
+     * @throws RuntimeException If the selector cannot be parsed
+     */
+    public static Query query(String selector) {
+        return QueryImpl.css(selector);
+    }
+
+    /**
+     * Prepare an XPath expression for repeated use with
+     * {@link Match#find(Query)} and {@link Match#filter(Query)}.
+     * <p>
+     * The expression is compiled once. Numbered variables <code>$1</code>,
+     * <code>$2</code>, etc. can be bound through {@link Query#bind(Object...)}
+     * without compiling the expression again.
+     *
+     * @throws RuntimeException If the expression cannot be compiled
+     */
+    public static Query xpathQuery(String expression) {
+        return QueryImpl.xpath(expression);
     }
 
     // ---------------------------------------------------------------------
@@ -345,9 +660,9 @@ public final class JOOX {
     /**
      * A filter that returns all elements matched by a given selector.
      * <p>
-     * In most cases, this is the same as calling {@link #tag(String)}. In
-     * {@link Match#find(String)}, the following CSS-style selector syntax
-     * elements are also supported:
+     * For simple tag names, this is the same as calling {@link #tag(String)}.
+     * Both this filter and {@link Match#find(String)} also support the
+     * following CSS-style selector syntax elements:
      * <table border="1">
      * <tr>
      * <th>Selector pattern</th>
@@ -442,12 +757,28 @@ public final class JOOX {
      * {@link Match#xpath(String)} along with
      * {@link Match#namespaces(java.util.Map)} if your XML document contains
      * namespaces
+     * <p>
+     * The selector is compiled once, and then checked against each element
+     * from right to left. Combinators are evaluated relative to the element's
+     * document, e.g. <code>library > book</code> matches all
+     * <code>book</code> elements whose parent is a <code>library</code>
+     * element. Selectors that cannot be checked this way are tested against
+     * their XPath translation, evaluated from the element's document.
      *
      * @see <a
      *      href="http://www.w3.org/TR/selectors/#selectors">http://www.w3.org/TR/selectors/#selectors</a>
      */
     public static Filter selector(final String selector) {
-        return tag(selector);
+        if (selector == null || selector.equals("") || "*".equals(selector) || SIMPLE_SELECTOR.matcher(selector).matches())
+            return tag(selector);
+
+        final SelectorMatcher matcher = SelectorMatcher.compile(selector);
+        if (matcher.isSupported())
+            return (FastFilter) context -> matcher.matches(context.element(), null);
+
+        // Other selectors are tested against their XPath translation
+        final String xpath = CSS2XPath.css2xpath(selector, true);
+        return (FastFilter) context -> Util.isSelected(context.element(), xpath);
     }
 
     /**
@@ -484,17 +815,22 @@ public final class JOOX {
         // [#104] The special * operator is also supported
         else if ("*".equals(tagName))
             return all();
-        else
-            return context -> {
-                String localName = context.element().getTagName();
 
-                // [#103] If namespaces are ignored, consider only local
-                // part of possibly namespace-unaware Element
-                if (ignoreNamespace)
-                    localName = Util.stripNamespace(localName);
+        FastFilter filter = context -> {
+            String localName = context.element().getTagName();
 
-                return tagName.equals(localName);
-            };
+            // [#103] If namespaces are ignored, consider only local
+            // part of possibly namespace-unaware Element
+            if (ignoreNamespace)
+                return Util.localNameEquals(localName, tagName);
+
+            return tagName.equals(localName);
+        };
+
+        if (ignoreNamespace)
+            return new IndexedFilter(filter, index -> index.tag(tagName));
+        else
+            return filter;
     }
 
     /**
@@ -509,14 +845,7 @@ public final class JOOX {
         if ("*".equals(namespacePrefix))
             return all();
         else
-            return context -> {
-                String match = $(context).namespacePrefix();
-
-                if (match == null || "".equals(match))
-                    return namespacePrefix == null || "".equals(namespacePrefix);
-                else
-                    return match.equals(namespacePrefix);
-            };
+            return context -> Util.prefixEquals(context.element().getTagName(), namespacePrefix);
     }
 
     /**
@@ -534,7 +863,7 @@ public final class JOOX {
             return all();
         else
             return context -> {
-                String match = $(context).namespaceURI();
+                String match = context.element().getNamespaceURI();
 
                 if (match == null || "".equals(match))
                     return namespaceURI == null || "".equals(namespaceURI);
@@ -555,7 +884,7 @@ public final class JOOX {
         }
         else {
             Pattern pattern = Pattern.compile(regex);
-            return context -> pattern.matcher($(context).text()).matches();
+            return context -> pattern.matcher(context.element().getTextContent()).matches();
         }
     }
 
@@ -572,7 +901,7 @@ public final class JOOX {
         else {
             Pattern pattern = Pattern.compile(valueRegex);
             return context -> {
-                String value = $(context).attr(name);
+                String value = Util.attr(context.element(), name);
 
                 if (value == null)
                     return false;
@@ -634,9 +963,9 @@ public final class JOOX {
      */
     public static FastFilter attr(final String name) {
         if (name == null || name.equals(""))
-            return context -> context.element().getAttributes().getLength() == 0;
+            return context -> !context.element().hasAttributes();
         else
-            return context -> $(context).attr(name) != null;
+            return context -> Util.attr(context.element(), name) != null;
     }
 
     /**
@@ -646,8 +975,13 @@ public final class JOOX {
     public static FastFilter attr(final String name, final String value) {
         if (name == null || name.equals(""))
             return attr(name);
+
+        FastFilter filter = context -> Objects.equals(Util.attr(context.element(), name), value);
+
+        if (value != null)
+            return new IndexedFilter(filter, index -> index.attr(name, Collections.singleton(value)));
         else
-            return context -> Objects.equals($(context).attr(name), value);
+            return filter;
     }
 
     /**
@@ -659,8 +993,14 @@ public final class JOOX {
 
         if (name == null || name.equals(""))
             return attr(name);
+
+        FastFilter filter = context -> list.contains(Util.attr(context.element(), name));
+        Set<String> set = new HashSet<>(list);
+
+        if (!set.contains(null))
+            return new IndexedFilter(filter, index -> index.attr(name, set));
         else
-            return context -> list.contains($(context).attr(name));
+            return filter;
     }
 
     /**
@@ -701,7 +1041,12 @@ public final class JOOX {
      */
     public static FastFilter ids(String... ids) {
         final Set<String> set = new HashSet<>(Arrays.asList(ids));
-        return context -> set.contains($(context).attr("id"));
+        final FastFilter filter = context -> set.contains(Util.attr(context.element(), "id"));
+
+        if (!set.contains(null))
+            return new IndexedFilter(filter, index -> index.attr("id", set));
+        else
+            return filter;
     }
 
     // ---------------------------------------------------------------------
@@ -767,7 +1112,7 @@ public final class JOOX {
      * Create a mapper that returns all attributes with a given name
      */
     public static Mapper<String> attrs(final String attributeName) {
-        return context -> $(context).attr(attributeName);
+        return context -> Util.attr(context.element(), attributeName);
     }
 
     /**
@@ -841,76 +1186,43 @@ public final class JOOX {
 
     /**
      * Get a namespace-aware document builder
+     * <p>
+     * The returned builder is created from a shared, preconfigured
+     * {@link DocumentBuilderFactory} and belongs to the caller. jOOX's own
+     * parsing methods, such as {@link #$(File)} or {@link #$(InputStream)},
+     * borrow builders from an internal pool instead, whose size can be
+     * configured with the <code>org.joox.builderPoolSize</code> system
+     * property.
+     *
+     * @see #builderStatistics()
      */
     public static DocumentBuilder builder() {
-        try {
-            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-
-            // -----------------------------------------------------------------
-            // [#136] FIX START: Prevent OWASP attack vectors
-            try {
-                factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
-            }
-            catch (ParserConfigurationException ignore) {}
-
-            try {
-                factory.setFeature("http://xml.org/sax/features/external-general-entities", false);
-            }
-            catch (ParserConfigurationException ignore) {}
-
-            try {
-                factory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
-            }
-            catch (ParserConfigurationException ignore) {}
-
-            // [#149] Not implemented on Android
-            try {
-                factory.setXIncludeAware(false);
-            }
-            catch (UnsupportedOperationException ignore) {}
-
-            factory.setExpandEntityReferences(false);
-            // [#136] FIX END
-            // -----------------------------------------------------------------
+        return BuilderPool.newBuilder();
+    }
 
-            // [#9] [#107] In order to take advantage of namespace-related DOM
-            // features, the internal builder should be namespace-aware
-            factory.setNamespaceAware(true);
-            DocumentBuilder builder = factory.newDocumentBuilder();
+    /**
+     * Get statistics about the internal pool of document builders used by
+     * jOOX's parsing methods.
+     */
+    public static CacheStatistics builderStatistics() {
+        return BuilderPool.statistics();
+    }
 
-            return builder;
-        }
-        catch (Exception e) {
-            throw new RuntimeException(e);
-        }
+    /**
+     * Get statistics about the internal cache of compiled XPath expressions
+     * used by {@link Match#xpath(String)} and {@link Match#find(String)}.
+     * <p>
+     * The maximum number of cached expressions can be configured with the
+     * <code>org.joox.xpathCacheSize</code> system property.
+     */
+    public static CacheStatistics xpathStatistics() {
+        return XPathCache.statistics();
     }
 
     // ---------------------------------------------------------------------
     // Other utilities
     // ---------------------------------------------------------------------
 
-    private static final Set<String> TRUE_VALUES;
-    private static final Set<String> FALSE_VALUES;
-
-    static {
-        TRUE_VALUES = new HashSet<>();
-        FALSE_VALUES = new HashSet<>();
-
-        TRUE_VALUES.add("1");
-        TRUE_VALUES.add("y");
-        TRUE_VALUES.add("yes");
-        TRUE_VALUES.add("true");
-        TRUE_VALUES.add("on");
-        TRUE_VALUES.add("enabled");
-
-        FALSE_VALUES.add("0");
-        FALSE_VALUES.add("n");
-        FALSE_VALUES.add("no");
-        FALSE_VALUES.add("false");
-        FALSE_VALUES.add("off");
-        FALSE_VALUES.add("disabled");
-    }
-
     /**
      * Convert a string value to any of these types:
      * <ul>
@@ -995,192 +1307,65 @@ public final class JOOX {
      * <li>Any of the above as array. Arrays of any type are split by any
      * whitespace character, comma or semi-colon. String literals may be
      * delimited by quotes as well.</li>
+     * <li>Any type with a converter registered through
+     * {@link #converter(Class, Converter)}</li>
      * </ul>
      * <p>
      * All other values evaluate to <code>null</code>
      */
-    @SuppressWarnings("unchecked")
     public static <T> T convert(String value, Class<T> type) {
-        if (value == null && type.isPrimitive()) {
-            value = "0";
-        }
-
-        if (value == null) {
-            return null;
-        }
-
-        // [#24] TODO: base64-decode binary data
-        // else if (type == byte[].class) {
-        // }
-
-        // [#28] Array conversion will recurse for split values
-        else if (type.isArray()) {
-            Class<?> component = type.getComponentType();
-            List<String> split = Util.split(value);
-            return (T) convert(split, component).toArray((Object[]) Array.newInstance(component, split.size()));
-        }
-
-        // Strings are not converted
-        else if (type == String.class) {
-            return (T) value;
-        }
-
-        // All type can be converted to Object
-        else if (type == Object.class) {
-            return (T) value;
-        }
-
-        // Various number types
-        else if (type == Byte.class || type == byte.class) {
-            try {
-                return (T) Byte.valueOf(new BigDecimal(value).byteValue());
-            }
-            catch (Exception e) {
-                return (T) ((type == Byte.class) ? null : (byte) 0);
-            }
-        }
-        else if (type == Short.class || type == short.class) {
-            try {
-                return (T) Short.valueOf(new BigDecimal(value).shortValue());
-            }
-            catch (Exception e) {
-                return (T) ((type == Short.class) ? null : (short) 0);
-            }
-        }
-        else if (type == Integer.class || type == int.class) {
-            try {
-                return (T) Integer.valueOf(new BigDecimal(value).intValue());
-            }
-            catch (Exception e) {
-                return (T) ((type == Integer.class) ? null : 0);
-            }
-        }
-        else if (type == Long.class || type == long.class) {
-            try {
-                return (T) Long.valueOf(new BigDecimal(value).longValue());
-            }
-            catch (Exception e) {
-                return (T) ((type == Long.class) ? null : 0L);
-            }
-        }
-        else if (type == Float.class || type == float.class) {
-            try {
-                return (T) Float.valueOf(value);
-            }
-            catch (Exception e) {
-                return (T) ((type == Float.class) ? null : 0.0f);
-            }
-        }
-        else if (type == Double.class || type == double.class) {
-            try {
-                return (T) Double.valueOf(value);
-            }
-            catch (Exception e) {
-                return (T) ((type == Double.class) ? null : 0.0);
-            }
-        }
-        else if (type == BigDecimal.class) {
-            try {
-                return (T) new BigDecimal(value);
-            }
-            catch (Exception e) {
-                return null;
-            }
-        }
-        else if (type == BigInteger.class) {
-            try {
-                return (T) new BigDecimal(value).toBigInteger();
-            }
-            catch (Exception e) {
-                return null;
-            }
-        }
-
-        // Booleans have a set of allowed values
-        else if (type == Boolean.class || type == boolean.class) {
-            String s = value.toLowerCase();
-
-            if (TRUE_VALUES.contains(s)) {
-                return (T) Boolean.TRUE;
-            }
-            else if (FALSE_VALUES.contains(s)) {
-                return (T) Boolean.FALSE;
-            }
-            else {
-                return (T) ((type == Boolean.class) ? null : false);
-            }
-        }
-
-        // [#29] TODO: Date-time types
-        else if (type == java.util.Date.class) {
-            try {
-                return (T) Util.parseDate(value);
-            }
-            catch (Exception e) {
-                return null;
-            }
-        }
-        else if (type == java.util.Calendar.class) {
-            try {
-                Calendar cal = Calendar.getInstance();
-                cal.setTime(Util.parseDate(value));
-                return (T) cal;
-            }
-            catch (Exception e) {
-                return null;
-            }
-        }
-        else if (type == java.util.GregorianCalendar.class) {
-            try {
-                Calendar cal = new GregorianCalendar();
-                cal.setTime(Util.parseDate(value));
-                return (T) cal;
-            }
-            catch (Exception e) {
-                return null;
-            }
-        }
-        else if (type == java.sql.Timestamp.class) {
-            try {
-                return (T) new java.sql.Timestamp(Util.parseDate(value).getTime());
-            }
-            catch (Exception e) {
-                return null;
-            }
-        }
-        else if (type == java.sql.Date.class) {
-            try {
-                return (T) new java.sql.Date(Util.parseDate(value).getTime());
-            }
-            catch (Exception e) {
-                return null;
-            }
-        }
-        else if (type == java.sql.Time.class) {
-            try {
-                return (T) new java.sql.Time(Util.parseDate(value).getTime());
-            }
-            catch (Exception e) {
-                return null;
-            }
-        }
-
-        // All other types are ignored
-        return null;
+        return Converters.convert(value, type, Converters.get(type));
     }
 
     /**
      * Convert several values
+     * <p>
+     * The converter for <code>type</code> is resolved only once for all
+     * values.
      *
      * @see #convert(String, Class)
      */
     public static <T> List<T> convert(List<String> values, Class<T> type) {
-        List<T> result = new ArrayList<>();
+        return Converters.convert(values, type);
+    }
+
+    /**
+     * Get the converter that {@link #convert(String, Class)} uses for a type
+     * <p>
+     * This is either a converter registered through
+     * {@link #converter(Class, Converter)}, or a built-in converter. Types
+     * that are not supported have a converter that always returns
+     * <code>null</code>.
+     */
+    public static <T> Converter<T> converter(Class<T> type) {
+        return Converters.get(type);
+    }
 
-        for (String value : values)
-            result.add(convert(value, type));
+    /**
+     * Register a converter for a type, to be used by
+     * {@link #convert(String, Class)} and by all {@link Match} methods that
+     * accept a target type
+     * <p>
+     * A registered converter replaces any built-in converter for the same
+     * type. This can also be used to support additional types, e.g.
+     * <code><pre>
+     * JOOX.converter(UUID.class, UUID::fromString);
+     * JOOX.converter(LocalDate.class, LocalDate::parse);
+     * </pre></code> Exceptions thrown by registered converters, such as the
+     * {@link IllegalArgumentException} of <code>UUID.fromString()</code>, are
+     * caught, and the value is converted to <code>null</code>. Registering a
+     * <code>null</code> converter restores the built-in behaviour. Converters are global, and should be registered
+     * before they are first used.
+     *
+     * @throws IllegalArgumentException If <code>type</code> is primitive.
+     *             Primitive types are always converted by their built-in
+     *             converters.
+     */
+    public static <T> void converter(Class<T> type, Converter<T> converter) {
+        if (type.isPrimitive())
+            throw new IllegalArgumentException("Cannot register converters for primitive types: " + type);
 
-        return result;
+        Converters.register(type, converter);
     }
 
     // ---------------------------------------------------------------------
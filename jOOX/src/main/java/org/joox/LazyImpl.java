@@ -0,0 +1,492 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joox;
+
+import static java.util.Collections.emptyIterator;
+import static java.util.Collections.singletonList;
+import static org.joox.JOOX.all;
+import static org.joox.JOOX.list;
+import static org.joox.JOOX.selector;
+import static org.joox.Util.context;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.joox.selector.SelectorMatcher;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * The default {@link LazyMatch} implementation, composing {@link Iterator}s.
+ */
+final class LazyImpl implements LazyMatch {
+
+    private final Document            document;
+    private final Map<String, String> namespaces;
+    private final Iterable<Element>   source;
+
+    LazyImpl(Document document, Map<String, String> namespaces, Iterable<Element> source) {
+        this.document = document;
+        this.namespaces = namespaces;
+        this.source = source;
+    }
+
+    // -------------------------------------------------------------------------
+    // XXX: Iterable API
+    // -------------------------------------------------------------------------
+
+    @Override
+    public final Iterator<Element> iterator() {
+        return source.iterator();
+    }
+
+    @Override
+    public final Spliterator<Element> spliterator() {
+        return Spliterators.spliteratorUnknownSize(iterator(), Spliterator.ORDERED | Spliterator.NONNULL);
+    }
+
+    // -------------------------------------------------------------------------
+    // XXX: Traversing
+    // -------------------------------------------------------------------------
+
+    @Override
+    public final LazyImpl find() {
+        return find(all());
+    }
+
+    @Override
+    public final LazyImpl find(String selector) {
+        if ("*".equals(selector))
+            return find(all());
+        else if (Impl.SIMPLE_SELECTOR.matcher(selector).matches())
+            return find(JOOX.tag(selector, true));
+
+        SelectorMatcher matcher = SelectorMatcher.compile(selector);
+
+        // Root selectors are matched against the whole document, like in
+        // Impl.find(String)
+        if (matcher.isSupported())
+            return step(true, all(), (match, matchIndex, cursor) -> {
+                Node scope = isRoot(match) ? match.getOwnerDocument() : match;
+                return new Descendants(scope, match, matchIndex, (FastFilter) context -> matcher.matches(context.element(), scope), null);
+            });
+
+        // Other CSS selectors are transformed to XPath expressions, one match
+        // at a time
+        else
+            return step(true, all(), (match, matchIndex, cursor) -> new Impl(document, namespaces).addElements(match).find(selector).iterator());
+    }
+
+    @Override
+    public final LazyImpl find(Filter filter) {
+        final Filter f = QueryImpl.withNamespaces(filter, namespaces);
+        return step(true, f, (match, matchIndex, cursor) -> new Descendants(match, match, matchIndex, f, cursor));
+    }
+
+    @Override
+    public final LazyImpl children() {
+        return children(all());
+    }
+
+    @Override
+    public final LazyImpl children(String selector) {
+        return children(selector(selector));
+    }
+
+    @Override
+    public final LazyImpl children(Filter filter) {
+        final Filter f = QueryImpl.withNamespaces(filter, namespaces);
+        return step(false, f, (match, matchIndex, cursor) -> {
+            List<Element> children = list(match.getChildNodes());
+            int elementSize = children.size();
+            List<Element> result = new ArrayList<>(elementSize);
+
+            for (int elementIndex = 0; elementIndex < elementSize; elementIndex++) {
+                Element e = children.get(elementIndex);
+
+                if (f.filter(context(cursor, match, matchIndex, -1, e, elementIndex, elementSize)))
+                    result.add(e);
+            }
+
+            return result.iterator();
+        });
+    }
+
+    @Override
+    public final LazyImpl parent() {
+        return parent(all());
+    }
+
+    @Override
+    public final LazyImpl parent(String selector) {
+        return parent(selector(selector));
+    }
+
+    @Override
+    public final LazyImpl parent(Filter filter) {
+
+        // Several elements may share the same parent
+        final Filter f = QueryImpl.withNamespaces(filter, namespaces);
+        return step(true, f, (match, matchIndex, cursor) -> {
+            Node parent = match.getParentNode();
+
+            if (parent instanceof Element && f.filter(context(cursor, match, matchIndex, -1, (Element) parent, 1, -1)))
+                return singletonList((Element) parent).iterator();
+            else
+                return emptyIterator();
+        });
+    }
+
+    @Override
+    public final LazyImpl next() {
+        return next(all());
+    }
+
+    @Override
+    public final LazyImpl next(String selector) {
+        return next(selector(selector));
+    }
+
+    @Override
+    public final LazyImpl next(Filter filter) {
+        final Filter f = QueryImpl.withNamespaces(filter, namespaces);
+        return step(false, f, (match, matchIndex, cursor) -> {
+            for (Node node = match.getNextSibling(); node != null; node = node.getNextSibling())
+                if (node.getNodeType() == Node.ELEMENT_NODE)
+                    if (f.filter(context(cursor, match, matchIndex, -1, (Element) node, 1, -1)))
+                        return singletonList((Element) node).iterator();
+                    else
+                        break;
+
+            return emptyIterator();
+        });
+    }
+
+    @Override
+    public final LazyImpl filter(String selector) {
+        return filter(selector(selector));
+    }
+
+    @Override
+    public final LazyImpl filter(Filter filter) {
+        final Filter f = QueryImpl.withNamespaces(filter, namespaces);
+        return step(false, f, (match, matchIndex, cursor) -> {
+            if (f.filter(context(cursor, match, matchIndex, -1)))
+                return singletonList(match).iterator();
+            else
+                return emptyIterator();
+        });
+    }
+
+    @Override
+    public final LazyImpl eq(int index) {
+        if (index >= 0)
+            return new LazyImpl(document, namespaces, () -> new Limit(new Skip(source.iterator(), index), 1));
+
+        return new LazyImpl(document, namespaces, () -> {
+            List<Element> elements = get();
+            int calculated = elements.size() + index;
+
+            if (calculated >= 0)
+                return singletonList(elements.get(calculated)).iterator();
+            else
+                return emptyIterator();
+        });
+    }
+
+    @Override
+    public final LazyImpl first() {
+        return eq(0);
+    }
+
+    @Override
+    public final LazyImpl limit(int size) {
+        return new LazyImpl(document, namespaces, () -> new Limit(source.iterator(), size));
+    }
+
+    // -------------------------------------------------------------------------
+    // XXX: Terminal operations
+    // -------------------------------------------------------------------------
+
+    @Override
+    public final Element get(int index) {
+        Iterator<Element> it = eq(index).iterator();
+        return it.hasNext() ? it.next() : null;
+    }
+
+    @Override
+    public final List<Element> get() {
+        List<Element> result = new ArrayList<>();
+
+        for (Element element : source)
+            result.add(element);
+
+        return result;
+    }
+
+    @Override
+    public final Impl match() {
+        return new Impl(document, namespaces).addElements(get());
+    }
+
+    @Override
+    public final Stream<Element> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    @Override
+    public final int size() {
+        int result = 0;
+
+        for (Iterator<Element> it = iterator(); it.hasNext(); it.next())
+            result++;
+
+        return result;
+    }
+
+    @Override
+    public final boolean isEmpty() {
+        return !iterator().hasNext();
+    }
+
+    @Override
+    public final boolean isNotEmpty() {
+        return !isEmpty();
+    }
+
+    @Override
+    public final boolean is(String selector) {
+        return is(selector(selector));
+    }
+
+    @Override
+    public final boolean is(Filter filter) {
+        return filter(filter).isNotEmpty();
+    }
+
+    // -------------------------------------------------------------------------
+    // XXX: Utilities
+    // -------------------------------------------------------------------------
+
+    /**
+     * Compose a step that maps each element pulled from this pipeline to a
+     * sequence of elements.
+     *
+     * @param unique Whether the step may produce duplicates, which need to be
+     *            removed
+     * @param filter The filter applied by the step, which determines whether
+     *            a {@link MutableContext} can be reused
+     */
+    private final LazyImpl step(boolean unique, Filter filter, Step step) {
+        return new LazyImpl(document, namespaces, () -> new FlatMap(source.iterator(), unique, Util.cursor(filter), step));
+    }
+
+    private static final boolean isRoot(Element element) {
+        return element.getParentNode().getNodeType() == Node.DOCUMENT_NODE;
+    }
+
+    @FunctionalInterface
+    private interface Step {
+        Iterator<Element> apply(Element match, int matchIndex, MutableContext cursor);
+    }
+
+    /**
+     * An iterator that computes its next element on demand.
+     */
+    private static abstract class Pull implements Iterator<Element> {
+
+        private Element next;
+        private boolean done;
+
+        /**
+         * Compute the next element, or <code>null</code> if there are no more
+         * elements.
+         */
+        abstract Element pull();
+
+        @Override
+        public final boolean hasNext() {
+            if (next == null && !done)
+                done = (next = pull()) == null;
+
+            return next != null;
+        }
+
+        @Override
+        public final Element next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+
+            Element result = next;
+            next = null;
+            return result;
+        }
+    }
+
+    /**
+     * Concatenate the results of a {@link Step} for all elements of a
+     * previous step, optionally removing duplicates.
+     */
+    private static final class FlatMap extends Pull {
+
+        private final Iterator<Element> matches;
+        private final boolean           unique;
+        private final MutableContext    cursor;
+        private final Step              step;
+        private Set<Element>            seen;
+        private Iterator<Element>       current;
+        private int                     matchIndex;
+
+        FlatMap(Iterator<Element> matches, boolean unique, MutableContext cursor, Step step) {
+            this.matches = matches;
+            this.unique = unique;
+            this.cursor = cursor;
+            this.step = step;
+            this.current = emptyIterator();
+        }
+
+        @Override
+        final Element pull() {
+            for (;;) {
+                while (current.hasNext()) {
+                    Element e = current.next();
+
+                    if (seen == null || seen.add(e))
+                        return e;
+                }
+
+                if (!matches.hasNext())
+                    return null;
+
+                current = step.apply(matches.next(), matchIndex++, cursor);
+
+                // The results of a single element contain no duplicates, so
+                // produced elements are only remembered if there are more
+                if (unique && seen == null && matches.hasNext())
+                    seen = Collections.newSetFromMap(new IdentityHashMap<>());
+            }
+        }
+    }
+
+    /**
+     * The descendant elements of a scope in document order, matching a
+     * filter.
+     */
+    private static final class Descendants extends Pull {
+
+        private final Node           scope;
+        private final Element        match;
+        private final int            matchIndex;
+        private final Filter         filter;
+        private final MutableContext cursor;
+        private Node                 node;
+        private int                  elementIndex;
+
+        Descendants(Node scope, Element match, int matchIndex, Filter filter, MutableContext cursor) {
+            this.scope = scope;
+            this.match = match;
+            this.matchIndex = matchIndex;
+            this.filter = filter;
+            this.cursor = cursor;
+            this.node = scope.getFirstChild();
+        }
+
+        @Override
+        final Element pull() {
+            while (node != null) {
+                Node current = node;
+                Node child = current.getNodeType() == Node.ELEMENT_NODE ? current.getFirstChild() : null;
+
+                // Iterative pre-order traversal of the scope's descendants
+                if (child != null) {
+                    node = child;
+                }
+                else {
+                    Node n = current;
+
+                    while (n != scope && n.getNextSibling() == null)
+                        n = n.getParentNode();
+
+                    node = n == scope ? null : n.getNextSibling();
+                }
+
+                if (current.getNodeType() == Node.ELEMENT_NODE) {
+                    Element e = (Element) current;
+
+                    if (filter.filter(context(cursor, match, matchIndex, -1, e, elementIndex++, -1)))
+                        return e;
+                }
+            }
+
+            return null;
+        }
+    }
+
+    /**
+     * Skip the first elements of an iterator.
+     */
+    private static final class Skip extends Pull {
+
+        private final Iterator<Element> delegate;
+        private int                     skip;
+
+        Skip(Iterator<Element> delegate, int skip) {
+            this.delegate = delegate;
+            this.skip = skip;
+        }
+
+        @Override
+        final Element pull() {
+            for (; skip > 0 && delegate.hasNext(); skip--)
+                delegate.next();
+
+            return delegate.hasNext() ? delegate.next() : null;
+        }
+    }
+
+    /**
+     * Stop an iterator after a given number of elements, without pulling any
+     * further elements from it.
+     */
+    private static final class Limit extends Pull {
+
+        private final Iterator<Element> delegate;
+        private int                     remaining;
+
+        Limit(Iterator<Element> delegate, int remaining) {
+            this.delegate = delegate;
+            this.remaining = remaining;
+        }
+
+        @Override
+        final Element pull() {
+            if (remaining <= 0 || !delegate.hasNext())
+                return null;
+
+            remaining--;
+            return delegate.next();
+        }
+    }
+}
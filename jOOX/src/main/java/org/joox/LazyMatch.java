@@ -0,0 +1,244 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joox;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.w3c.dom.Element;
+
+/**
+ * A lazily evaluated pipeline of traversal steps, obtained from
+ * {@link Match#lazy()}.
+ * <p>
+ * Unlike {@link Match}, the traversal methods of this type do not visit any
+ * elements. They only compose steps, which are evaluated element by element
+ * when a terminal operation, such as {@link #get(int)}, {@link #is(Filter)},
+ * {@link #isNotEmpty()} or {@link #match()} pulls elements from the pipeline.
+ * Short-circuiting operations stop as soon as their result is known. For
+ * instance, the following only visits the document up to the first
+ * <code>item</code> element with a <code>price</code> attribute:
+ * <code><pre>
+ * Element first = $(document).lazy().find("item").filter(attr("price")).get(0);
+ * </pre></code>
+ * <p>
+ * Each terminal operation evaluates the pipeline again, against the current
+ * state of the DOM. The produced elements are the same as those of the
+ * equivalent eager {@link Match} operations, without duplicates, and in the
+ * same order. As the sizes of the intermediate sets of elements are not known
+ * while elements are pulled, {@link Context#matchSize()} and
+ * {@link Context#elementSize()} are <code>-1</code> in all {@link Filter}
+ * callbacks, unless stated otherwise.
+ * <p>
+ * The DOM must not be modified while a pipeline is being evaluated.
+ */
+public interface LazyMatch extends Iterable<Element> {
+
+    // ---------------------------------------------------------------------
+    // Traversing
+    // ---------------------------------------------------------------------
+
+    /**
+     * Find all descendants of each element in the pipeline
+     *
+     * @see Match#find()
+     */
+    LazyMatch find();
+
+    /**
+     * Find all descendants of each element in the pipeline, matching a
+     * selector
+     *
+     * @see Match#find(String)
+     */
+    LazyMatch find(String selector);
+
+    /**
+     * Find all descendants of each element in the pipeline, matching a filter
+     *
+     * @see Match#find(Filter)
+     */
+    LazyMatch find(Filter filter);
+
+    /**
+     * Find all children of each element in the pipeline
+     *
+     * @see Match#children()
+     */
+    LazyMatch children();
+
+    /**
+     * Find all children of each element in the pipeline, matching a selector
+     *
+     * @see Match#children(String)
+     */
+    LazyMatch children(String selector);
+
+    /**
+     * Find all children of each element in the pipeline, matching a filter.
+     * <p>
+     * {@link Context#elementSize()} is the number of child elements of
+     * {@link Context#match()}.
+     *
+     * @see Match#children(Filter)
+     */
+    LazyMatch children(Filter filter);
+
+    /**
+     * Find the parent of each element in the pipeline
+     *
+     * @see Match#parent()
+     */
+    LazyMatch parent();
+
+    /**
+     * Find the parent of each element in the pipeline, matching a selector
+     *
+     * @see Match#parent(String)
+     */
+    LazyMatch parent(String selector);
+
+    /**
+     * Find the parent of each element in the pipeline, matching a filter
+     *
+     * @see Match#parent(Filter)
+     */
+    LazyMatch parent(Filter filter);
+
+    /**
+     * Find the next sibling of each element in the pipeline
+     *
+     * @see Match#next()
+     */
+    LazyMatch next();
+
+    /**
+     * Find the next sibling of each element in the pipeline, matching a
+     * selector
+     *
+     * @see Match#next(String)
+     */
+    LazyMatch next(String selector);
+
+    /**
+     * Find the next sibling of each element in the pipeline, matching a filter
+     *
+     * @see Match#next(Filter)
+     */
+    LazyMatch next(Filter filter);
+
+    /**
+     * Reduce the elements in the pipeline to those matching a selector
+     *
+     * @see Match#filter(String)
+     */
+    LazyMatch filter(String selector);
+
+    /**
+     * Reduce the elements in the pipeline to those matching a filter
+     *
+     * @see Match#filter(Filter)
+     */
+    LazyMatch filter(Filter filter);
+
+    /**
+     * Reduce the elements in the pipeline to the element at a given index.
+     * <p>
+     * Negative indexes are counted from the end of the pipeline. They cannot
+     * be evaluated lazily, and pull all elements from the previous step.
+     *
+     * @see Match#eq(int...)
+     */
+    LazyMatch eq(int index);
+
+    /**
+     * Reduce the elements in the pipeline to the first element
+     *
+     * @see Match#first()
+     */
+    LazyMatch first();
+
+    /**
+     * Reduce the elements in the pipeline to the first <code>size</code>
+     * elements
+     */
+    LazyMatch limit(int size);
+
+    // ---------------------------------------------------------------------
+    // Terminal operations
+    // ---------------------------------------------------------------------
+
+    /**
+     * Get the element at a given index, or <code>null</code> if there is no
+     * such element.
+     * <p>
+     * Negative indexes are counted from the end of the pipeline, and pull all
+     * elements.
+     *
+     * @see Match#get(int)
+     */
+    Element get(int index);
+
+    /**
+     * Pull all elements from the pipeline
+     *
+     * @see Match#get()
+     */
+    List<Element> get();
+
+    /**
+     * Pull all elements from the pipeline into a {@link Match}
+     */
+    Match match();
+
+    /**
+     * Get a sequential {@link Stream} pulling elements from the pipeline
+     */
+    Stream<Element> stream();
+
+    /**
+     * Count the elements in the pipeline
+     *
+     * @see Match#size()
+     */
+    int size();
+
+    /**
+     * Whether the pipeline produces no elements
+     *
+     * @see Match#isEmpty()
+     */
+    boolean isEmpty();
+
+    /**
+     * Whether the pipeline produces at least one element
+     *
+     * @see Match#isNotEmpty()
+     */
+    boolean isNotEmpty();
+
+    /**
+     * Whether any element in the pipeline matches a selector
+     *
+     * @see Match#is(String)
+     */
+    boolean is(String selector);
+
+    /**
+     * Whether any element in the pipeline matches a filter
+     *
+     * @see Match#is(Filter)
+     */
+    boolean is(Filter filter);
+}
@@ -0,0 +1,194 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joox;
+
+import static org.joox.JOOX.$;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * Concurrent parsing of many documents into an ordered {@link Stream} of
+ * {@link Match} objects.
+ * <p>
+ * Documents are parsed ahead of the stream's consumer, but the number of
+ * documents that are being parsed or that have been parsed and not yet
+ * consumed is bounded. This bound can be configured with the
+ * <code>org.joox.loadWindow</code> system property, and defaults to four
+ * documents per available processor.
+ *
+ * @see JOOX#$all(java.util.Collection)
+ */
+final class Loader {
+
+    /**
+     * The maximum number of documents that are parsed ahead of the consumer
+     */
+    private static final int      WINDOW   = Math.max(1, Integer.getInteger(
+        "org.joox.loadWindow", 4 * Runtime.getRuntime().availableProcessors()));
+
+    /**
+     * The default executor, using virtual threads if they are available, or a
+     * pool of daemon threads otherwise
+     */
+    private static final Executor EXECUTOR = defaultExecutor();
+
+    static final Executor executor() {
+        return EXECUTOR;
+    }
+
+    /**
+     * Parse files concurrently.
+     */
+    static final Stream<Match> load(Iterator<Path> paths, Executor executor) {
+        return load(paths, path -> $(BuilderPool.parse(path.toFile())), executor);
+    }
+
+    /**
+     * Parse all file entries of a ZIP archive concurrently, in the order of the
+     * archive's central directory.
+     */
+    static final Stream<Match> load(ZipFile zip, Executor executor) {
+        Iterator<? extends ZipEntry> entries = zip.stream().filter(entry -> !entry.isDirectory()).iterator();
+
+        return load(entries, entry -> {
+            try (InputStream stream = zip.getInputStream(entry)) {
+                InputSource source = new InputSource(stream);
+                source.setSystemId(entry.getName());
+                return $(BuilderPool.parse(source));
+            }
+        }, executor);
+    }
+
+    private static final <S> Stream<Match> load(Iterator<S> sources, Parser<S> parser, Executor executor) {
+        Documents<S> documents = new Documents<>(sources, parser, executor);
+        return StreamSupport.stream(documents, false).onClose(documents::cancel);
+    }
+
+    private static final Executor defaultExecutor() {
+
+        // Virtual threads are available from Java 21 onwards. jOOX is built
+        // with --release 11, so the factory method is looked up reflectively.
+        try {
+            return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch (ReflectiveOperationException | RuntimeException e) {
+
+            // Parsing blocks on I/O, so the common pool is not a good fit
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(WINDOW, WINDOW, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "joox-loader");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+            executor.allowCoreThreadTimeOut(true);
+            return executor;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Parser<S> {
+        Match parse(S source) throws SAXException, IOException;
+    }
+
+    /**
+     * A spliterator that keeps a bounded window of documents being parsed
+     * ahead of the consumer, and that produces them in their original order.
+     */
+    private static final class Documents<S> extends Spliterators.AbstractSpliterator<Match> {
+
+        private final Iterator<S>                          sources;
+        private final Parser<S>                            parser;
+        private final Executor                             executor;
+        private final ArrayDeque<CompletableFuture<Match>> window;
+
+        Documents(Iterator<S> sources, Parser<S> parser, Executor executor) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+
+            this.sources = sources;
+            this.parser = parser;
+            this.executor = executor;
+            this.window = new ArrayDeque<>(WINDOW);
+        }
+
+        @Override
+        public final boolean tryAdvance(Consumer<? super Match> action) {
+            while (window.size() < WINDOW && sources.hasNext()) {
+                S source = sources.next();
+
+                window.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return parser.parse(source);
+                    }
+                    catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    catch (SAXException e) {
+                        throw new RuntimeException(e);
+                    }
+                }, executor));
+            }
+
+            CompletableFuture<Match> next = window.poll();
+            if (next == null)
+                return false;
+
+            try {
+                action.accept(next.join());
+                return true;
+            }
+            catch (CompletionException e) {
+                cancel();
+
+                if (e.getCause() instanceof RuntimeException)
+                    throw (RuntimeException) e.getCause();
+                else if (e.getCause() instanceof Error)
+                    throw (Error) e.getCause();
+                else
+                    throw e;
+            }
+        }
+
+        /**
+         * Cancel all documents that have not been consumed yet.
+         */
+        final void cancel() {
+            for (CompletableFuture<Match> future; (future = window.poll()) != null;)
+                future.cancel(false);
+        }
+    }
+
+    private Loader() {}
+}
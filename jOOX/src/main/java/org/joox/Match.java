@@ -24,6 +24,11 @@ import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import javax.xml.transform.Result;
 import javax.xml.transform.Source;
@@ -203,6 +208,73 @@ public interface Match extends Iterable<Element> {
      */
     boolean isNotEmpty();
 
+    // ---------------------------------------------------------------------
+    // Streams
+    // ---------------------------------------------------------------------
+
+    /**
+     * Get a {@link Spliterator} over the set of matched elements.
+     * <p>
+     * The spliterator is {@link Spliterator#SIZED},
+     * {@link Spliterator#SUBSIZED}, {@link Spliterator#ORDERED} and
+     * {@link Spliterator#NONNULL}, and splits evenly. It is not
+     * {@link Spliterator#DISTINCT}, as a set of matched elements may contain
+     * the same element several times, e.g. after <code>eq(0, 0)</code>.
+     */
+    @Override
+    Spliterator<Element> spliterator();
+
+    /**
+     * Get a sequential {@link Stream} of the set of matched elements.
+     */
+    Stream<Element> stream();
+
+    /**
+     * Get a parallel {@link Stream} of the set of matched elements.
+     * <p>
+     * DOM implementations are generally not thread-safe, not even for reads.
+     * Parallel operations on the elements should only access state that is
+     * independent of the DOM, or use {@link #parallelMap(Mapper)} instead,
+     * which operates on thread-confined copies of the elements.
+     */
+    Stream<Element> parallelStream();
+
+    /**
+     * Get a sequential {@link Stream} of {@link Context} objects for the set
+     * of matched elements.
+     * <p>
+     * The contexts are populated like those passed to {@link #map(Mapper)}:
+     * <ul>
+     * <li> {@link Context#match()} - the matched element</li>
+     * <li> {@link Context#matchIndex()} - the index of the matched element</li>
+     * <li> {@link Context#matchSize()} - the size of the set of matched
+     * elements</li>
+     * </ul>
+     */
+    Stream<Context> contexts();
+
+    /**
+     * Get a parallel {@link Stream} of {@link Context} objects for the set of
+     * matched elements.
+     *
+     * @see #contexts()
+     * @see #parallelStream()
+     */
+    Stream<Context> parallelContexts();
+
+    /**
+     * Start a lazily evaluated pipeline of traversal steps from the set of
+     * matched elements.
+     * <p>
+     * Traversal steps on the returned {@link LazyMatch} are only evaluated
+     * when elements are pulled from it. Short-circuiting operations, such as
+     * {@link LazyMatch#get(int)} or {@link LazyMatch#isNotEmpty()}, stop
+     * visiting the DOM as soon as their result is known.
+     *
+     * @see LazyMatch
+     */
+    LazyMatch lazy();
+
     // ---------------------------------------------------------------------
     // Traversing
     // ---------------------------------------------------------------------
@@ -265,11 +337,11 @@ public interface Match extends Iterable<Element> {
      * <li><strong>tag names</strong> can be used to select XML elements by tag
      * names (see {@link Element#getElementsByTagName(String)}. Tag names are
      * namespace-unaware. This means that existing namespaces will be ignored</li>
+     * <li><strong>CSS selectors</strong> can be used to select XML elements,
+     * see {@link JOOX#selector(String)}</li>
      * </ul>
      * The following features are not supported:
      * <ul>
-     * <li><strong>CSS selectors</strong> cannot be used (yet) to select XML
-     * elements from this method. Use {@link #find(String)} instead</li>
      * <li><strong>XPath</strong> cannot be used. Use {@link #xpath(String)}
      * instead</li>
      * <li><strong>Namespaces</strong> cannot be used. Use
@@ -306,11 +378,11 @@ public interface Match extends Iterable<Element> {
      * <li><strong>tag names</strong> can be used to select XML elements by tag
      * names (see {@link Element#getElementsByTagName(String)}. Tag names are
      * namespace-unaware. This means that existing namespaces will be ignored</li>
+     * <li><strong>CSS selectors</strong> can be used to select XML elements,
+     * see {@link JOOX#selector(String)}</li>
      * </ul>
      * The following features are not supported:
      * <ul>
-     * <li><strong>CSS selectors</strong> cannot be used (yet) to select XML
-     * elements from this method. Use {@link #find(String)} instead</li>
      * <li><strong>XPath</strong> cannot be used. Use {@link #xpath(String)}
      * instead</li>
      * <li><strong>Namespaces</strong> cannot be used. Use
@@ -372,6 +444,48 @@ public interface Match extends Iterable<Element> {
      */
     Match each(Iterable<? extends Each> each);
 
+    /**
+     * Execute a callback for every element in the current set of matched
+     * elements, in parallel, using the {@link ForkJoinPool#commonPool()}.
+     *
+     * @see #parallelEach(Each, Executor)
+     */
+    Match parallelEach(Each each);
+
+    /**
+     * Execute a callback for every element in the current set of matched
+     * elements, in parallel.
+     * <p>
+     * DOM implementations are not thread-safe, not even for reads. Every
+     * matched element is therefore deep-copied into its own document on the
+     * calling thread, before the callback is submitted to the
+     * <code>executor</code>. The callback {@link Context} refers to that copy.
+     * Callbacks should not modify the copy, as modifications are not
+     * reflected in this match.
+     * <p>
+     * <strong>The copy is detached from the original document: it has no
+     * ancestors and no siblings.</strong> Callbacks can navigate into the
+     * matched element's subtree, but not out of it, and structural selectors
+     * such as <code>books &gt; book</code> or <code>book:first-child</code> do
+     * not match the copy. Use {@link #each(Each)} for such callbacks, or
+     * {@link JOOX#freeze(Match) freeze} the document first: elements of frozen
+     * documents are thread-safe, and are passed to callbacks without being
+     * copied.
+     * <p>
+     * Copying is serial and costs time and memory proportional to the size of
+     * each matched element's subtree. When matched elements are nested, for
+     * instance in <code>$(document).find()</code>, the same content is copied
+     * once per matched ancestor, so the copied volume can grow quadratically
+     * with the depth of the document.
+     * <p>
+     * This method returns when all submitted callbacks have completed. Once a
+     * callback throws an exception, no further callbacks are submitted, and
+     * submitted callbacks that have not started yet are skipped. Callbacks
+     * that are already running are completed, after which the first exception
+     * is rethrown.
+     */
+    Match parallelEach(Each each, Executor executor);
+
     /**
      * Reduce the current set of matched elements.
      * <p>
@@ -381,11 +495,11 @@ public interface Match extends Iterable<Element> {
      * <li><strong>tag names</strong> can be used to select XML elements by tag
      * names (see {@link Element#getElementsByTagName(String)}. Tag names are
      * namespace-unaware. This means that existing namespaces will be ignored</li>
+     * <li><strong>CSS selectors</strong> can be used to select XML elements,
+     * see {@link JOOX#selector(String)}</li>
      * </ul>
      * The following features are not supported:
      * <ul>
-     * <li><strong>CSS selectors</strong> cannot be used (yet) to select XML
-     * elements from this method. Use {@link #find(String)} instead</li>
      * <li><strong>XPath</strong> cannot be used. Use {@link #xpath(String)}
      * instead</li>
      * <li><strong>Namespaces</strong> cannot be used. Use
@@ -408,6 +522,39 @@ public interface Match extends Iterable<Element> {
      */
     Match filter(Filter filter);
 
+    /**
+     * Reduce the current set of matched elements using a prepared query.
+     * <p>
+     * CSS selector queries keep the elements that match the selector, just
+     * like {@link #filter(String)}. XPath queries keep the elements for which
+     * the expression, evaluated with the element as context node, is
+     * <code>true</code>, just like an XPath predicate. Namespaces configured
+     * through {@link #namespaces(Map)} are applied to XPath queries.
+     *
+     * @see JOOX#query(String)
+     * @see JOOX#xpathQuery(String)
+     */
+    Match filter(Query query);
+
+    /**
+     * Reduce the current set of matched elements, evaluating the filter in
+     * parallel, using the {@link ForkJoinPool#commonPool()}.
+     *
+     * @see #parallelFilter(Filter, Executor)
+     */
+    Match parallelFilter(Filter filter);
+
+    /**
+     * Reduce the current set of matched elements, evaluating the filter in
+     * parallel.
+     * <p>
+     * The filter is evaluated on detached copies of the matched elements,
+     * which have no ancestors or siblings, so structural selectors do not
+     * match them, see {@link #parallelEach(Each, Executor)}. The resulting
+     * match contains the original elements in their original order.
+     */
+    Match parallelFilter(Filter filter, Executor executor);
+
     /**
      * Reduce the current set of matched elements to the elements at the given
      * indexes. If the given indexes are not in the range of indexes, the
@@ -471,6 +618,91 @@ public interface Match extends Iterable<Element> {
      */
     Match find(Filter filter);
 
+    /**
+     * Find all descendants of each element in the current set of matched
+     * elements using a prepared query.
+     * <p>
+     * CSS selector queries return the same elements as
+     * {@link #find(String)}, and XPath queries return the same elements as
+     * {@link #xpath(String, Object...)}, with the query's bound variables.
+     * The selector or expression is not analysed or compiled again.
+     *
+     * @see JOOX#query(String)
+     * @see JOOX#xpathQuery(String)
+     */
+    Match find(Query query);
+
+    /**
+     * Check whether any element in the current set of matched elements has a
+     * descendant matching a selector.
+     * <p>
+     * This is the same as calling <code>find(selector).isNotEmpty()</code>,
+     * except that the search stops at the first matching descendant.
+     *
+     * @see #find(String)
+     */
+    boolean exists(String selector);
+
+    /**
+     * Check whether any element in the current set of matched elements has a
+     * descendant matching a filter.
+     * <p>
+     * This is the same as calling <code>find(filter).isNotEmpty()</code>,
+     * except that the search stops at the first matching descendant. The
+     * callback {@link Context} is populated like in {@link LazyMatch}.
+     *
+     * @see #find(Filter)
+     */
+    boolean exists(Filter filter);
+
+    /**
+     * Find the first descendant of the elements in the current set of matched
+     * elements, matching a selector.
+     * <p>
+     * This is the same as calling <code>find(selector).first()</code>, except
+     * that the search stops at the first matching descendant.
+     *
+     * @see #find(String)
+     */
+    Match findFirst(String selector);
+
+    /**
+     * Find the first descendant of the elements in the current set of matched
+     * elements, matching a filter.
+     * <p>
+     * This is the same as calling <code>find(filter).first()</code>, except
+     * that the search stops at the first matching descendant. The callback
+     * {@link Context} is populated like in {@link LazyMatch}.
+     *
+     * @see #find(Filter)
+     */
+    Match findFirst(Filter filter);
+
+    /**
+     * Count the descendants of the elements in the current set of matched
+     * elements, matching a selector.
+     * <p>
+     * This is the same as calling <code>find(selector).size()</code>, without
+     * collecting the matching descendants. Each descendant is counted once,
+     * even if it is a descendant of several matched elements.
+     *
+     * @see #find(String)
+     */
+    int count(String selector);
+
+    /**
+     * Count the descendants of the elements in the current set of matched
+     * elements, matching a filter.
+     * <p>
+     * This is the same as calling <code>find(filter).size()</code>, without
+     * collecting the matching descendants. Each descendant is counted once,
+     * even if it is a descendant of several matched elements. The callback
+     * {@link Context} is populated like in {@link LazyMatch}.
+     *
+     * @see #find(Filter)
+     */
+    int count(Filter filter);
+
     /**
      * Match all elements given a certain XPath expression applied to each
      * element in the current set of matched elements.
@@ -577,11 +809,11 @@ public interface Match extends Iterable<Element> {
      * <li><strong>tag names</strong> can be used to select XML elements by tag
      * names (see {@link Element#getElementsByTagName(String)}. Tag names are
      * namespace-unaware. This means that existing namespaces will be ignored</li>
+     * <li><strong>CSS selectors</strong> can be used to select XML elements,
+     * see {@link JOOX#selector(String)}</li>
      * </ul>
      * The following features are not supported:
      * <ul>
-     * <li><strong>CSS selectors</strong> cannot be used (yet) to select XML
-     * elements from this method. Use {@link #find(String)} instead</li>
      * <li><strong>XPath</strong> cannot be used. Use {@link #xpath(String)}
      * instead</li>
      * <li><strong>Namespaces</strong> cannot be used. Use
@@ -620,11 +852,11 @@ public interface Match extends Iterable<Element> {
      * <li><strong>tag names</strong> can be used to select XML elements by tag
      * names (see {@link Element#getElementsByTagName(String)}. Tag names are
      * namespace-unaware. This means that existing namespaces will be ignored</li>
+     * <li><strong>CSS selectors</strong> can be used to select XML elements,
+     * see {@link JOOX#selector(String)}</li>
      * </ul>
      * The following features are not supported:
      * <ul>
-     * <li><strong>CSS selectors</strong> cannot be used (yet) to select XML
-     * elements from this method. Use {@link #find(String)} instead</li>
      * <li><strong>XPath</strong> cannot be used. Use {@link #xpath(String)}
      * instead</li>
      * <li><strong>Namespaces</strong> cannot be used. Use
@@ -658,6 +890,24 @@ public interface Match extends Iterable<Element> {
      */
     <E> List<E> map(Mapper<E> map);
 
+    /**
+     * Map the set of matched elements to a list of something, in parallel,
+     * using the {@link ForkJoinPool#commonPool()}.
+     *
+     * @see #parallelMap(Mapper, Executor)
+     */
+    <E> List<E> parallelMap(Mapper<E> map);
+
+    /**
+     * Map the set of matched elements to a list of something, in parallel.
+     * <p>
+     * The mapper is evaluated on detached copies of the matched elements,
+     * which have no ancestors or siblings, see
+     * {@link #parallelEach(Each, Executor)}. The resulting list has the same
+     * order as the set of matched elements.
+     */
+    <E> List<E> parallelMap(Mapper<E> map, Executor executor);
+
     /**
      * Get the immediate next sibling of every element in set of matched
      * elements.
@@ -674,11 +924,11 @@ public interface Match extends Iterable<Element> {
      * <li><strong>tag names</strong> can be used to select XML elements by tag
      * names (see {@link Element#getElementsByTagName(String)}. Tag names are
      * namespace-unaware. This means that existing namespaces will be ignored</li>
+     * <li><strong>CSS selectors</strong> can be used to select XML elements,
+     * see {@link JOOX#selector(String)}</li>
      * </ul>
      * The following features are not supported:
      * <ul>
-     * <li><strong>CSS selectors</strong> cannot be used (yet) to select XML
-     * elements from this method. Use {@link #find(String)} instead</li>
      * <li><strong>XPath</strong> cannot be used. Use {@link #xpath(String)}
      * instead</li>
      * <li><strong>Namespaces</strong> cannot be used. Use
@@ -720,11 +970,11 @@ public interface Match extends Iterable<Element> {
      * <li><strong>tag names</strong> can be used to select XML elements by tag
      * names (see {@link Element#getElementsByTagName(String)}. Tag names are
      * namespace-unaware. This means that existing namespaces will be ignored</li>
+     * <li><strong>CSS selectors</strong> can be used to select XML elements,
+     * see {@link JOOX#selector(String)}</li>
      * </ul>
      * The following features are not supported:
      * <ul>
-     * <li><strong>CSS selectors</strong> cannot be used (yet) to select XML
-     * elements from this method. Use {@link #find(String)} instead</li>
      * <li><strong>XPath</strong> cannot be used. Use {@link #xpath(String)}
      * instead</li>
      * <li><strong>Namespaces</strong> cannot be used. Use
@@ -762,11 +1012,11 @@ public interface Match extends Iterable<Element> {
      * <li><strong>tag names</strong> can be used to select XML elements by tag
      * names (see {@link Element#getElementsByTagName(String)}. Tag names are
      * namespace-unaware. This means that existing namespaces will be ignored</li>
+     * <li><strong>CSS selectors</strong> can be used to select XML elements,
+     * see {@link JOOX#selector(String)}</li>
      * </ul>
      * The following features are not supported:
      * <ul>
-     * <li><strong>CSS selectors</strong> cannot be used (yet) to select XML
-     * elements from this method. Use {@link #find(String)} instead</li>
      * <li><strong>XPath</strong> cannot be used. Use {@link #xpath(String)}
      * instead</li>
      * <li><strong>Namespaces</strong> cannot be used. Use
@@ -804,11 +1054,11 @@ public interface Match extends Iterable<Element> {
      * <li><strong>tag names</strong> can be used to select XML elements by tag
      * names (see {@link Element#getElementsByTagName(String)}. Tag names are
      * namespace-unaware. This means that existing namespaces will be ignored</li>
+     * <li><strong>CSS selectors</strong> can be used to select XML elements,
+     * see {@link JOOX#selector(String)}</li>
      * </ul>
      * The following features are not supported:
      * <ul>
-     * <li><strong>CSS selectors</strong> cannot be used (yet) to select XML
-     * elements from this method. Use {@link #find(String)} instead</li>
      * <li><strong>XPath</strong> cannot be used. Use {@link #xpath(String)}
      * instead</li>
      * <li><strong>Namespaces</strong> cannot be used. Use
@@ -885,11 +1135,11 @@ public interface Match extends Iterable<Element> {
      * <li><strong>tag names</strong> can be used to select XML elements by tag
      * names (see {@link Element#getElementsByTagName(String)}. Tag names are
      * namespace-unaware. This means that existing namespaces will be ignored</li>
+     * <li><strong>CSS selectors</strong> can be used to select XML elements,
+     * see {@link JOOX#selector(String)}</li>
      * </ul>
      * The following features are not supported:
      * <ul>
-     * <li><strong>CSS selectors</strong> cannot be used (yet) to select XML
-     * elements from this method. Use {@link #find(String)} instead</li>
      * <li><strong>XPath</strong> cannot be used. Use {@link #xpath(String)}
      * instead</li>
      * <li><strong>Namespaces</strong> cannot be used. Use
@@ -928,11 +1178,11 @@ public interface Match extends Iterable<Element> {
      * <li><strong>tag names</strong> can be used to select XML elements by tag
      * names (see {@link Element#getElementsByTagName(String)}. Tag names are
      * namespace-unaware. This means that existing namespaces will be ignored</li>
+     * <li><strong>CSS selectors</strong> can be used to select XML elements,
+     * see {@link JOOX#selector(String)}</li>
      * </ul>
      * The following features are not supported:
      * <ul>
-     * <li><strong>CSS selectors</strong> cannot be used (yet) to select XML
-     * elements from this method. Use {@link #find(String)} instead</li>
      * <li><strong>XPath</strong> cannot be used. Use {@link #xpath(String)}
      * instead</li>
      * <li><strong>Namespaces</strong> cannot be used. Use
@@ -974,11 +1224,11 @@ public interface Match extends Iterable<Element> {
      * <li><strong>tag names</strong> can be used to select XML elements by tag
      * names (see {@link Element#getElementsByTagName(String)}. Tag names are
      * namespace-unaware. This means that existing namespaces will be ignored</li>
+     * <li><strong>CSS selectors</strong> can be used to select XML elements,
+     * see {@link JOOX#selector(String)}</li>
      * </ul>
      * The following features are not supported:
      * <ul>
-     * <li><strong>CSS selectors</strong> cannot be used (yet) to select XML
-     * elements from this method. Use {@link #find(String)} instead</li>
      * <li><strong>XPath</strong> cannot be used. Use {@link #xpath(String)}
      * instead</li>
      * <li><strong>Namespaces</strong> cannot be used. Use
@@ -1016,11 +1266,11 @@ public interface Match extends Iterable<Element> {
      * <li><strong>tag names</strong> can be used to select XML elements by tag
      * names (see {@link Element#getElementsByTagName(String)}. Tag names are
      * namespace-unaware. This means that existing namespaces will be ignored</li>
+     * <li><strong>CSS selectors</strong> can be used to select XML elements,
+     * see {@link JOOX#selector(String)}</li>
      * </ul>
      * The following features are not supported:
      * <ul>
-     * <li><strong>CSS selectors</strong> cannot be used (yet) to select XML
-     * elements from this method. Use {@link #find(String)} instead</li>
      * <li><strong>XPath</strong> cannot be used. Use {@link #xpath(String)}
      * instead</li>
      * <li><strong>Namespaces</strong> cannot be used. Use
@@ -1058,11 +1308,11 @@ public interface Match extends Iterable<Element> {
      * <li><strong>tag names</strong> can be used to select XML elements by tag
      * names (see {@link Element#getElementsByTagName(String)}. Tag names are
      * namespace-unaware. This means that existing namespaces will be ignored</li>
+     * <li><strong>CSS selectors</strong> can be used to select XML elements,
+     * see {@link JOOX#selector(String)}</li>
      * </ul>
      * The following features are not supported:
      * <ul>
-     * <li><strong>CSS selectors</strong> cannot be used (yet) to select XML
-     * elements from this method. Use {@link #find(String)} instead</li>
      * <li><strong>XPath</strong> cannot be used. Use {@link #xpath(String)}
      * instead</li>
      * <li><strong>Namespaces</strong> cannot be used. Use
@@ -1144,11 +1394,11 @@ public interface Match extends Iterable<Element> {
      * <li><strong>tag names</strong> can be used to select XML elements by tag
      * names (see {@link Element#getElementsByTagName(String)}. Tag names are
      * namespace-unaware. This means that existing namespaces will be ignored</li>
+     * <li><strong>CSS selectors</strong> can be used to select XML elements,
+     * see {@link JOOX#selector(String)}</li>
      * </ul>
      * The following features are not supported:
      * <ul>
-     * <li><strong>CSS selectors</strong> cannot be used (yet) to select XML
-     * elements from this method. Use {@link #find(String)} instead</li>
      * <li><strong>XPath</strong> cannot be used. Use {@link #xpath(String)}
      * instead</li>
      * <li><strong>Namespaces</strong> cannot be used. Use
@@ -1191,11 +1441,11 @@ public interface Match extends Iterable<Element> {
      * <li><strong>tag names</strong> can be used to select XML elements by tag
      * names (see {@link Element#getElementsByTagName(String)}. Tag names are
      * namespace-unaware. This means that existing namespaces will be ignored</li>
+     * <li><strong>CSS selectors</strong> can be used to select XML elements,
+     * see {@link JOOX#selector(String)}</li>
      * </ul>
      * The following features are not supported:
      * <ul>
-     * <li><strong>CSS selectors</strong> cannot be used (yet) to select XML
-     * elements from this method. Use {@link #find(String)} instead</li>
      * <li><strong>XPath</strong> cannot be used. Use {@link #xpath(String)}
      * instead</li>
      * <li><strong>Namespaces</strong> cannot be used. Use
@@ -1234,11 +1484,11 @@ public interface Match extends Iterable<Element> {
      * <li><strong>tag names</strong> can be used to select XML elements by tag
      * names (see {@link Element#getElementsByTagName(String)}. Tag names are
      * namespace-unaware. This means that existing namespaces will be ignored</li>
+     * <li><strong>CSS selectors</strong> can be used to select XML elements,
+     * see {@link JOOX#selector(String)}</li>
      * </ul>
      * The following features are not supported:
      * <ul>
-     * <li><strong>CSS selectors</strong> cannot be used (yet) to select XML
-     * elements from this method. Use {@link #find(String)} instead</li>
      * <li><strong>XPath</strong> cannot be used. Use {@link #xpath(String)}
      * instead</li>
      * <li><strong>Namespaces</strong> cannot be used. Use
@@ -1277,11 +1527,11 @@ public interface Match extends Iterable<Element> {
      * <li><strong>tag names</strong> can be used to select XML elements by tag
      * names (see {@link Element#getElementsByTagName(String)}. Tag names are
      * namespace-unaware. This means that existing namespaces will be ignored</li>
+     * <li><strong>CSS selectors</strong> can be used to select XML elements,
+     * see {@link JOOX#selector(String)}</li>
      * </ul>
      * The following features are not supported:
      * <ul>
-     * <li><strong>CSS selectors</strong> cannot be used (yet) to select XML
-     * elements from this method. Use {@link #find(String)} instead</li>
      * <li><strong>XPath</strong> cannot be used. Use {@link #xpath(String)}
      * instead</li>
      * <li><strong>Namespaces</strong> cannot be used. Use
@@ -1365,11 +1615,11 @@ public interface Match extends Iterable<Element> {
      * <li><strong>tag names</strong> can be used to select XML elements by tag
      * names (see {@link Element#getElementsByTagName(String)}. Tag names are
      * namespace-unaware. This means that existing namespaces will be ignored</li>
+     * <li><strong>CSS selectors</strong> can be used to select XML elements,
+     * see {@link JOOX#selector(String)}</li>
      * </ul>
      * The following features are not supported:
      * <ul>
-     * <li><strong>CSS selectors</strong> cannot be used (yet) to select XML
-     * elements from this method. Use {@link #find(String)} instead</li>
      * <li><strong>XPath</strong> cannot be used. Use {@link #xpath(String)}
      * instead</li>
      * <li><strong>Namespaces</strong> cannot be used. Use
@@ -1692,11 +1942,11 @@ public interface Match extends Iterable<Element> {
      * <li><strong>tag names</strong> can be used to select XML elements by tag
      * names (see {@link Element#getElementsByTagName(String)}. Tag names are
      * namespace-unaware. This means that existing namespaces will be ignored</li>
+     * <li><strong>CSS selectors</strong> can be used to select XML elements,
+     * see {@link JOOX#selector(String)}</li>
      * </ul>
      * The following features are not supported:
      * <ul>
-     * <li><strong>CSS selectors</strong> cannot be used (yet) to select XML
-     * elements from this method. Use {@link #find(String)} instead</li>
      * <li><strong>XPath</strong> cannot be used. Use {@link #xpath(String)}
      * instead</li>
      * <li><strong>Namespaces</strong> cannot be used. Use
@@ -1749,6 +1999,20 @@ public interface Match extends Iterable<Element> {
      */
     Match unwrap();
 
+    /**
+     * Apply a set of edits to all elements in the set of matched elements at
+     * once.
+     * <p>
+     * All {@link Content} callbacks are evaluated before any element is
+     * modified, and the edits are then applied in a single pass over the set
+     * of matched elements. Content that is added to several elements is
+     * prepared only once. This is faster than calling several manipulation
+     * methods one after the other on large sets of matched elements.
+     *
+     * @see Batch
+     */
+    Match edit(Consumer<? super Batch> edits);
+
     // ---------------------------------------------------------------------
     // Manipulation of attributes
     // ---------------------------------------------------------------------
@@ -1854,6 +2118,18 @@ public interface Match extends Iterable<Element> {
      */
     String content(int index);
 
+    /**
+     * Write the XML content of the first element in the set of matched
+     * elements into a writer, without materialising it as a
+     * <code>String</code>.
+     * <p>
+     * Nothing is written if there are no matched elements. The writer is not
+     * closed.
+     *
+     * @see #content()
+     */
+    Match content(Writer writer) throws IOException;
+
     /**
      * Add some XML content to all elements in the set of matched elements
      * (possibly replacing existing content). If the supplied content is invalid
@@ -2026,6 +2302,31 @@ public interface Match extends Iterable<Element> {
     // Convenience
     // ---------------------------------------------------------------------
 
+    /**
+     * Index the document of the set of matched elements, to speed up repeated
+     * lookups in large documents.
+     * <p>
+     * Once a document is indexed, {@link #find(Filter)} and
+     * {@link #has(Filter)} look up elements in the index, rather than
+     * scanning all descendants of the matched elements, when used with these
+     * filters:
+     * <ul>
+     * <li>{@link JOOX#tag(String)}, and thus {@link #find(String)} with tag
+     * names</li>
+     * <li>{@link JOOX#ids(String...)}</li>
+     * <li>{@link JOOX#attr(String, String)} and
+     * {@link JOOX#attr(String, String...)}, with non-null values</li>
+     * </ul>
+     * The index is built lazily on the first lookup, and rebuilt lazily after
+     * any modification made through jOOX. Modifications made directly through
+     * the DOM API are not detected. Call this method again after such
+     * modifications, to rebuild the index.
+     * <p>
+     * The index is attached to the document as user data, and is garbage
+     * collected along with it.
+     */
+    Match index();
+
     /**
      * Get a copy of the {@link Match} wrapper. This is not a deep-copy of
      * wrapped {@link Element} objects. Both this and the copy will reference
@@ -2139,7 +2440,16 @@ public interface Match extends Iterable<Element> {
     Match write(Writer writer) throws IOException;
 
     /**
-     * Write the set of matched elements into a stream
+     * Write the set of matched elements into a writer, using an
+     * {@link XMLFormat}
+     * <p>
+     * If the set contains more or less than <code>1</code> element, this will
+     * result in writing non-well-formed XML
+     */
+    Match write(Writer writer, XMLFormat format) throws IOException;
+
+    /**
+     * Write the set of matched elements into a stream, using UTF-8
      * <p>
      * If the set contains more or less than <code>1</code> element, this will
      * result in writing non-well-formed XML
@@ -2147,13 +2457,31 @@ public interface Match extends Iterable<Element> {
     Match write(OutputStream stream) throws IOException;
 
     /**
-     * Write the set of matched elements into a file
+     * Write the set of matched elements into a stream, using an
+     * {@link XMLFormat}
+     * <p>
+     * If the set contains more or less than <code>1</code> element, this will
+     * result in writing non-well-formed XML
+     */
+    Match write(OutputStream stream, XMLFormat format) throws IOException;
+
+    /**
+     * Write the set of matched elements into a file, using UTF-8
      * <p>
      * If the set contains more or less than <code>1</code> element, this will
      * result in writing non-well-formed XML
      */
     Match write(File file) throws IOException;
 
+    /**
+     * Write the set of matched elements into a file, using an
+     * {@link XMLFormat}
+     * <p>
+     * If the set contains more or less than <code>1</code> element, this will
+     * result in writing non-well-formed XML
+     */
+    Match write(File file, XMLFormat format) throws IOException;
+
     /**
      * Unmarshal the current set of matched elements into a JAXB-annotated type.
      */
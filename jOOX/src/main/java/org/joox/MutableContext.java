@@ -0,0 +1,85 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joox;
+
+import static org.joox.JOOX.$;
+
+import org.w3c.dom.Element;
+
+/**
+ * A {@link Context} that is reused for all elements of a traversal.
+ * <p>
+ * This is only ever passed to {@link FastFilter}s, which must not keep
+ * references to their context after returning. All other callbacks receive
+ * immutable {@link DefaultContext} instances.
+ */
+final class MutableContext implements Context {
+
+    private Element match;
+    private Element element;
+    private int     matchIndex;
+    private int     elementIndex;
+    private int     matchSize;
+    private int     elementSize;
+
+    final MutableContext set(Element newMatch, int newMatchIndex, int newMatchSize, Element newElement, int newElementIndex, int newElementSize) {
+        this.match = newMatch;
+        this.matchIndex = newMatchIndex;
+        this.matchSize = newMatchSize;
+        this.element = newElement;
+        this.elementIndex = newElementIndex;
+        this.elementSize = newElementSize;
+
+        return this;
+    }
+
+    @Override
+    public final Element element() {
+        return element;
+    }
+
+    @Override
+    public final int elementIndex() {
+        return elementIndex;
+    }
+
+    @Override
+    public final int elementSize() {
+        return elementSize;
+    }
+
+    @Override
+    public final Element match() {
+        return match;
+    }
+
+    @Override
+    public final int matchIndex() {
+        return matchIndex;
+    }
+
+    @Override
+    public final int matchSize() {
+        return matchSize;
+    }
+
+    // -------------------------------------------------------------------------
+    // XXX: Object
+    // -------------------------------------------------------------------------
+
+    @Override
+    public String toString() {
+        return $(element).toString();
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joox;
+
+import static org.joox.Util.context;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * Parallel evaluation of callbacks over a set of matched elements.
+ * <p>
+ * DOM implementations are generally not thread-safe, not even for reads.
+ * Before a callback is submitted to the {@link Executor}, its element is
+ * therefore deep-copied into a new document on the calling thread. The
+ * callback only ever sees this thread-confined, detached copy, never the
+ * original element, so it cannot navigate to the element's ancestors or
+ * siblings. Modifications made by callbacks are thus not reflected in the
+ * original document.
+ * <p>
+ * Elements of frozen documents are immutable and can be read concurrently.
+ * They are passed to callbacks as they are, without being copied.
+ * <p>
+ * The number of copies that are in flight at any time is bounded, so that the
+ * copies do not need much more memory than the callbacks' working sets.
+ */
+final class Parallel {
+
+    /**
+     * The maximum number of callbacks that are submitted but not yet completed
+     */
+    private static final int WINDOW = 4 * Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Map elements in parallel, keeping the order of the elements.
+     * <p>
+     * Once a callback fails, no further callbacks are submitted, and callbacks
+     * that have been submitted but have not started yet are skipped. The
+     * first failure is rethrown after all submitted callbacks have completed.
+     */
+    static final <E> List<E> map(List<Element> elements, final Mapper<E> mapper, Executor executor) {
+        final int size = elements.size();
+        final List<CompletableFuture<E>> futures = new ArrayList<>(size);
+        final Semaphore window = new Semaphore(WINDOW);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        try {
+            for (int matchIndex = 0; matchIndex < size && failure.get() == null; matchIndex++) {
+                window.acquire();
+
+                // Don't submit any further callbacks once a callback failed
+                if (failure.get() != null) {
+                    window.release();
+                    break;
+                }
+
+                final Context context = context(copy(elements.get(matchIndex)), matchIndex, size);
+                CompletableFuture<E> future = CompletableFuture.supplyAsync(() -> {
+                    if (failure.get() != null)
+                        throw new CancellationException();
+
+                    try {
+                        return mapper.map(context);
+                    }
+                    catch (RuntimeException | Error e) {
+                        fail(failure, e);
+                        throw e;
+                    }
+                }, executor);
+
+                future.whenComplete((r, t) -> window.release());
+
+                futures.add(future);
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            for (CompletableFuture<E> future : futures)
+                future.cancel(false);
+
+            throw new RuntimeException(e);
+        }
+
+        List<E> result = new ArrayList<>(size);
+
+        for (CompletableFuture<E> future : futures) {
+            try {
+                result.add(future.join());
+            }
+            catch (CompletionException | CancellationException e) {
+                fail(failure, e);
+            }
+        }
+
+        Throwable cause = failure.get();
+
+        if (cause instanceof RuntimeException)
+            throw (RuntimeException) cause;
+        else if (cause instanceof Error)
+            throw (Error) cause;
+        else if (cause != null)
+            throw new CompletionException(cause);
+
+        return result;
+    }
+
+    /**
+     * Record the first failure of a callback, ignoring skipped callbacks.
+     */
+    private static final void fail(AtomicReference<Throwable> failure, Throwable t) {
+        Throwable cause = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+
+        if (!(cause instanceof CancellationException))
+            failure.compareAndSet(null, cause);
+    }
+
+    /**
+     * Execute a callback for each element in parallel.
+     */
+    static final void each(List<Element> elements, final Each each, Executor executor) {
+        map(elements, context -> {
+            each.each(context);
+            return null;
+        }, executor);
+    }
+
+    /**
+     * Filter elements in parallel, returning the original elements in their
+     * original order.
+     */
+    static final List<Element> filter(List<Element> elements, final Filter filter, Executor executor) {
+        List<Boolean> keep = map(elements, filter::filter, executor);
+        List<Element> result = new ArrayList<>();
+
+        for (int i = 0; i < keep.size(); i++)
+            if (keep.get(i))
+                result.add(elements.get(i));
+
+        return result;
+    }
+
+    /**
+     * Copy an element into a new document, unless it is frozen.
+     */
+    private static final Element copy(Element element) {
+        if (Frozen.isFrozen(element))
+            return element;
+
+        Document document = BuilderPool.newDocument();
+        Element copy = (Element) document.importNode(element, true);
+        document.appendChild(copy);
+        return copy;
+    }
+
+    private Parallel() {}
+}
@@ -0,0 +1,53 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joox;
+
+/**
+ * A prepared CSS selector or XPath expression.
+ * <p>
+ * Queries are analysed and compiled once, when they are created through
+ * {@link JOOX#query(String)} or {@link JOOX#xpathQuery(String)}, and can then
+ * be evaluated any number of times through {@link Match#find(Query)} and
+ * {@link Match#filter(Query)}, without repeating that work. Like JDBC prepared
+ * statements, XPath queries can contain numbered variables <code>$1</code>,
+ * <code>$2</code>, etc, whose values are supplied through
+ * {@link #bind(Object...)}.
+ * <p>
+ * Queries are immutable and thread-safe. They are typically kept in
+ * <code>static final</code> fields.
+ * <p>
+ * As a {@link Filter}, a query keeps those elements that are matched by its
+ * CSS selector, or for which its XPath expression evaluates to
+ * <code>true</code>. XPath queries that are passed to the methods of a
+ * {@link Match} or {@link LazyMatch} are evaluated with the namespaces
+ * configured through {@link Match#namespaces(java.util.Map)}. When
+ * {@link #filter(Context)} is called directly, or when the query is wrapped
+ * in another filter, e.g. through {@link JOOX#and(Filter...)}, it is evaluated
+ * without any namespaces.
+ */
+public interface Query extends Filter {
+
+    /**
+     * Create a new query with the same expression, and with variables bound
+     * to the given values.
+     * <p>
+     * Binding variables does not recompile the expression. The values are
+     * bound by index, i.e. the first value is bound to <code>$1</code>, the
+     * second one to <code>$2</code>, etc.
+     *
+     * @throws UnsupportedOperationException If this is a CSS selector query,
+     *             as CSS selectors cannot contain variables
+     */
+    Query bind(Object... variables);
+}
@@ -0,0 +1,162 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joox;
+
+import static java.util.Collections.emptyMap;
+import static org.joox.Impl.SIMPLE_SELECTOR;
+import static org.joox.selector.CSS2XPath.css2xpath;
+
+import java.util.Map;
+
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpressionException;
+
+import org.joox.selector.SelectorMatcher;
+import org.w3c.dom.Element;
+
+/**
+ * The default implementation of a {@link Query}.
+ * <p>
+ * CSS selector queries decide once how they are evaluated: <code>*</code>
+ * through the standard DOM API, simple tag names through
+ * {@link JOOX#tag(String, boolean)}, most other selectors through a
+ * {@link SelectorMatcher}, and all remaining selectors through their XPath
+ * translation, which is also used to test them as a {@link Filter}. XPath queries hold their own pool of compiled expressions, which
+ * they share with all queries derived from them through
+ * {@link #bind(Object...)}.
+ */
+final class QueryImpl implements Query, FastFilter {
+
+    private static final Object[] NO_VARIABLES = {};
+
+    final String                  expression;
+
+    // CSS selectors
+    final FastFilter              tag;
+    final SelectorMatcher         matcher;
+    final String                  xpathFromDocument;
+    final String                  xpathFromElement;
+
+    // XPath expressions
+    final XPathCache.Pool         pool;
+    final Object[]                variables;
+
+    private QueryImpl(String expression, FastFilter tag, SelectorMatcher matcher, XPathCache.Pool pool, Object[] variables) {
+        this.expression = expression;
+        this.tag = tag;
+        this.matcher = matcher;
+        this.pool = pool;
+        this.variables = variables;
+
+        if (pool == null && tag == null && matcher == null) {
+            this.xpathFromDocument = css2xpath(expression, true);
+            this.xpathFromElement = css2xpath(expression, false);
+        }
+        else {
+            this.xpathFromDocument = null;
+            this.xpathFromElement = null;
+        }
+    }
+
+    /**
+     * Prepare a CSS selector query.
+     */
+    static final QueryImpl css(String selector) {
+        if ("*".equals(selector))
+            return new QueryImpl(selector, JOOX.all(), null, null, NO_VARIABLES);
+        else if (SIMPLE_SELECTOR.matcher(selector).matches())
+            return new QueryImpl(selector, JOOX.tag(selector, true), null, null, NO_VARIABLES);
+
+        SelectorMatcher matcher = SelectorMatcher.compile(selector);
+        return new QueryImpl(selector, null, matcher.isSupported() ? matcher : null, null, NO_VARIABLES);
+    }
+
+    /**
+     * Prepare an XPath query.
+     */
+    static final QueryImpl xpath(String expression) {
+        try {
+            return new QueryImpl(expression, null, null, new XPathCache.Pool(expression), NO_VARIABLES);
+        }
+        catch (XPathExpressionException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Whether this is an XPath query.
+     */
+    final boolean isXPath() {
+        return pool != null;
+    }
+
+    @Override
+    public final Query bind(Object... v) {
+        if (!isXPath())
+            throw new UnsupportedOperationException("CSS selectors cannot contain variables: " + expression);
+
+        return new QueryImpl(expression, null, null, pool, v == null ? NO_VARIABLES : v.clone());
+    }
+
+    @Override
+    public final boolean filter(Context context) {
+        if (tag != null)
+            return tag.filter(context);
+        else if (matcher != null)
+            return matcher.matches(context.element(), null);
+
+        // Other selectors are tested just like JOOX.selector() tests them
+        else if (!isXPath())
+            return Util.isSelected(context.element(), xpathFromDocument);
+        else
+            return test(context.element(), emptyMap());
+    }
+
+    /**
+     * Bind an XPath query that is used as a plain {@link Filter} to the
+     * namespaces of a match. Other filters are returned as they are.
+     */
+    static final Filter withNamespaces(Filter filter, Map<String, String> namespaces) {
+        if (filter instanceof QueryImpl && ((QueryImpl) filter).isXPath() && !namespaces.isEmpty()) {
+            QueryImpl q = (QueryImpl) filter;
+            return (FastFilter) context -> q.test(context.element(), namespaces);
+        }
+
+        return filter;
+    }
+
+    /**
+     * Evaluate this XPath query as a boolean against an element.
+     */
+    final boolean test(Element element, Map<String, String> namespaces) {
+        try {
+            XPathCache.CompiledXPath exp = pool.borrow(namespaces, variables);
+
+            try {
+                return (Boolean) exp.evaluate(element, XPathConstants.BOOLEAN);
+            }
+            finally {
+                pool.release(exp);
+            }
+        }
+        catch (XPathExpressionException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+}
@@ -0,0 +1,314 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joox;
+
+import static javax.xml.XMLConstants.XMLNS_ATTRIBUTE;
+import static javax.xml.XMLConstants.XMLNS_ATTRIBUTE_NS_URI;
+import static org.joox.JOOX.$;
+import static org.joox.Impl.SIMPLE_SELECTOR;
+
+import java.io.Closeable;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * A {@link Spliterator} that reads a document with StAX, and that produces a
+ * detached DOM document for every element matching a simple selector path.
+ * <p>
+ * Only the current record is ever held in memory. Elements outside of matched
+ * records are skipped, and elements nested in a matched record are part of
+ * that record, rather than separate records.
+ *
+ * @see JOOX#stream(InputStream, String)
+ */
+final class RecordSpliterator extends Spliterators.AbstractSpliterator<Match> implements Closeable {
+
+    private final XMLStreamReader reader;
+    private final String[]        names;
+    private final boolean[]       children;
+
+    /**
+     * The local names of all currently open elements
+     */
+    private final List<String>    path;
+
+    /**
+     * The namespace declarations of all currently open elements
+     */
+    private final List<String[]>  declarations;
+
+    RecordSpliterator(InputStream stream, String selector) {
+        super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+
+        List<String> n = new ArrayList<>();
+        List<Boolean> c = new ArrayList<>();
+        parse(selector, n, c);
+
+        this.names = n.toArray(new String[0]);
+        this.children = new boolean[c.size()];
+        for (int i = 0; i < children.length; i++)
+            children[i] = c.get(i);
+
+        this.path = new ArrayList<>();
+        this.declarations = new ArrayList<>();
+
+        try {
+            this.reader = factory().createXMLStreamReader(stream);
+        }
+        catch (XMLStreamException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public final boolean tryAdvance(Consumer<? super Match> action) {
+        try {
+            while (reader.hasNext()) {
+                switch (reader.next()) {
+                    case XMLStreamConstants.START_ELEMENT: {
+                        path.add(reader.getLocalName());
+                        declarations.add(declarations());
+
+                        if (matches(names.length - 1, path.size() - 1)) {
+                            Document document = BuilderPool.newDocument();
+                            document.appendChild(record(document));
+                            action.accept($(document));
+                            return true;
+                        }
+
+                        break;
+                    }
+
+                    case XMLStreamConstants.END_ELEMENT: {
+                        path.remove(path.size() - 1);
+                        declarations.remove(declarations.size() - 1);
+                        break;
+                    }
+                }
+            }
+
+            return false;
+        }
+        catch (XMLStreamException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public final void close() {
+        try {
+            reader.close();
+        }
+        catch (XMLStreamException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // XXX: Matching
+    // -------------------------------------------------------------------------
+
+    /**
+     * Parse a selector path such as <code>library > books book</code> into
+     * tag names, and flags indicating whether a name must be a child of the
+     * preceding name.
+     */
+    private static final void parse(String selector, List<String> names, List<Boolean> children) {
+        boolean child = false;
+
+        for (String token : selector.trim().replace(">", " > ").split("\\s+")) {
+            if (">".equals(token)) {
+                if (child || names.isEmpty())
+                    throw new IllegalArgumentException("Unsupported selector path: " + selector);
+
+                child = true;
+            }
+            else if ("*".equals(token) || SIMPLE_SELECTOR.matcher(token).matches()) {
+                names.add(token);
+                children.add(child);
+                child = false;
+            }
+            else {
+                throw new IllegalArgumentException("Unsupported selector path: " + selector + ". Only tag names, *, and the descendant and child combinators are supported");
+            }
+        }
+
+        if (child || names.isEmpty())
+            throw new IllegalArgumentException("Unsupported selector path: " + selector);
+    }
+
+    /**
+     * Match the selector path from right to left against the currently open
+     * elements.
+     */
+    private final boolean matches(int index, int depth) {
+        if (!"*".equals(names[index]) && !names[index].equals(path.get(depth)))
+            return false;
+
+        if (index == 0)
+            return true;
+
+        if (children[index])
+            return depth > 0 && matches(index - 1, depth - 1);
+
+        for (int d = depth - 1; d >= 0; d--)
+            if (matches(index - 1, d))
+                return true;
+
+        return false;
+    }
+
+    // -------------------------------------------------------------------------
+    // XXX: DOM construction
+    // -------------------------------------------------------------------------
+
+    /**
+     * Build the DOM subtree of the current start element, consuming the
+     * reader up to the matching end element.
+     */
+    private final Element record(Document document) throws XMLStreamException {
+        Element root = element(document);
+
+        // The record is detached from its ancestors, so their namespace
+        // declarations need to be repeated on the record itself
+        Map<String, String> inScope = new LinkedHashMap<>();
+        for (String[] d : declarations)
+            for (int i = 0; i < d.length; i += 2)
+                inScope.put(d[i], d[i + 1]);
+
+        for (Map.Entry<String, String> entry : inScope.entrySet())
+            declare(root, entry.getKey(), entry.getValue());
+
+        Node current = root;
+
+        while (current != null) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT: {
+                    Element element = element(document);
+                    String[] d = declarations();
+
+                    for (int i = 0; i < d.length; i += 2)
+                        declare(element, d[i], d[i + 1]);
+
+                    current.appendChild(element);
+                    current = element;
+                    break;
+                }
+
+                case XMLStreamConstants.END_ELEMENT:
+                    current = current == root ? null : current.getParentNode();
+                    break;
+
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.SPACE:
+                    current.appendChild(document.createTextNode(reader.getText()));
+                    break;
+
+                case XMLStreamConstants.CDATA:
+                    current.appendChild(document.createCDATASection(reader.getText()));
+                    break;
+
+                case XMLStreamConstants.COMMENT:
+                    current.appendChild(document.createComment(reader.getText()));
+                    break;
+
+                case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                    current.appendChild(document.createProcessingInstruction(reader.getPITarget(), reader.getPIData()));
+                    break;
+
+                case XMLStreamConstants.ENTITY_REFERENCE:
+                    current.appendChild(document.createEntityReference(reader.getLocalName()));
+                    break;
+            }
+        }
+
+        // The record's end element has been consumed
+        path.remove(path.size() - 1);
+        declarations.remove(declarations.size() - 1);
+
+        return root;
+    }
+
+    /**
+     * Create an element and its attributes from the current start element.
+     */
+    private final Element element(Document document) {
+        Element element = document.createElementNS(emptyToNull(reader.getNamespaceURI()), qualified(reader.getPrefix(), reader.getLocalName()));
+
+        for (int i = 0; i < reader.getAttributeCount(); i++)
+            element.setAttributeNS(
+                emptyToNull(reader.getAttributeNamespace(i)),
+                qualified(reader.getAttributePrefix(i), reader.getAttributeLocalName(i)),
+                reader.getAttributeValue(i));
+
+        return element;
+    }
+
+    /**
+     * The namespace declarations of the current start element, as pairs of
+     * prefixes and URIs.
+     */
+    private final String[] declarations() {
+        int count = reader.getNamespaceCount();
+        String[] result = new String[count * 2];
+
+        for (int i = 0; i < count; i++) {
+            String prefix = reader.getNamespacePrefix(i);
+            String uri = reader.getNamespaceURI(i);
+
+            result[2 * i] = prefix == null ? "" : prefix;
+            result[2 * i + 1] = uri == null ? "" : uri;
+        }
+
+        return result;
+    }
+
+    private static final void declare(Element element, String prefix, String uri) {
+        element.setAttributeNS(XMLNS_ATTRIBUTE_NS_URI, "".equals(prefix) ? XMLNS_ATTRIBUTE : XMLNS_ATTRIBUTE + ":" + prefix, uri);
+    }
+
+    private static final String qualified(String prefix, String localName) {
+        return prefix == null || prefix.isEmpty() ? localName : prefix + ":" + localName;
+    }
+
+    private static final String emptyToNull(String string) {
+        return string == null || string.isEmpty() ? null : string;
+    }
+
+    private static final XMLInputFactory factory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+
+        // [#136] Prevent OWASP attack vectors
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+
+        return factory;
+    }
+}
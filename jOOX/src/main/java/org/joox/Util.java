@@ -16,30 +16,35 @@ package org.joox;
 import static java.util.Arrays.asList;
 import static org.joox.JOOX.$;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.StringReader;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import javax.xml.datatype.DatatypeFactory;
 import javax.xml.datatype.XMLGregorianCalendar;
 import javax.xml.namespace.NamespaceContext;
-import javax.xml.parsers.DocumentBuilder;
 import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Result;
-import javax.xml.transform.Source;
 import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpressionException;
 import javax.xml.xpath.XPathFunctionResolver;
 
 import org.w3c.dom.Document;
@@ -48,9 +53,6 @@ import org.w3c.dom.Element;
 import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
-import org.xml.sax.InputSource;
-import org.xml.sax.SAXException;
-import org.xml.sax.helpers.DefaultHandler;
 
 
 /**
@@ -75,6 +77,19 @@ class Util {
      */
     private static XPathFunctionResolver xalanFunctionResolver;
 
+    /**
+     * A bounded pool of idle {@link Transformer} instances for the default
+     * {@link XMLFormat}
+     */
+    private static final BlockingQueue<Transformer> TRANSFORMERS = new ArrayBlockingQueue<>(
+        2 * Runtime.getRuntime().availableProcessors());
+
+    /**
+     * The shared {@link TransformerFactory}. Access must be synchronized, as
+     * factories are not thread-safe.
+     */
+    private static final TransformerFactory TRANSFORMER_FACTORY = TransformerFactory.newInstance();
+
     /**
      * A pattern for the dd.mm.yyyy format
      */
@@ -115,47 +130,8 @@ class Util {
 
         // [#150] Text might hold XML content, which can be leniently identified by the presence
         //        of either < or & characters (other entities, like >, ", ' are not stricly XML content)
-        if (text != null && (text.contains("<") || text.contains("&"))) {
-            DocumentBuilder builder = JOOX.builder();
-
-            // [#162] Prevent log output
-            builder.setErrorHandler(new DefaultHandler());
-
-            try {
-
-                // There is a processing instruction. We can safely assume
-                // valid XML and parse it as such
-                if (text.startsWith("<?xml")) {
-                    Document parsed = builder.parse(new InputSource(new StringReader(text)));
-                    DocumentFragment fragment = parsed.createDocumentFragment();
-                    fragment.appendChild(parsed.getDocumentElement());
-
-                    return (DocumentFragment) doc.importNode(fragment, true);
-                }
-
-                // Any XML document fragment. To be on the safe side, fragments
-                // are wrapped in a dummy root node
-                else {
-                    String wrapped = "<dummy>" + text + "</dummy>";
-                    Document parsed = builder.parse(new InputSource(new StringReader(wrapped)));
-                    DocumentFragment fragment = parsed.createDocumentFragment();
-                    NodeList children = parsed.getDocumentElement().getChildNodes();
-
-                    // appendChild removes children also from NodeList!
-                    while (children.getLength() > 0) {
-                        fragment.appendChild(children.item(0));
-                    }
-
-                    return (DocumentFragment) doc.importNode(fragment, true);
-                }
-            }
-
-            // This does not occur
-            catch (IOException ignore) {}
-
-            // The XML content is invalid
-            catch (SAXException ignore) {}
-        }
+        if (text != null && (text.contains("<") || text.contains("&")))
+            return Fragment.create(doc, text);
 
         // Plain text or invalid XML
         return null;
@@ -172,23 +148,54 @@ class Util {
      * Get an attribute value if it exists, or <code>null</code>
      */
     static final String attr(Element element, String name, boolean ignoreNamespace) {
+
+        // Some DOM implementations lazily create the attribute map
+        if (!element.hasAttributes())
+            return null;
+
         NamedNodeMap attributes = element.getAttributes();
+        int length = attributes.getLength();
 
-        for (int i = 0; i < attributes.getLength(); i++) {
-            String localName = attributes.item(i).getNodeName();
+        for (int i = 0; i < length; i++) {
+            Node attribute = attributes.item(i);
+            String nodeName = attribute.getNodeName();
 
             // [#103] If namespaces are ignored, consider only local
             // part of possibly namespace-unaware Element
-            if (ignoreNamespace)
-                localName = stripNamespace(localName);
-
-            if (name.equals(localName))
-                return attributes.item(i).getNodeValue();
+            if (ignoreNamespace ? localNameEquals(nodeName, name) : name.equals(nodeName))
+                return attribute.getNodeValue();
         }
 
         return null;
     }
 
+    /**
+     * Whether a possibly prefixed name has a given local name. This is the
+     * same as <code>localName.equals(stripNamespace(name))</code>, without
+     * creating a substring.
+     */
+    static final boolean localNameEquals(String name, String localName) {
+        int offset = name.indexOf(':') + 1;
+        int length = localName.length();
+
+        return name.length() - offset == length && name.regionMatches(offset, localName, 0, length);
+    }
+
+    /**
+     * Whether a possibly prefixed name has a given namespace prefix. This is
+     * the same as comparing the result of {@link #getNamespace(String)},
+     * without creating a substring. <code>null</code> and the empty string
+     * both indicate the absence of a prefix.
+     */
+    static final boolean prefixEquals(String name, String prefix) {
+        int colon = name.indexOf(':');
+
+        if (colon <= 0)
+            return prefix == null || prefix.isEmpty();
+        else
+            return prefix != null && prefix.length() == colon && name.startsWith(prefix);
+    }
+
     /**
      * Make a list of elements available in a document.
      * <ul>
@@ -239,19 +246,116 @@ class Util {
      */
     static final String toString(Element element) {
         try {
-            ByteArrayOutputStream out = new ByteArrayOutputStream();
-            Transformer transformer = TransformerFactory.newInstance().newTransformer();
-            transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
-            Source source = new DOMSource(element);
-            Result target = new StreamResult(out);
-            transformer.transform(source, target);
-            return out.toString("UTF-8");
+            StringWriter out = new StringWriter();
+            Transformer transformer = transformer(XMLFormat.DEFAULT);
+            write(element, out, transformer);
+            release(XMLFormat.DEFAULT, transformer);
+            return out.toString();
         }
         catch (Exception e) {
             return "[ ERROR IN toString() : " + e.getMessage() + " ]";
         }
     }
 
+    /**
+     * Get a {@link Transformer} that serialises elements according to an
+     * {@link XMLFormat}.
+     * <p>
+     * Creating transformers is expensive. Transformers for the default format
+     * are therefore borrowed from a bounded pool, from where they can be
+     * borrowed again by any thread once they are
+     * {@link #release(XMLFormat, Transformer) released}. Transformers for
+     * other formats should be obtained once per write, and reused for all
+     * elements.
+     * <p>
+     * The transformer never writes an XML declaration. If required, it must
+     * be written with {@link #declaration(XMLFormat)}.
+     */
+    static final Transformer transformer(XMLFormat format) {
+        Transformer transformer = pooled(format) ? TRANSFORMERS.poll() : null;
+        return transformer != null ? transformer : newTransformer(format);
+    }
+
+    /**
+     * Return a transformer obtained from {@link #transformer(XMLFormat)} after
+     * it has been used successfully.
+     * <p>
+     * A transformer that failed may be left in an undefined state. It must not
+     * be released, and is discarded instead.
+     */
+    static final void release(XMLFormat format, Transformer transformer) {
+
+        // If the pool is full, the transformer is discarded
+        if (pooled(format))
+            TRANSFORMERS.offer(transformer);
+    }
+
+    private static final boolean pooled(XMLFormat format) {
+        return format.indent() == 0 && XMLFormat.DEFAULT.encoding().equals(format.encoding());
+    }
+
+    /**
+     * Serialise an {@link Element} directly into a {@link Writer}.
+     */
+    static final void write(Element element, Writer writer, Transformer transformer) throws TransformerException {
+        write(element, new StreamResult(writer), transformer);
+    }
+
+    /**
+     * Serialise an {@link Element} directly into an {@link OutputStream},
+     * using the transformer's encoding.
+     */
+    static final void write(Element element, OutputStream stream, Transformer transformer) throws TransformerException {
+        write(element, new StreamResult(stream), transformer);
+    }
+
+    /**
+     * Serialise an {@link Element}'s child nodes directly into a
+     * {@link Writer}, without the element's start and end tags.
+     * <p>
+     * The content is buffered, and flushed explicitly, as transformers need
+     * not flush their output.
+     */
+    static final void writeContent(Element element, Writer writer, Transformer transformer) throws TransformerException, IOException {
+        ContentWriter cw = new ContentWriter(writer, element.getTagName());
+        write(element, cw, transformer);
+        cw.flush();
+    }
+
+    private static final void write(Element element, StreamResult result, Transformer transformer) throws TransformerException {
+        transformer.transform(new DOMSource(element), result);
+    }
+
+    /**
+     * The XML declaration of an {@link XMLFormat}.
+     */
+    static final String declaration(XMLFormat format) {
+        return "<?xml version=\"1.0\" encoding=\"" + format.encoding().name() + "\"?>";
+    }
+
+    private static final Transformer newTransformer(XMLFormat format) {
+        try {
+            Transformer transformer;
+
+            synchronized (TRANSFORMER_FACTORY) {
+                transformer = TRANSFORMER_FACTORY.newTransformer();
+            }
+
+            transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+            transformer.setOutputProperty(OutputKeys.ENCODING, format.encoding().name());
+
+            if (format.indent() > 0) {
+                transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+                transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "" + format.indent());
+            }
+
+            return transformer;
+        }
+        catch (TransformerConfigurationException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     /**
      * Check whether there are any element nodes in a {@link NodeList}
      */
@@ -317,6 +421,27 @@ class Util {
             return $(element).parent().children(JOOX.tag(element.getTagName(), false)).get().indexOf(element);
     }
 
+    /**
+     * Check whether an element is selected by an absolute XPath expression,
+     * such as the translation of a CSS selector from the document.
+     */
+    static final boolean isSelected(Element element, String expression) {
+        try {
+            XPathCache.CompiledXPath exp = XPathCache.borrow(
+                "count(. | " + expression + ") = count(" + expression + ")", Collections.<String, String> emptyMap());
+
+            try {
+                return (Boolean) exp.evaluate(element, XPathConstants.BOOLEAN);
+            }
+            finally {
+                XPathCache.release(exp);
+            }
+        }
+        catch (XPathExpressionException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     /**
      * Create a context object
      */
@@ -331,6 +456,37 @@ class Util {
         return new DefaultContext(match, matchIndex, matchSize, element, elementIndex, elementSize);
     }
 
+    /**
+     * Create a context object for a filter, reusing a cursor for
+     * {@link FastFilter}s.
+     *
+     * @param cursor The cursor obtained from {@link #cursor(Filter)}
+     */
+    static final Context context(MutableContext cursor, Element match, int matchIndex, int matchSize, Element element, int elementIndex, int elementSize) {
+        if (cursor != null)
+            return cursor.set(match, matchIndex, matchSize, element, elementIndex, elementSize);
+        else
+            return new DefaultContext(match, matchIndex, matchSize, element, elementIndex, elementSize);
+    }
+
+    /**
+     * Create a context object for a filter, reusing a cursor for
+     * {@link FastFilter}s.
+     *
+     * @param cursor The cursor obtained from {@link #cursor(Filter)}
+     */
+    static final Context context(MutableContext cursor, Element match, int matchIndex, int matchSize) {
+        return context(cursor, match, matchIndex, matchSize, match, matchIndex, matchSize);
+    }
+
+    /**
+     * Get a reusable context for a {@link FastFilter}, or <code>null</code> if
+     * the filter needs a new context for every call.
+     */
+    static final MutableContext cursor(Filter filter) {
+        return filter instanceof FastFilter ? new MutableContext() : null;
+    }
+
     /**
      * Return <code>string</code> or <code>""</code> if <code>string</code> is
      * <code>null</code>
@@ -0,0 +1,123 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joox;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Output settings for writing matched elements.
+ * <p>
+ * Instances are immutable. Use the setter-style methods to derive new formats
+ * from {@link #DEFAULT}:
+ * <code><pre>
+ * $(document).write(writer, XMLFormat.DEFAULT.header(true).indent(2));
+ * </pre></code>
+ *
+ * @see Match#write(java.io.Writer, XMLFormat)
+ */
+public final class XMLFormat {
+
+    /**
+     * The default format, without XML declaration, indentation and separator,
+     * encoding streams with UTF-8.
+     */
+    public static final XMLFormat DEFAULT = new XMLFormat(false, 0, StandardCharsets.UTF_8, "");
+
+    private final boolean       header;
+    private final int           indent;
+    private final Charset       encoding;
+    private final String        separator;
+
+    private XMLFormat(boolean header, int indent, Charset encoding, String separator) {
+        this.header = header;
+        this.indent = indent;
+        this.encoding = encoding;
+        this.separator = separator;
+    }
+
+    /**
+     * Whether an XML declaration is written before the matched elements.
+     */
+    public final XMLFormat header(boolean newHeader) {
+        return new XMLFormat(newHeader, indent, encoding, separator);
+    }
+
+    /**
+     * Whether an XML declaration is written before the matched elements.
+     */
+    public final boolean header() {
+        return header;
+    }
+
+    /**
+     * The number of spaces used for indentation, or <code>0</code> if output
+     * should not be indented.
+     */
+    public final XMLFormat indent(int newIndent) {
+        if (newIndent < 0)
+            throw new IllegalArgumentException("Indentation must not be negative: " + newIndent);
+
+        return new XMLFormat(header, newIndent, encoding, separator);
+    }
+
+    /**
+     * The number of spaces used for indentation, or <code>0</code> if output
+     * should not be indented.
+     */
+    public final int indent() {
+        return indent;
+    }
+
+    /**
+     * The encoding used when writing to streams and files, and declared in
+     * the XML declaration.
+     */
+    public final XMLFormat encoding(Charset newEncoding) {
+        if (newEncoding == null)
+            throw new NullPointerException("Encoding must not be null");
+
+        return new XMLFormat(header, indent, newEncoding, separator);
+    }
+
+    /**
+     * The encoding used when writing to streams and files, and declared in
+     * the XML declaration.
+     */
+    public final Charset encoding() {
+        return encoding;
+    }
+
+    /**
+     * The text written between two matched elements.
+     */
+    public final XMLFormat separator(String newSeparator) {
+        if (newSeparator == null)
+            throw new NullPointerException("Separator must not be null");
+
+        return new XMLFormat(header, indent, encoding, newSeparator);
+    }
+
+    /**
+     * The text written between two matched elements.
+     */
+    public final String separator() {
+        return separator;
+    }
+
+    @Override
+    public String toString() {
+        return "XMLFormat [header=" + header + ", indent=" + indent + ", encoding=" + encoding + ", separator=" + separator + "]";
+    }
+}
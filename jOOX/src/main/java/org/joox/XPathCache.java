@@ -0,0 +1,403 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joox;
+
+import static java.util.Collections.emptyList;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.namespace.QName;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+import javax.xml.xpath.XPathVariableResolver;
+
+import org.w3c.dom.Node;
+
+/**
+ * A bounded LRU cache of compiled {@link XPathExpression}s.
+ * <p>
+ * Compiled expressions are not thread-safe. Each cache entry therefore holds a
+ * small pool of equivalent compiled expressions, which are borrowed for
+ * exclusive use and released again after evaluation. Expressions are keyed by
+ * their text as well as by the namespace configuration they were compiled
+ * with.
+ * <p>
+ * The maximum number of cached expressions can be configured with the
+ * <code>org.joox.xpathCacheSize</code> system property. A size of
+ * <code>0</code> disables caching.
+ *
+ * @see JOOX#xpathStatistics()
+ */
+final class XPathCache {
+
+    /**
+     * The maximum number of distinct expressions kept in the cache
+     */
+    private static final int                                 SIZE      = Math.max(0, Integer.getInteger(
+        "org.joox.xpathCacheSize", 512));
+
+    /**
+     * The maximum number of idle compiled copies kept per expression
+     */
+    private static final int                                 COPIES    = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The cached expressions. Access must be synchronized on the map itself.
+     */
+    private static final Map<Key, ArrayDeque<CompiledXPath>> CACHE     = new LinkedHashMap<Key, ArrayDeque<CompiledXPath>>(16, 0.75f, true) {
+
+        /**
+         * Generated UID
+         */
+        private static final long serialVersionUID = 3722935211372385658L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, ArrayDeque<CompiledXPath>> eldest) {
+            return size() > SIZE;
+        }
+    };
+
+    /**
+     * The shared factory. Access must be synchronized, as factories are not
+     * thread-safe.
+     */
+    private static final XPathFactory                        FACTORY   = XPathFactory.newInstance();
+
+    private static final LongAdder                           HITS      = new LongAdder();
+    private static final LongAdder                           MISSES    = new LongAdder();
+
+    /**
+     * Borrow a compiled expression from the cache, or compile a new one if
+     * none is available.
+     * <p>
+     * The supplied variables are bound to the returned expression until it is
+     * {@link #release(CompiledXPath) released}.
+     */
+    static final CompiledXPath borrow(String expression, Map<String, String> namespaces, Object... variables)
+        throws XPathExpressionException {
+
+        boolean hasVariables = variables != null && variables.length != 0;
+
+        // [#9] Chain namespace contexts, in case namespaces could be needed
+        boolean hasNamespaces = !namespaces.isEmpty() || expression.contains(":");
+
+        Key key = new Key(expression, hasNamespaces ? namespaces : null, hasVariables);
+        CompiledXPath result = null;
+
+        if (SIZE > 0) {
+            synchronized (CACHE) {
+                ArrayDeque<CompiledXPath> copies = CACHE.get(key);
+
+                if (copies != null)
+                    result = copies.poll();
+            }
+        }
+
+        if (result != null) {
+            HITS.increment();
+        }
+        else {
+            MISSES.increment();
+
+            // Don't let the cached key share mutable state with the caller
+            if (hasNamespaces)
+                key = new Key(expression, Collections.unmodifiableMap(new HashMap<>(namespaces)), hasVariables);
+
+            result = compile(key);
+        }
+
+        if (hasVariables)
+            result.resolver.variables = variables;
+
+        return result;
+    }
+
+    /**
+     * Return a borrowed expression to the cache.
+     */
+    static final void release(CompiledXPath compiled) {
+        if (compiled.resolver != null)
+            compiled.resolver.variables = null;
+
+        if (SIZE > 0) {
+            synchronized (CACHE) {
+                ArrayDeque<CompiledXPath> copies = CACHE.get(compiled.key);
+
+                if (copies == null)
+                    CACHE.put(compiled.key, copies = new ArrayDeque<>());
+
+                // If there are enough idle copies, the expression is discarded
+                if (copies.size() < COPIES)
+                    copies.offer(compiled);
+            }
+        }
+    }
+
+    /**
+     * Take a snapshot of this cache's statistics.
+     */
+    static final CacheStatistics statistics() {
+        int size;
+
+        synchronized (CACHE) {
+            size = CACHE.size();
+        }
+
+        return new DefaultCacheStatistics(HITS.sum(), MISSES.sum(), size);
+    }
+
+    private static final CompiledXPath compile(Key key) throws XPathExpressionException {
+        XPath xpath;
+
+        synchronized (FACTORY) {
+            xpath = FACTORY.newXPath();
+        }
+
+        // Add the xalan ExtensionNamespaceContext if Xalan is available
+        Util.xalanExtensionAware(xpath);
+
+        // Add a variable resolver if we have any variables
+        VariableResolver resolver = null;
+        if (key.variables)
+            xpath.setXPathVariableResolver(resolver = new VariableResolver(key.expression));
+
+        if (key.namespaces != null)
+            xpath.setNamespaceContext(new ChainedContext(xpath.getNamespaceContext(), key.namespaces));
+
+        return new CompiledXPath(key, xpath.compile(key.expression), resolver);
+    }
+
+    /**
+     * A pool of compiled copies of a single expression, which is owned by a
+     * prepared {@link Query} rather than by the shared cache.
+     * <p>
+     * Borrowing from a pool neither looks up the expression in the shared
+     * cache, nor does it contend for the shared cache's lock.
+     */
+    static final class Pool {
+
+        private final String                    expression;
+        private final boolean                   variables;
+        private final ArrayDeque<CompiledXPath> copies;
+
+        /**
+         * Create a pool, compiling a first copy of the expression to validate
+         * it.
+         * <p>
+         * Expressions with namespace prefixes may only compile once the
+         * namespaces of the evaluating {@link Match} are known. Their
+         * validation is deferred to their first evaluation.
+         */
+        Pool(String expression) throws XPathExpressionException {
+            this.expression = expression;
+            this.variables = expression.indexOf('$') >= 0;
+            this.copies = new ArrayDeque<>();
+
+            try {
+                copies.offer(compile(key(Collections.<String, String> emptyMap())));
+            }
+            catch (XPathExpressionException e) {
+                if (!expression.contains(":"))
+                    throw e;
+            }
+        }
+
+        /**
+         * Borrow a compiled copy of this pool's expression for the given
+         * namespace configuration, binding the supplied variables to it until
+         * it is {@link #release(CompiledXPath) released}.
+         */
+        final CompiledXPath borrow(Map<String, String> namespaces, Object[] bound) throws XPathExpressionException {
+            Key key = key(namespaces);
+            CompiledXPath result;
+
+            synchronized (copies) {
+                result = copies.poll();
+            }
+
+            // Copies compiled for other namespaces are discarded
+            if (result != null && result.key.equals(key)) {
+                HITS.increment();
+            }
+            else {
+                MISSES.increment();
+
+                if (key.namespaces != null)
+                    key = new Key(expression, Collections.unmodifiableMap(new HashMap<>(namespaces)), variables);
+
+                result = compile(key);
+            }
+
+            if (variables)
+                result.resolver.variables = bound;
+
+            return result;
+        }
+
+        /**
+         * Return a borrowed copy to this pool.
+         */
+        final void release(CompiledXPath compiled) {
+            if (compiled.resolver != null)
+                compiled.resolver.variables = null;
+
+            synchronized (copies) {
+                if (copies.size() < COPIES)
+                    copies.offer(compiled);
+            }
+        }
+
+        private final Key key(Map<String, String> namespaces) {
+            boolean hasNamespaces = !namespaces.isEmpty() || expression.contains(":");
+            return new Key(expression, hasNamespaces ? namespaces : null, variables);
+        }
+    }
+
+    /**
+     * A compiled expression, borrowed from the cache for exclusive use.
+     */
+    static final class CompiledXPath {
+
+        private final Key              key;
+        private final XPathExpression  expression;
+        private final VariableResolver resolver;
+
+        CompiledXPath(Key key, XPathExpression expression, VariableResolver resolver) {
+            this.key = key;
+            this.expression = expression;
+            this.resolver = resolver;
+        }
+
+        final Object evaluate(Node item, QName returnType) throws XPathExpressionException {
+            return expression.evaluate(item, returnType);
+        }
+    }
+
+    /**
+     * The cache key of a compiled expression.
+     */
+    private static final class Key {
+
+        private final String              expression;
+        private final Map<String, String> namespaces;
+        private final boolean             variables;
+
+        Key(String expression, Map<String, String> namespaces, boolean variables) {
+            this.expression = expression;
+            this.namespaces = namespaces;
+            this.variables = variables;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = expression.hashCode();
+            result = 31 * result + (namespaces == null ? 0 : namespaces.hashCode());
+            result = 31 * result + (variables ? 1 : 0);
+            return result;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof Key))
+                return false;
+
+            Key other = (Key) obj;
+            return variables == other.variables
+                && expression.equals(other.expression)
+                && (namespaces == null ? other.namespaces == null : namespaces.equals(other.namespaces));
+        }
+    }
+
+    /**
+     * A simple variable resolver mapping variable names to their respective
+     * index in an XPath expression.
+     * <p>
+     * The variables are rebound every time the owning expression is borrowed.
+     */
+    private static class VariableResolver implements XPathVariableResolver {
+
+        private final String expression;
+        Object[]             variables;
+
+        VariableResolver(String expression) {
+            this.expression = expression;
+        }
+
+        @Override
+        public final Object resolveVariable(QName variable) {
+            int index;
+
+            try {
+                index = Integer.parseInt(variable.getLocalPart()) - 1;
+            }
+            catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Variable " + variable + " is not supported by jOOX. Only numerical variables can be used for " + expression);
+            }
+
+            if (variables != null && index < variables.length)
+                return variables[index];
+            else
+                throw new IndexOutOfBoundsException("No variable defined for " + variable + " in " + expression);
+        }
+    }
+
+    /**
+     * A namespace context that is aware of a set of configured namespaces, as
+     * well as a chained context.
+     */
+    private static class ChainedContext implements NamespaceContext {
+
+        private final NamespaceContext    chained;
+        private final Map<String, String> namespaces;
+
+        ChainedContext(NamespaceContext chained, Map<String, String> namespaces) {
+            this.chained = chained;
+            this.namespaces = namespaces;
+        }
+
+        @SuppressWarnings("rawtypes")
+        @Override
+        public final Iterator getPrefixes(String namespaceURI) {
+            return chained == null ? emptyList().iterator() : chained.getPrefixes(namespaceURI);
+        }
+
+        @Override
+        public final String getPrefix(String namespaceURI) {
+            return chained == null ? "" : chained.getPrefix(namespaceURI);
+        }
+
+        @Override
+        public final String getNamespaceURI(String prefix) {
+            String namespaceURI = chained == null ? "" : chained.getNamespaceURI(prefix);
+
+            if ("".equals(namespaceURI) && namespaces.containsKey(prefix))
+                namespaceURI = namespaces.get(prefix);
+
+            return namespaceURI;
+        }
+    }
+
+    private XPathCache() {}
+}
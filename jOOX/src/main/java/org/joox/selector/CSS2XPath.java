@@ -14,6 +14,8 @@
 package org.joox.selector;
 
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 /**
@@ -36,6 +38,23 @@ public final class CSS2XPath {
      */
     private final static Pattern SIMPLE_SELECTOR = Pattern.compile("[\\w\\-]+");
 
+    /**
+     * The maximum number of translations kept per cache. This can be
+     * configured with the <code>org.joox.cssCacheSize</code> system property.
+     * A size of <code>0</code> disables caching.
+     */
+    private final static int SIZE = Math.max(0, Integer.getInteger("org.joox.cssCacheSize", 512));
+
+    /**
+     * Cached translations of CSS selectors matched from the document root
+     */
+    private final static Map<String, String> ROOT_CACHE = new ConcurrentHashMap<>();
+
+    /**
+     * Cached translations of CSS selectors matched from non-root elements
+     */
+    private final static Map<String, String> NON_ROOT_CACHE = new ConcurrentHashMap<>();
+
     /**
      * Convert a CSS selector expression to an XPath expression
      */
@@ -45,8 +64,46 @@ public final class CSS2XPath {
 
     /**
      * Convert a CSS selector expression to an XPath expression
+     * <p>
+     * Translations are cached, as CSS selectors are usually constants.
      */
     public static final String css2xpath(String css, boolean isRoot) {
+        if (SIZE == 0)
+            return translate(css, isRoot);
+
+        Map<String, String> cache = isRoot ? ROOT_CACHE : NON_ROOT_CACHE;
+        String result = cache.get(css);
+
+        if (result == null) {
+            result = translate(css, isRoot);
+
+            // Selectors are not expected to be generated dynamically. If they
+            // are, start over rather than growing without bounds.
+            if (cache.size() >= SIZE)
+                cache.clear();
+
+            cache.put(css, result);
+        }
+
+        return result;
+    }
+
+    /**
+     * Translate and cache a set of CSS selector expressions ahead of time.
+     * <p>
+     * This can be used to warm the cache at application startup, and to
+     * validate the selectors early.
+     *
+     * @throws RuntimeException If any of the selectors cannot be parsed
+     */
+    public static final void precompile(String... css) {
+        for (String c : css) {
+            css2xpath(c, true);
+            css2xpath(c, false);
+        }
+    }
+
+    private static final String translate(String css, boolean isRoot) {
         Scanner scanner = new Scanner(css);
         List<List<Selector>> selectors = scanner.scan();
 
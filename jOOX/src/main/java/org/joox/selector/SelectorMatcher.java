@@ -0,0 +1,432 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.joox.selector;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import org.joox.selector.Selector.Combinator;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * A CSS selector expression that is evaluated directly against the DOM.
+ * <p>
+ * Unlike {@link CSS2XPath}, this matcher does not translate selectors to XPath,
+ * but walks the parsed selectors from right to left, using plain DOM
+ * navigation. It supports the following subset of the CSS grammar:
+ * <ul>
+ * <li>Type selectors without namespaces, and the universal selector</li>
+ * <li>Descendant, child, adjacent sibling and general sibling combinators</li>
+ * <li>All attribute selectors, including ID and class selectors</li>
+ * <li>The <code>:empty</code>, <code>:first-child</code>,
+ * <code>:last-child</code>, <code>:only-child</code>, <code>:root</code> and
+ * <code>:nth-child()</code> pseudo-classes</li>
+ * <li>The <code>:not()</code> pseudo-class</li>
+ * </ul>
+ * Other pseudo-classes are ignored, just like in the XPath expressions
+ * generated by {@link CSS2XPath}. Selectors that cannot be evaluated by this
+ * matcher are not {@link #isSupported() supported} and must be evaluated
+ * through {@link CSS2XPath} instead.
+ * <p>
+ * Instances are immutable and thread-safe.
+ */
+public final class SelectorMatcher {
+
+    /**
+     * A selector pattern that can be evaluated using standard DOM API
+     */
+    private final static Pattern                      SIMPLE_SELECTOR = Pattern.compile("[\\w\\-]+");
+
+    /**
+     * The maximum number of compiled selectors kept in the cache. This shares
+     * the <code>org.joox.cssCacheSize</code> system property with
+     * {@link CSS2XPath}.
+     */
+    private final static int                          SIZE            = Math.max(0, Integer.getInteger("org.joox.cssCacheSize", 512));
+
+    /**
+     * Cached compiled selectors
+     */
+    private final static Map<String, SelectorMatcher> CACHE           = new ConcurrentHashMap<>();
+
+    private final List<List<Selector>>                selectors;
+    private final boolean                             supported;
+
+    private SelectorMatcher(List<List<Selector>> selectors) {
+        this.selectors = selectors;
+        this.supported = supported(selectors);
+    }
+
+    /**
+     * Compile a CSS selector expression.
+     * <p>
+     * Compiled selectors are cached, as CSS selectors are usually constants.
+     *
+     * @throws RuntimeException If the selector cannot be parsed
+     */
+    public static final SelectorMatcher compile(String css) {
+        if (SIZE == 0)
+            return new SelectorMatcher(new Scanner(css).scan());
+
+        SelectorMatcher result = CACHE.get(css);
+
+        if (result == null) {
+            result = new SelectorMatcher(new Scanner(css).scan());
+
+            // Selectors are not expected to be generated dynamically. If they
+            // are, start over rather than growing without bounds.
+            if (CACHE.size() >= SIZE)
+                CACHE.clear();
+
+            CACHE.put(css, result);
+        }
+
+        return result;
+    }
+
+    /**
+     * Whether this selector can be evaluated by this matcher.
+     */
+    public final boolean isSupported() {
+        return supported;
+    }
+
+    /**
+     * Check whether an element matches this selector.
+     * <p>
+     * The leftmost part of the selector is matched against descendants of a
+     * scope, just like the context node of an XPath expression. If the scope
+     * is the {@link org.w3c.dom.Document}, all elements are candidates,
+     * including the document element.
+     *
+     * @param element The element to check
+     * @param scope The scope, or <code>null</code> if the element's document
+     *            should be used
+     * @throws UnsupportedOperationException If this selector is not
+     *             {@link #isSupported() supported}
+     */
+    public final boolean matches(Element element, Node scope) {
+        if (!supported)
+            throw new UnsupportedOperationException("Selector not supported by SelectorMatcher");
+
+        if (scope == null)
+            scope = element.getOwnerDocument();
+
+        for (List<Selector> selector : selectors)
+            if (matches(element, scope, selector, selector.size() - 1))
+                return true;
+
+        return false;
+    }
+
+    /**
+     * Add all elements matching this selector within a scope to a list, in
+     * document order.
+     * <p>
+     * If the scope is the {@link org.w3c.dom.Document}, all elements are
+     * candidates, including the document element. Otherwise, only the scope's
+     * descendants are candidates.
+     *
+     * @throws UnsupportedOperationException If this selector is not
+     *             {@link #isSupported() supported}
+     */
+    public final void find(Node scope, List<? super Element> result) {
+        if (!supported)
+            throw new UnsupportedOperationException("Selector not supported by SelectorMatcher");
+
+        Node node = scope.getFirstChild();
+
+        // Iterative pre-order traversal of the scope's descendants
+        while (node != null) {
+            if (node.getNodeType() == Node.ELEMENT_NODE) {
+                Element element = (Element) node;
+
+                for (List<Selector> selector : selectors) {
+                    if (matches(element, scope, selector, selector.size() - 1)) {
+                        result.add(element);
+                        break;
+                    }
+                }
+
+                Node child = node.getFirstChild();
+                if (child != null) {
+                    node = child;
+                    continue;
+                }
+            }
+
+            while (node != scope && node.getNextSibling() == null)
+                node = node.getParentNode();
+
+            node = node == scope ? null : node.getNextSibling();
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // XXX: Matching
+    // -------------------------------------------------------------------------
+
+    /**
+     * Match an element against the selector at a given index, and
+     * recursively against all selectors to its left.
+     */
+    private static final boolean matches(Element element, Node scope, List<Selector> selector, int index) {
+        Selector s = selector.get(index);
+
+        if (!matches(element, s))
+            return false;
+
+        if (index == 0) {
+            switch (s.getCombinator()) {
+
+                // Elements are always descendants of their scope, if they
+                // were reached from it
+                case DESCENDANT:
+                    return isDescendant(element, scope);
+
+                case CHILD:
+                    return element.getParentNode() == scope;
+
+                default:
+                    return false;
+            }
+        }
+
+        switch (s.getCombinator()) {
+            case DESCENDANT: {
+                for (Node ancestor = element.getParentNode(); ancestor != scope && ancestor instanceof Element; ancestor = ancestor.getParentNode())
+                    if (matches((Element) ancestor, scope, selector, index - 1))
+                        return true;
+
+                return false;
+            }
+
+            case CHILD: {
+                Node parent = element.getParentNode();
+                return parent != scope && parent instanceof Element && matches((Element) parent, scope, selector, index - 1);
+            }
+
+            case ADJACENT_SIBLING: {
+                Element sibling = previousSibling(element);
+                return sibling != null && matches(sibling, scope, selector, index - 1);
+            }
+
+            case GENERAL_SIBLING: {
+                for (Element sibling = previousSibling(element); sibling != null; sibling = previousSibling(sibling))
+                    if (matches(sibling, scope, selector, index - 1))
+                        return true;
+
+                return false;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Match an element against a single selector, ignoring its combinator.
+     */
+    private static final boolean matches(Element element, Selector s) {
+        String tagName = s.getTagName();
+
+        if (!Selector.UNIVERSAL_TAG.equals(tagName)) {
+            if (!tagName.equals(localName(element)))
+                return false;
+
+            // [#163] Only simple tag names are namespace unaware in CSS2XPath
+            if (element.getNamespaceURI() != null && !SIMPLE_SELECTOR.matcher(tagName).matches())
+                return false;
+        }
+
+        if (s.hasSpecifiers())
+            for (Specifier specifier : s.getSpecifiers())
+                if (!matches(element, specifier))
+                    return false;
+
+        return true;
+    }
+
+    private static final boolean matches(Element element, Specifier specifier) {
+        switch (specifier.getType()) {
+            case ATTRIBUTE:
+                return matches(element, (AttributeSpecifier) specifier);
+
+            case NEGATION:
+                return !matches(element, ((NegationSpecifier) specifier).getSelector());
+
+            case PSEUDO:
+                if (specifier instanceof PseudoNthSpecifier) {
+                    PseudoNthSpecifier p = (PseudoNthSpecifier) specifier;
+
+                    if ("nth-child".equals(p.getValue()))
+                        return p.isMatch(index(element) + 1);
+                    else
+                        return true;
+                }
+
+                String value = ((PseudoClassSpecifier) specifier).getValue();
+
+                if ("empty".equals(value))
+                    return element.getFirstChild() == null && !hasAttributes(element);
+                else if ("first-child".equals(value))
+                    return previousSibling(element) == null;
+                else if ("last-child".equals(value))
+                    return nextSibling(element) == null;
+                else if ("only-child".equals(value))
+                    return previousSibling(element) == null && nextSibling(element) == null;
+                else if ("root".equals(value))
+                    return !(element.getParentNode() instanceof Element);
+                else
+                    return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Match an attribute specifier with the semantics of the XPath expression
+     * generated by {@link CSS2XPath}. Absent attributes are treated as empty
+     * strings, except for existence and exact checks.
+     */
+    private static final boolean matches(Element element, AttributeSpecifier a) {
+        Attr attr = element.getAttributeNodeNS(null, a.getName());
+
+        if (a.getMatch() == null)
+            return attr != null;
+
+        String actual = attr == null ? "" : attr.getValue();
+        String value = a.getValue();
+
+        switch (a.getMatch()) {
+            case EXACT:
+                return attr != null && actual.equals(value);
+
+            case CONTAINS:
+                return actual.contains(value);
+
+            case HYPHEN:
+                return actual.equals(value) || actual.startsWith(value + "-");
+
+            case PREFIX:
+                return actual.startsWith(value);
+
+            case SUFFIX:
+                return actual.endsWith(value);
+
+            case LIST:
+                return actual.equals(value)
+                    || actual.startsWith(value + " ")
+                    || actual.endsWith(" " + value)
+                    || actual.contains(" " + value + " ");
+        }
+
+        return false;
+    }
+
+    // -------------------------------------------------------------------------
+    // XXX: Utilities
+    // -------------------------------------------------------------------------
+
+    private static final boolean supported(List<List<Selector>> selectors) {
+        for (List<Selector> selector : selectors) {
+            for (int i = 0; i < selector.size(); i++) {
+                Selector s = selector.get(i);
+
+                // Siblings of the scope are not well-defined
+                if (i == 0 && s.getCombinator() != Combinator.DESCENDANT && s.getCombinator() != Combinator.CHILD)
+                    return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static final boolean isDescendant(Node node, Node scope) {
+        for (Node parent = node.getParentNode(); parent != null; parent = parent.getParentNode())
+            if (parent == scope)
+                return true;
+
+        return false;
+    }
+
+    /**
+     * The local name of an element, also for documents that are not
+     * namespace-aware.
+     */
+    private static final String localName(Element element) {
+        String localName = element.getLocalName();
+
+        if (localName == null) {
+            localName = element.getTagName();
+
+            int colon = localName.indexOf(':');
+            if (colon > -1)
+                localName = localName.substring(colon + 1);
+        }
+
+        return localName;
+    }
+
+    /**
+     * Whether an element has any attributes other than namespace declarations.
+     */
+    private static final boolean hasAttributes(Element element) {
+        NamedNodeMap attributes = element.getAttributes();
+
+        for (int i = 0; i < attributes.getLength(); i++) {
+            Node attr = attributes.item(i);
+            String name = attr.getNodeName();
+
+            if (!"http://www.w3.org/2000/xmlns/".equals(attr.getNamespaceURI())
+                && !"xmlns".equals(name)
+                && !name.startsWith("xmlns:"))
+                return true;
+        }
+
+        return false;
+    }
+
+    private static final Element previousSibling(Element element) {
+        for (Node node = element.getPreviousSibling(); node != null; node = node.getPreviousSibling())
+            if (node.getNodeType() == Node.ELEMENT_NODE)
+                return (Element) node;
+
+        return null;
+    }
+
+    private static final Element nextSibling(Element element) {
+        for (Node node = element.getNextSibling(); node != null; node = node.getNextSibling())
+            if (node.getNodeType() == Node.ELEMENT_NODE)
+                return (Element) node;
+
+        return null;
+    }
+
+    /**
+     * The zero-based index of an element among its element siblings.
+     */
+    private static final int index(Element element) {
+        int index = 0;
+
+        for (Element sibling = previousSibling(element); sibling != null; sibling = previousSibling(sibling))
+            index++;
+
+        return index;
+    }
+}
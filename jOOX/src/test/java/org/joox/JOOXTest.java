@@ -21,37 +21,70 @@ import static org.joox.JOOX.$;
 import static org.joox.JOOX.attr;
 import static org.joox.JOOX.chain;
 import static org.joox.JOOX.paths;
+import static org.joox.selector.CSS2XPath.css2xpath;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
 import java.io.StringWriter;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Properties;
 import java.util.Queue;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
 
 import javax.xml.parsers.DocumentBuilder;
+import javax.xml.transform.ErrorListener;
+import javax.xml.transform.Result;
+import javax.xml.transform.Source;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.URIResolver;
+import javax.xml.transform.stream.StreamResult;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathFactory;
 
 import org.apache.commons.io.IOUtils;
+import org.joox.selector.CSS2XPath;
+import org.joox.selector.SelectorMatcher;
 import org.junit.Assume;
 import org.junit.Before;
 import org.junit.FixMethodOrder;
 import org.junit.Test;
 import org.junit.runners.MethodSorters;
+import org.w3c.dom.DOMException;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
@@ -839,6 +872,113 @@ public class JOOXTest {
         }));
     }
 
+    @Test
+    public void testStreams() throws Exception {
+        Match books = $.find("book");
+
+        Spliterator<Element> spliterator = books.spliterator();
+        assertEquals(8, spliterator.getExactSizeIfKnown());
+        assertTrue(spliterator.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.ORDERED | Spliterator.NONNULL));
+        assertEquals(4, spliterator.trySplit().getExactSizeIfKnown());
+
+        // Sets of matched elements may contain duplicates
+        Match duplicates = $("<a><b/><b/></a>").find("b").eq(0, 0);
+        assertFalse(duplicates.spliterator().hasCharacteristics(Spliterator.DISTINCT));
+        assertEquals(2, duplicates.stream().count());
+        assertEquals(1, duplicates.stream().distinct().count());
+        assertFalse(duplicates.lazy().spliterator().hasCharacteristics(Spliterator.DISTINCT));
+        assertEquals(2, duplicates.lazy().filter("b").stream().count());
+        assertEquals(1, duplicates.lazy().filter("b").stream().distinct().count());
+
+        assertEquals(books.get(), books.stream().collect(Collectors.toList()));
+        assertEquals(books.get(), books.parallelStream().collect(Collectors.toList()));
+        assertEquals(8, books.stream().count());
+
+        assertEquals(
+            asList("0/8", "1/8", "2/8", "3/8", "4/8", "5/8", "6/8", "7/8"),
+            books.contexts().map(context -> context.matchIndex() + "/" + context.matchSize()).collect(Collectors.toList()));
+        assertEquals(books.get(), books.parallelContexts().map(Context::match).collect(Collectors.toList()));
+        assertEquals(0, $.find("nothing").contexts().count());
+    }
+
+    @Test
+    public void testParallel() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            Match books = $.find("book");
+
+            assertEquals(books.map(JOOX.ids()), books.parallelMap(JOOX.ids()));
+            assertEquals(books.map(JOOX.ids()), books.parallelMap(JOOX.ids(), executor));
+            assertEquals(
+                books.map(context -> $(context).find("author").text() + context.matchIndex() + "/" + context.matchSize()),
+                books.parallelMap(context -> $(context).find("author").text() + context.matchIndex() + "/" + context.matchSize(), executor));
+
+            // Filters return the original elements
+            Match filtered = books.parallelFilter(context -> $(context).find("author").text().startsWith("George"), executor);
+            assertEquals(books.filter(context -> $(context).find("author").text().startsWith("George")), filtered);
+            assertEquals(books.get(0), filtered.get(0));
+
+            // Callbacks operate on copies
+            Queue<Integer> indexes = new ConcurrentLinkedQueue<>();
+            books.parallelEach(context -> {
+                assertFalse(context.match() == books.get(context.matchIndex()));
+                $(context).attr("id", "x");
+                indexes.add(context.matchIndex());
+            }, executor);
+
+            assertEquals(asList(0, 1, 2, 3, 4, 5, 6, 7), indexes.stream().sorted().collect(Collectors.toList()));
+            assertEquals(asList("1", "2", "3", "4", "1", "3", "1", "2"), books.ids());
+
+            // Copies are detached, frozen elements are not copied
+            assertEquals(0, books.parallelFilter(JOOX.selector("books > book"), executor).size());
+            Match frozen = JOOX.freeze(books);
+            assertEquals(frozen.filter(JOOX.selector("books > book")), frozen.parallelFilter(JOOX.selector("books > book"), executor));
+            assertEquals(8, frozen.parallelFilter(JOOX.selector("books > book"), executor).size());
+            frozen.parallelEach(context -> assertSame(frozen.get(context.matchIndex()), context.match()), executor);
+
+            // Exceptions are propagated
+            try {
+                books.parallelMap(context -> {
+                    throw new IllegalStateException("" + context.matchIndex());
+                }, executor);
+                fail();
+            }
+            catch (IllegalStateException expected) {}
+        }
+        finally {
+            executor.shutdown();
+        }
+
+        // No further callbacks are run after a failure
+        ExecutorService single = Executors.newSingleThreadExecutor();
+
+        try {
+            Match many = $("root");
+            for (int i = 0; i < 2000; i++)
+                many.append("<a/>");
+
+            AtomicInteger count = new AtomicInteger();
+            IllegalStateException failure = new IllegalStateException();
+
+            try {
+                many.find("a").parallelEach(context -> {
+                    count.incrementAndGet();
+                    throw failure;
+                }, single);
+                fail();
+            }
+            catch (IllegalStateException expected) {
+                assertSame(failure, expected);
+            }
+
+            assertEquals(1, count.get());
+        }
+        finally {
+            single.shutdown();
+        }
+    }
+
     @Test
     public void testNext() throws Exception {
         assertEquals(0, $.next().size());
@@ -1190,6 +1330,234 @@ public class JOOXTest {
         assertEquals(0, $.size());
     }
 
+    @Test
+    public void testEdit() throws Exception {
+        Match expected = $(new StringReader(xmlExampleString));
+        Match actual = $(new StringReader(xmlExampleString));
+        Element shared = $("shared", $("x")).get(0);
+        Element sharedCopy = (Element) shared.cloneNode(true);
+
+        expected.find("book")
+                .attr("available", "true")
+                .attr("lang", (String) null)
+                .prepend(ctx -> "<first>" + ctx.matchIndex() + "</first>")
+                .append("<last/>")
+                .append(sharedCopy)
+                .after("<!-- after -->");
+        expected.find("book").before(ctx -> "text " + ctx.matchIndex());
+
+        Match books = actual.find("book");
+        assertEquals(books, books.edit(b -> b
+            .attr("available", "true")
+            .removeAttr("lang")
+            .prepend(ctx -> "<first>" + ctx.matchIndex() + "</first>")
+            .append("<last/>")
+            .append(shared)
+            .after("<!-- after -->")
+            .before(ctx -> "text " + ctx.matchIndex())));
+
+        assertEquals(expected.toString(), actual.toString());
+        assertSame(actual.document(), actual.find("shared").document());
+        assertEquals(8, actual.find("shared").size());
+        assertEquals(8, actual.find("shared").children("x").size());
+
+        // Callbacks see the unmodified document
+        assertEquals(asList("1", "1"), actual.find("author").slice(0, 2).edit(b -> b
+            .before("<before/>")
+            .attr("siblings", ctx -> "" + $(ctx.match()).parent().children().size()))
+            .attrs("siblings"));
+
+        // Callbacks see shared content at its original position
+        Match doc = $("<a><b/><c/><d/></a>");
+        Element c = doc.find("c").get(0);
+        doc.find("b, d").edit(b -> b
+            .append(c)
+            .attr("next", ctx -> $(ctx.match()).next().tag()));
+        assertEquals(asList("c", null), doc.find("b, d").attrs("next"));
+        assertEquals(2, doc.find("c").size());
+        assertEquals(asList("b", "d"), doc.children().tags());
+
+        // Shared content must not contain matched elements
+        Match nested = $("<a><b><c/></b></a>");
+        try {
+            nested.find("c").edit(b -> b.after(nested.find("b")));
+            fail();
+        }
+        catch (IllegalArgumentException e) {}
+
+        assertEquals("<a><b><c/></b></a>", nested.toString());
+
+        // Renamed and wrapped elements
+        Match authors = actual.find("author").edit(b -> b
+            .rename(ctx -> "writer" + ctx.matchIndex())
+            .wrap("by"));
+        assertEquals(8, authors.size());
+        assertEquals("writer0", authors.tag(0));
+        assertEquals(authors, actual.find("by").children());
+        assertEquals(0, actual.find("author").size());
+
+        assertEquals(0, actual.find("abc").edit(b -> b.append("<x/>")).size());
+    }
+
+    @Test
+    public void testIndex() throws Exception {
+        Match unindexed = $(new StringReader(xmlExampleString));
+        Match indexed = $(new StringReader(xmlExampleString)).index();
+
+        assertEquals(unindexed.find("book").ids(), indexed.find("book").ids());
+        assertEquals(unindexed.find("book").size(), indexed.find(JOOX.tag("book")).size());
+        assertEquals(unindexed.find("library").find("book").ids(), indexed.find("library").find("book").ids());
+        assertEquals(unindexed.find(JOOX.ids("1", "3")).tags(), indexed.find(JOOX.ids("1", "3")).tags());
+        assertEquals(unindexed.find(JOOX.attr("lang", "en")).ids(), indexed.find(JOOX.attr("lang", "en")).ids());
+        assertEquals(unindexed.find(JOOX.attr("lang", "en", "de")).ids(), indexed.find(JOOX.attr("lang", "en", "de")).ids());
+        assertEquals(unindexed.find("books").has("author").size(), indexed.find("books").has("author").size());
+        assertEquals(unindexed.find("name").has("x").size(), indexed.find("name").has("x").size());
+        assertEquals(0, indexed.find("book").find("library").size());
+
+        // Modifications through jOOX invalidate the index
+        indexed.find("book").append("<book id='99'/>");
+        unindexed.find("book").append("<book id='99'/>");
+        assertEquals(16, indexed.find("book").size());
+        assertEquals(8, indexed.find("book").find("book").size());
+        assertEquals(unindexed.find("book").ids(), indexed.find("book").ids());
+        assertEquals(8, indexed.find(JOOX.ids("99")).size());
+
+        indexed.find(JOOX.ids("99")).attr("id", "100");
+        assertEquals(0, indexed.find(JOOX.ids("99")).size());
+        assertEquals(8, indexed.find(JOOX.ids("100")).size());
+
+        indexed.find(JOOX.ids("100")).remove();
+        assertEquals(0, indexed.find(JOOX.ids("100")).size());
+        assertEquals(8, indexed.find("book").size());
+
+        // Modifications through the DOM require re-indexing
+        indexed.find("library").get(0).appendChild(indexed.document().createElement("book"));
+        assertEquals(8, indexed.find("book").size());
+        assertEquals(9, indexed.index().find("book").size());
+
+        // Elements of other documents fall back to scanning
+        assertEquals(1, indexed.find("book").eq(0).add($(new StringReader("<x><book/></x>"))).find("book").size());
+    }
+
+    @Test
+    public void testFastFilterContext() throws Exception {
+        List<Context> fast = new ArrayList<>();
+        List<Element> elements = new ArrayList<>();
+        assertEquals(8, $.find((FastFilter) context -> {
+            fast.add(context);
+            elements.add(context.element());
+            return "book".equals(context.element().getTagName());
+        }).size());
+
+        // Fast filters share a single context per traversal
+        assertTrue(fast.size() > 8);
+        assertSame(fast.get(0), fast.get(fast.size() - 1));
+        assertEquals($.find().get(), elements);
+
+        List<Context> slow = new ArrayList<>();
+        assertEquals(8, $.find(context -> {
+            slow.add(context);
+            return "book".equals(context.element().getTagName());
+        }).size());
+
+        // Other filters get their own context, which they may keep
+        assertNotSame(slow.get(0), slow.get(slow.size() - 1));
+        assertEquals($.find().get(), slow.stream().map(Context::element).collect(Collectors.toList()));
+
+        // Contexts reflect the current match and element across all axes
+        assertEquals($.find("author").parents("book").get(), $.find("author").parents((FastFilter) context -> context.match() != context.element() && context.element().getTagName().equals("book")).get());
+        assertEquals(2, $.find("book").eq(2, 3).filter((FastFilter) context -> context.matchSize() == 2).size());
+        assertEquals($.find("book").eq(1).get(), $.find("book").filter((FastFilter) context -> context.matchIndex() == 1).get());
+        assertTrue($.find("book").is((FastFilter) context -> context.matchIndex() == 7));
+        assertEquals($.find("books").get(), $.find("books").has((FastFilter) context -> "book".equals(context.element().getTagName())).get());
+    }
+
+    @Test
+    public void testLazy() throws Exception {
+        assertEquals($.find().get(), $.lazy().find().get());
+        assertEquals($.find("book").get(), $.lazy().find("book").get());
+        assertEquals($.find("book").find("book").get(), $.lazy().find("book").find("book").get());
+        assertEquals($.find().find("book").get(), $.find().lazy().find("book").get());
+        assertEquals($.find().find("books > book").get(), $.find().lazy().find("books > book").get());
+        assertEquals($.find("library").find("book").get(), $.lazy().find("library").find("book").get());
+        assertEquals($.find("books > book[lang='en']").get(), $.lazy().find("books > book[lang='en']").get());
+        assertEquals($.find("library").find("books > book").get(), $.lazy().find("library").find("books > book").get());
+        assertEquals($.find("library").find("library > books").get(), $.lazy().find("library").find("library > books").get());
+        assertEquals($.find("book").children().get(), $.lazy().find("book").children().get());
+        assertEquals($.find("book").children("name").get(), $.lazy().find("book").children("name").get());
+        assertEquals($.find("book").parent().get(), $.lazy().find("book").parent().get());
+        assertEquals($.find("book").parent("library").get(), $.lazy().find("book").parent("library").get());
+        assertEquals($.find("book").next().get(), $.lazy().find("book").next().get());
+        assertEquals($.find("book").next("dvd").get(), $.lazy().find("book").next("dvd").get());
+        assertEquals($.find("book").filter(JOOX.attr("lang", "en")).get(), $.lazy().find("book").filter(JOOX.attr("lang", "en")).get());
+        assertEquals($.find("book").eq(2).get(), $.lazy().find("book").eq(2).get());
+        assertEquals($.find("book").eq(-1).get(), $.lazy().find("book").eq(-1).get());
+        assertEquals($.find("book").first().get(), $.lazy().find("book").first().get());
+        assertEquals($.find("book").get(0), $.lazy().find("book").get(0));
+        assertEquals($.find("book").get(-2), $.lazy().find("book").get(-2));
+        assertNull($.lazy().find("book").get(8));
+        assertNull($.lazy().find("book").get(-9));
+        assertEquals(8, $.lazy().find("book").size());
+        assertEquals(3, $.lazy().find("book").limit(3).size());
+        assertEquals($.find("book"), $.lazy().find("book").match());
+        assertEquals($.find("book").ids(), $.lazy().find("book").match().ids());
+        assertEquals($.find("book").ids(), $.lazy().find("book").stream().map(e -> e.getAttribute("id")).collect(Collectors.toList()));
+        assertTrue($.lazy().find("book").is("book"));
+        assertFalse($.lazy().find("book").is("dvd"));
+        assertTrue($.lazy().find("book").isNotEmpty());
+        assertTrue($.lazy().find("xyz").isEmpty());
+
+        // Pipelines are evaluated again for every terminal operation
+        LazyMatch books = $.lazy().find("book");
+        assertEquals(8, books.size());
+        $.find("book").eq(0).remove();
+        assertEquals(7, books.size());
+
+        // Short-circuiting operations stop pulling elements
+        List<Element> visited = new ArrayList<>();
+        LazyMatch pipeline = $.lazy().find(context -> visited.add(context.element())).filter("book");
+
+        assertEquals($.find("book").get(0), pipeline.get(0));
+        assertEquals($.find().get().subList(0, visited.size()), visited);
+        assertTrue(visited.size() < $.find().size());
+
+        visited.clear();
+        assertTrue(pipeline.isNotEmpty());
+        assertTrue(visited.size() < $.find().size());
+
+        visited.clear();
+        assertEquals($.find().size(), pipeline.find("xyz").size() + visited.size());
+    }
+
+    @Test
+    public void testExistsFindFirstCount() throws Exception {
+        for (String selector : asList("*", "book", "books > book[lang='en']", "library > books", "book:first-child", "xyz")) {
+            for (Match match : asList($, $.find("library"), $.find(), $.find("xyz"))) {
+                assertEquals(match.find(selector).isNotEmpty(), match.exists(selector));
+                assertEquals(match.find(selector).first(), match.findFirst(selector));
+                assertEquals(new LinkedHashSet<>(match.find(selector).get()).size(), match.count(selector));
+            }
+        }
+
+        assertTrue($.exists(JOOX.attr("name", "Amazon")));
+        assertFalse($.exists(JOOX.attr("name", "Ebay")));
+        assertEquals($.find(JOOX.attr("id", "3")).first(), $.findFirst(JOOX.attr("id", "3")));
+        assertEquals(0, $.findFirst(JOOX.attr("id", "99")).size());
+        assertEquals($.find(JOOX.attr("id")).size(), $.count(JOOX.attr("id")));
+
+        // Indexed documents use the index
+        Match indexed = $(new StringReader(xmlExampleString)).index();
+        assertTrue(indexed.exists(JOOX.ids("3")));
+        assertEquals("3", indexed.findFirst(JOOX.ids("3")).id());
+        assertEquals(indexed.find(JOOX.tag("book")).size(), indexed.count(JOOX.tag("book")));
+
+        // The search stops at the first match
+        List<Element> visited = new ArrayList<>();
+        assertTrue($.exists(context -> visited.add(context.element()) && "book".equals(context.element().getTagName())));
+        assertEquals($.find().get().subList(0, visited.size()), visited);
+        assertTrue(visited.size() < $.find().size());
+    }
+
     @Test
     public void testWrap() throws Exception {
         assertEquals(0, $.find("abc").wrap("parent").size());
@@ -1337,6 +1705,169 @@ public class JOOXTest {
         assertEquals("a\n<b/>\nc", $("<y><x>a\n<b/>\nc</x></y>").find("x").content().replace("\r", ""));
     }
 
+    @Test
+    public void testContentWriter() throws Exception {
+        StringWriter writer = new StringWriter();
+        assertEquals(0, $.find("non-existing").content(writer).size());
+        assertEquals("", writer.toString());
+
+        writer = new StringWriter();
+        $.find("actor").content(writer);
+        assertEquals("Charles Bronson", writer.toString());
+
+        writer = new StringWriter();
+        $("<a x='&gt;' y=\"'\"><b>1</b><!--c--><d a='>'/></a>").content(writer);
+        assertEquals("<b>1</b><!--c--><d a=\"&gt;\"/>", writer.toString());
+        assertEquals(writer.toString(), $("<a x='&gt;' y=\"'\"><b>1</b><!--c--><d a='>'/></a>").content());
+
+        // Content that is larger than the transformer's buffers
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 10000; i++)
+            sb.append("<b>").append(i).append("</b>");
+
+        writer = new StringWriter();
+        $("<abc>" + sb + "</abc>").content(writer);
+        assertEquals(sb.toString(), writer.toString());
+        assertEquals(sb.toString(), $("<abc>" + sb + "</abc>").content());
+        assertEquals("<b/>x", $("<a:b xmlns:a='urn:a'><b/>x</a:b>").content());
+
+        // Content that is shorter than the buffer, with a transformer that does not flush
+        writer = new StringWriter();
+        Util.writeContent($("<a><b>1</b></a>").get(0), writer, new NonFlushingTransformer());
+        assertEquals("<b>1</b>", writer.toString());
+    }
+
+    /**
+     * A transformer that writes its output without flushing it.
+     */
+    private static final class NonFlushingTransformer extends Transformer {
+        private final Transformer delegate = Util.transformer(XMLFormat.DEFAULT);
+
+        @Override
+        public void transform(Source source, Result result) throws TransformerException {
+            StringWriter out = new StringWriter();
+            delegate.transform(source, new StreamResult(out));
+
+            try {
+                ((StreamResult) result).getWriter().write(out.toString());
+            }
+            catch (IOException e) {
+                throw new TransformerException(e);
+            }
+        }
+
+        @Override
+        public void setParameter(String name, Object value) {
+            delegate.setParameter(name, value);
+        }
+
+        @Override
+        public Object getParameter(String name) {
+            return delegate.getParameter(name);
+        }
+
+        @Override
+        public void clearParameters() {
+            delegate.clearParameters();
+        }
+
+        @Override
+        public void setURIResolver(URIResolver resolver) {
+            delegate.setURIResolver(resolver);
+        }
+
+        @Override
+        public URIResolver getURIResolver() {
+            return delegate.getURIResolver();
+        }
+
+        @Override
+        public void setOutputProperties(Properties oformat) {
+            delegate.setOutputProperties(oformat);
+        }
+
+        @Override
+        public Properties getOutputProperties() {
+            return delegate.getOutputProperties();
+        }
+
+        @Override
+        public void setOutputProperty(String name, String value) {
+            delegate.setOutputProperty(name, value);
+        }
+
+        @Override
+        public String getOutputProperty(String name) {
+            return delegate.getOutputProperty(name);
+        }
+
+        @Override
+        public void setErrorListener(ErrorListener listener) {
+            delegate.setErrorListener(listener);
+        }
+
+        @Override
+        public ErrorListener getErrorListener() {
+            return delegate.getErrorListener();
+        }
+    }
+
+    @Test
+    public void testContentFragments() throws Exception {
+        String fragment = "a<b x='1' xmlns:p='urn:p' p:y='2'>&amp;<![CDATA[<c>]]><!--d--><?e f?></b>g";
+
+        Match x = $("<x/>").append(fragment);
+        Match y = $("<y/>").append(fragment);
+        assertEquals($(new StringReader("<x>" + fragment + "</x>")).toString(), x.toString());
+        assertEquals(x.content(), y.content());
+
+        // Cached fragments create new nodes in their target documents
+        assertNotSame(x.child().get(0), y.child().get(0));
+        assertSame(x.document(), x.child().document());
+        assertEquals("urn:p", x.child().get(0).getAttributeNodeNS("urn:p", "y").getNamespaceURI());
+        assertEquals(asList(Node.TEXT_NODE, Node.CDATA_SECTION_NODE, Node.COMMENT_NODE, Node.PROCESSING_INSTRUCTION_NODE), nodeTypes(x.child().get(0)));
+
+        // Namespaces of fragments
+        assertEquals("urn:q", $("<x/>").append("<q:a xmlns:q='urn:q'/>").child().namespaceURI());
+        assertEquals("urn:r", $("<x/>").append("<a xmlns='urn:r'><b/></a>").find("b").namespaceURI());
+
+        // Fragments with an XML declaration
+        assertEquals("<x><a><b/></a></x>", $("<x/>").append("<?xml version='1.0'?><!--c--><a><b/></a>").toString());
+
+        // Invalid XML is added as text
+        assertEquals("a < b", $("<x/>").append("a < b").text());
+        assertEquals("a < b", $("<x/>").append("a < b").text());
+        assertEquals("<p:a/>", $("<x/>").append("<p:a/>").text());
+        assertEquals("&nbsp;", $("<x/>").append("&nbsp;").text());
+        assertEquals("<!DOCTYPE x><x/>", $("<x/>").append("<!DOCTYPE x><x/>").text());
+
+        // Readers are pooled, and fragments can be parsed from any thread
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+
+            for (int i = 0; i < 32; i++) {
+                String text = i % 2 == 0 ? "<b>" + i + "</b>" : "a < " + i;
+                futures.add(executor.submit(() -> $("<x/>").append(text).toString()));
+            }
+
+            for (int i = 0; i < 32; i++)
+                assertEquals(i % 2 == 0 ? "<x><b>" + i + "</b></x>" : "<x>a &lt; " + i + "</x>", futures.get(i).get());
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    private static final List<Short> nodeTypes(Element element) {
+        List<Short> result = new ArrayList<>();
+
+        for (Node node = element.getFirstChild(); node != null; node = node.getNextSibling())
+            result.add(node.getNodeType());
+
+        return result;
+    }
+
     @Test
     public void testContentJAXB() throws Exception {
         assertEquals("<customer id=\"0\"><age>0</age></customer>",
@@ -1681,6 +2212,109 @@ public class JOOXTest {
         catch (RuntimeException expected) {}
     }
 
+    @Test
+    public void testXPathCache() throws Exception {
+        CacheStatistics before = JOOX.xpathStatistics();
+
+        // The same expression is evaluated with different variables
+        for (int i = 3; i <= 5; i++)
+            assertEquals(5 - i, $.xpath("//*[@id > $1]", i).size());
+
+        // The same expression is evaluated repeatedly without variables
+        assertEquals(8, $.xpath("//book").size());
+        assertEquals(8, $.xpath("//book").size());
+
+        CacheStatistics after = JOOX.xpathStatistics();
+        assertTrue(after.hits() >= before.hits() + 4);
+        assertTrue(after.size() > 0);
+    }
+
+    @Test
+    public void testCSS2XPathCache() throws Exception {
+        CSS2XPath.precompile("book[id='1']", "library > books");
+
+        assertSame(css2xpath("book[id='1']", true), css2xpath("book[id='1']", true));
+        assertTrue(css2xpath("book[id='1']", false).startsWith("."));
+        assertFalse(css2xpath("book[id='1']", true).startsWith("."));
+
+        assertEquals(asList(1, 1, 1), $.find("book[id='1']").ids(Integer.class));
+        assertEquals(asList(1, 1, 1), $.find("book[id='1']").ids(Integer.class));
+        assertEquals(asList(1, 2, 1, 1, 2), $.find("library").find("book[id='1'], book[id='2']").ids(Integer.class));
+
+        try {
+            CSS2XPath.precompile("##");
+            fail();
+        }
+        catch (RuntimeException expected) {}
+    }
+
+    @Test
+    public void testFindCSSNative() throws Exception {
+        String[] selectors = {
+            "document book",
+            "library > books > book",
+            "books > * > * > author",
+            "book[id='1'], dvd",
+            "library[name^='Ama'] book",
+            "library[name$='li'] book",
+            "library[name*='essl'] book",
+            "library[name~='Fuessli'] book",
+            "library[name|='Orell'] book",
+            "book:first-child",
+            "book:last-child name",
+            "author:only-child",
+            "actor:nth-child(2)",
+            ":root > library",
+            "book > name:empty",
+            "*[id]"
+        };
+
+        for (String selector : selectors) {
+            assertTrue(selector, SelectorMatcher.compile(selector).isSupported());
+            assertEquals(selector, $.xpath(css2xpath(selector, true)), $.find(selector));
+            assertEquals(selector, $.find("library").xpath(css2xpath(selector, false)), $.find("library").find(selector));
+        }
+
+        // Sibling combinators and negations are not supported by CSS2XPath
+        assertEquals(asList(2, 3, 4, 3, 2), $.find("book + book").ids(Integer.class));
+        assertEquals(asList(2, 3, 4, 3, 2), $.find("book ~ book").ids(Integer.class));
+        assertEquals(asList(3, 4, 3), $.find("book[id='1'] ~ book:not([id='2'])").ids(Integer.class));
+        assertEquals(asList("Amazon", "Roesslitor"), $.find("library:not([name*=' '])").attrs("name"));
+        assertEquals(1, $.find("books ~ dvds").size());
+        assertEquals(0, $.find("dvds + books").size());
+
+        // nth-child() supports the complete a*n+b syntax
+        assertEquals(asList(1, 3, 1, 1), $.find("book:nth-child(odd)").ids(Integer.class));
+        assertEquals(asList(2, 4, 3, 2), $.find("book:nth-child(2n)").ids(Integer.class));
+
+        // Unknown pseudo-classes are ignored, like in CSS2XPath
+        assertTrue(SelectorMatcher.compile("book:hover").isSupported());
+        assertEquals($.find("book"), $.find("book:hover"));
+        assertEquals($.xpath(css2xpath("book:hover", true)), $.find("book:hover"));
+    }
+
+    @Test
+    public void testSelectorFilter() throws Exception {
+        Match books = $.find("book");
+
+        assertEquals(asList(1, 2, 2), books.filter("library[name^='Ama'] book[id='1'], library book[id='2']").ids(Integer.class));
+        assertEquals($.find("books > book[id='1']"), books.filter("books > book[id='1']"));
+        assertEquals($.find("book:first-child"), books.filter(":first-child"));
+        assertEquals(0, books.filter("dvds > book").size());
+
+        assertTrue(books.is("library > * > book"));
+        assertFalse(books.is("library > book"));
+        assertEquals(asList("Amazon"), $.find("library").has("dvd[id='5']").attrs("name"));
+        assertEquals(asList("books", "books", "books"), $.find("library").children(":first-child").tags());
+        assertEquals(asList("library"), $.find("author").eq(0).parents("document > *").tags());
+        assertEquals(asList(2, 4, 3, 2), books.not("book:first-child").filter(":nth-child(even)").ids(Integer.class));
+
+        // Selectors that SelectorMatcher does not support are tested through XPath
+        for (String selector : asList("books > book[id='1']", "library > * > book:last-child", "dvds > book", "library book:first-child"))
+            for (Element book : books)
+                assertEquals(selector, $.find(selector).get().contains(book), Util.isSelected(book, css2xpath(selector, true)));
+    }
+
     @Test
     public void testXPathWithFunctions() throws Exception {
         /* [java-9] */
@@ -1822,6 +2456,286 @@ public class JOOXTest {
         assertEquals("<author>George Orwell</author><author>George Orwell</author>", writer.toString());
     }
 
+    @Test
+    public void testWriteFormat() throws Exception {
+        StringWriter writer = new StringWriter();
+        $.write(writer, XMLFormat.DEFAULT);
+        assertEquals($.toString(), writer.toString());
+
+        writer = new StringWriter();
+        $.find("author").slice(0, 2).write(writer, XMLFormat.DEFAULT.header(true));
+        assertEquals("<?xml version=\"1.0\" encoding=\"UTF-8\"?><author>George Orwell</author><author>George Orwell</author>", writer.toString());
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        $("a", $("b", "\u00e4")).write(stream, XMLFormat.DEFAULT.encoding(StandardCharsets.ISO_8859_1));
+        assertEquals("<a><b>\u00e4</b></a>", stream.toString("ISO-8859-1"));
+
+        writer = new StringWriter();
+        $("a", $("b")).write(writer, XMLFormat.DEFAULT.indent(2));
+        assertEquals("<a>\n  <b/>\n</a>", writer.toString().trim().replace("\r\n", "\n"));
+
+        stream = new ByteArrayOutputStream();
+        $.find("author").slice(0, 2).write(stream, XMLFormat.DEFAULT.header(true).separator("\n"));
+        assertEquals("<?xml version=\"1.0\" encoding=\"UTF-8\"?><author>George Orwell</author>\n<author>George Orwell</author>", stream.toString("UTF-8"));
+
+        File file = File.createTempFile("joox", ".xml");
+        try {
+            $("a", $("b", "\u00e4")).write(file);
+            assertEquals("<a><b>\u00e4</b></a>", new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+
+            $.find("book").write(file, XMLFormat.DEFAULT.separator(","));
+            assertEquals($.find("book").toString().replace(",\n", ","), "[" + new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8) + "]");
+        }
+        finally {
+            file.delete();
+        }
+
+        assertEquals(2, XMLFormat.DEFAULT.indent(2).header(true).indent());
+        assertTrue(XMLFormat.DEFAULT.indent(2).header(true).header());
+        assertFalse(XMLFormat.DEFAULT.header());
+    }
+
+    @Test
+    public void testBytes() throws Exception {
+        byte[] bytes = xmlExampleString.getBytes(StandardCharsets.UTF_8);
+        byte[] padded = new byte[bytes.length + 20];
+        System.arraycopy(bytes, 0, padded, 10, bytes.length);
+
+        assertEquals($.find("book").ids(), $(bytes).find("book").ids());
+        assertEquals($.find("book").ids(), $(padded, 10, bytes.length).find("book").ids());
+
+        ByteBuffer heap = ByteBuffer.wrap(padded, 10, bytes.length);
+        assertEquals($.find("book").ids(), $(heap).find("book").ids());
+        assertEquals($.find("book").ids(), $(heap.slice()).find("book").ids());
+        assertEquals(10, heap.position());
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(padded.length);
+        direct.put(padded).position(10).limit(10 + bytes.length);
+        assertEquals($.find("book").ids(), $(direct).find("book").ids());
+        assertEquals(10, direct.position());
+
+        File file = File.createTempFile("joox", ".xml");
+        try {
+            Files.write(file.toPath(), bytes);
+            assertEquals($.find("book").ids(), $(file.toPath(), true).find("book").ids());
+            assertEquals($.find("book").ids(), $(file.toPath(), false).find("book").ids());
+        }
+        finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testAll() throws Exception {
+        File directory = Files.createTempDirectory("joox").toFile();
+        File archive = new File(directory, "documents.zip");
+        List<Path> paths = new ArrayList<>();
+
+        try {
+            try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(archive))) {
+                zip.putNextEntry(new ZipEntry("books/"));
+                zip.closeEntry();
+
+                for (int i = 0; i < 50; i++) {
+                    String xml = "<document id='" + i + "'>" + xmlExampleString.replaceFirst("<\\?xml[^>]*>", "") + "</document>";
+                    Path path = new File(directory, i + ".xml").toPath();
+                    Files.write(path, xml.getBytes(StandardCharsets.UTF_8));
+                    paths.add(path);
+
+                    zip.putNextEntry(new ZipEntry("books/" + i + ".xml"));
+                    zip.write(xml.getBytes(StandardCharsets.UTF_8));
+                    zip.closeEntry();
+                }
+            }
+
+            List<String> ids = new ArrayList<>();
+            for (Path path : paths)
+                ids.add($(path).id());
+
+            assertEquals(ids, JOOX.$all(paths).map(Match::id).collect(Collectors.toList()));
+            assertEquals(ids, JOOX.$all(paths.stream()).map(Match::id).collect(Collectors.toList()));
+            assertEquals(ids.subList(0, 3), JOOX.$all(paths.stream()).limit(3).map(Match::id).collect(Collectors.toList()));
+            assertEquals(8 * 50, JOOX.$all(paths).mapToInt(m -> m.find("book").size()).sum());
+
+            ExecutorService executor = Executors.newFixedThreadPool(2);
+            try {
+                assertEquals(ids, JOOX.$all(paths, executor).map(Match::id).collect(Collectors.toList()));
+            }
+            finally {
+                executor.shutdown();
+            }
+
+            try (ZipFile zip = new ZipFile(archive)) {
+                assertEquals(ids, JOOX.$all(zip).map(Match::id).collect(Collectors.toList()));
+            }
+
+            // Failures are reported when the failing document is reached
+            File invalid = new File(directory, "invalid.xml");
+            Files.write(invalid.toPath(), "<a>".getBytes(StandardCharsets.UTF_8));
+            paths.add(1, invalid.toPath());
+
+            try (Stream<Match> stream = JOOX.$all(paths)) {
+                Iterator<Match> it = stream.iterator();
+                assertEquals("0", it.next().id());
+
+                try {
+                    it.next();
+                    fail();
+                }
+                catch (RuntimeException expected) {}
+            }
+        }
+        finally {
+            for (File file : directory.listFiles())
+                file.delete();
+
+            directory.delete();
+        }
+    }
+
+    @Test
+    public void testQuery() throws Exception {
+        for (String selector : asList("*", "book", "books > book:first-child", "book[id='2'], dvd", "book + book"))
+            assertEquals($.find(selector).get(), $.find(JOOX.query(selector)).get());
+
+        assertEquals($.find("book").find("name").get(), $.find("book").find(JOOX.query("name")).get());
+        assertEquals($.find("book").filter("[id='3']").get(), $.find("*").filter(JOOX.query("book[id='3']")).get());
+        assertEquals("books > book:first-child", JOOX.query("books > book:first-child").toString());
+
+        try {
+            JOOX.query("book").bind(1);
+            fail();
+        }
+        catch (UnsupportedOperationException expected) {}
+
+        // XPath queries with variables
+        Query byId = JOOX.xpathQuery("//*[@id > $1]");
+        assertEquals($.xpath("//*[@id > $1]", 3).get(), $.find(byId.bind(3)).get());
+        assertEquals(asList(4, 5), $.find(byId.bind(3)).ids(Integer.class));
+        assertEquals(asList(1, 2, 1, 1, 2),
+            $.find(JOOX.xpathQuery("//book[count(authors/author) = $1][authors/author[text() = $2]]").bind(1, "George Orwell")).ids(Integer.class));
+
+        for (int i = 3; i <= 5; i++)
+            assertEquals(5 - i, $.find(byId.bind(i)).size());
+
+        // XPath queries as predicates
+        assertEquals(asList("3", "4"), $.find("book").eq(0, 1, 2, 3).filter(JOOX.xpathQuery("@id > $1").bind(2)).ids());
+        assertEquals($.find("book").filter(JOOX.xpathQuery("authors/author = 'Paulo Coelho'")).get(),
+            $.find("book").filter(ctx -> $(ctx).find("author").text().equals("Paulo Coelho")).get());
+        assertEquals(2, $.find("book").eq(0, 1, 2, 3).children(JOOX.xpathQuery("self::name[. = 'Brida' or . = '1984']")).size());
+
+        // Namespaces are taken from the match
+        Query nodes = JOOX.xpathQuery("//root-ns:node");
+        assertEquals(2, $(xmlNamespacesDocument).namespace("root-ns", "http://www.example.com/root/ns").find(nodes).size());
+        assertEquals(6, $(xmlNamespacesDocument)
+                           .namespace("root-ns", "http://www.example.com/root/ns")
+                           .namespace("nested-ns", "http://www.example.com/nested/ns")
+                           .find(JOOX.xpathQuery("//root-ns:node | //nested-ns:node")).size());
+
+        // XPath queries used as plain filters take their namespaces from the match, too
+        Match ns = $(xmlNamespacesDocument).namespace("root-ns", "http://www.example.com/root/ns");
+        Query isNode = JOOX.xpathQuery("self::root-ns:node");
+        Query hasNode = JOOX.xpathQuery("root-ns:node");
+        assertEquals(2, ns.find((Filter) isNode).size());
+        assertEquals(1, ns.children(isNode).size());
+        assertEquals(3, ns.children().not(isNode).size());
+        assertTrue(ns.children().is(isNode));
+        assertEquals(2, ns.find((Filter) isNode).parents(hasNode).size());
+        assertEquals(1, ns.has(isNode).size());
+        assertEquals(2, ns.lazy().find(isNode).size());
+        assertEquals(1, ns.lazy().children(isNode).size());
+
+        try {
+            JOOX.xpathQuery("//*[");
+            fail();
+        }
+        catch (RuntimeException expected) {}
+
+        // Queries can be shared by threads
+        Match frozen = JOOX.freeze(xmlExampleDocument);
+        Query authors = JOOX.xpathQuery("authors/author[. = $1]");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+
+            for (int i = 0; i < 16; i++) {
+                String author = i % 2 == 0 ? "George Orwell" : "Paulo Coelho";
+                futures.add(executor.submit(() -> frozen.find("book").find(authors.bind(author)).size()));
+            }
+
+            for (int i = 0; i < 16; i++)
+                assertEquals($.find("book").xpath("authors/author[. = $1]", i % 2 == 0 ? "George Orwell" : "Paulo Coelho").size(), (int) futures.get(i).get());
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testFreeze() throws Exception {
+        Match frozen = JOOX.freeze(xmlExampleDocument);
+
+        assertEquals($.toString(), frozen.toString());
+        assertEquals($.find("book").ids(), frozen.find("book").ids());
+        assertEquals($.find("book").find("name").texts(), frozen.find("book").find("name").texts());
+        assertEquals($.find("books > book:first-child").id(), frozen.find("books > book:first-child").id());
+        assertEquals($.children().tags(), frozen.children().tags());
+        assertEquals($.find("library").attrs("name"), frozen.find("library").attrs("name"));
+        assertEquals($.text(), frozen.text());
+        assertEquals($.xpath("//book[@id > 2]/name").texts(), frozen.xpath("//book[@id > 2]/name").texts());
+        assertEquals($.find("author").xpaths(), frozen.find("author").xpaths());
+        assertEquals($.find("author").parents("book").ids(), frozen.find("author").parents("book").ids());
+        assertEquals($.find("book").count("author"), frozen.find("book").count("author"));
+        assertEquals($.lazy().find("author").size(), frozen.lazy().find("author").size());
+        assertSame(frozen.find("book").get(0), frozen.find("book").get(0));
+        assertTrue(frozen.get(0).isEqualNode(xmlExampleElement));
+
+        // Freezing a match keeps its elements, in order
+        Match books = JOOX.freeze($.find("book").eq(3, 1));
+        assertEquals(asList("4", "2"), books.ids());
+        assertEquals(books.document(), books.get(1).getOwnerDocument());
+        assertSame(books.get(0), JOOX.freeze(books).get(0));
+
+        // Namespaces
+        Match namespaces = JOOX.freeze(xmlNamespacesDocument);
+        assertEquals(2, namespaces.namespace("root-ns", "http://www.example.com/root/ns").xpath("//root-ns:node").size());
+        assertEquals($(xmlNamespacesDocument).find("node").size(), namespaces.find("node").size());
+        assertEquals($(xmlNamespacesDocument).find("*").namespaceURIs(), namespaces.find("*").namespaceURIs());
+        assertEquals(2, JOOX.freeze($(xmlNamespacesDocument).namespace("root-ns", "http://www.example.com/root/ns")).xpath("//root-ns:node").size());
+
+        // Frozen documents cannot be modified
+        try {
+            frozen.find("book").attr("id", "5");
+            fail();
+        }
+        catch (DOMException expected) {
+            assertEquals(DOMException.NO_MODIFICATION_ALLOWED_ERR, expected.code);
+        }
+
+        try {
+            frozen.find("books").append("<book/>");
+            fail();
+        }
+        catch (DOMException expected) {}
+
+        assertEquals($.find("book").ids(), frozen.find("book").ids());
+
+        // Frozen documents can be queried concurrently
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<List<String>>> futures = new ArrayList<>();
+
+            for (int i = 0; i < 16; i++)
+                futures.add(executor.submit(() -> frozen.find("book").xpath("authors/author").texts()));
+
+            for (Future<List<String>> future : futures)
+                assertEquals($.find("book").xpath("authors/author").texts(), future.get());
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
     @Test
     public void testUnmarshal() throws Exception {
         Match match = $("customer",
@@ -1918,6 +2832,83 @@ public class JOOXTest {
             $.find("record2").attr("sql-time", java.sql.Time.class));
     }
 
+    @Test
+    public void testConvert() throws Exception {
+
+        // Numbers are converted like BigDecimal converts them
+        assertEquals(Integer.valueOf(42), JOOX.convert("42", Integer.class));
+        assertEquals(Integer.valueOf(-42), JOOX.convert("-42", Integer.class));
+        assertEquals(Integer.valueOf(42), JOOX.convert("+42", Integer.class));
+        assertEquals(Integer.valueOf(1), JOOX.convert("1.9", Integer.class));
+        assertEquals(Integer.valueOf(1000), JOOX.convert("1e3", Integer.class));
+        assertEquals(Integer.valueOf(new BigDecimal("3000000000").intValue()), JOOX.convert("3000000000", Integer.class));
+        assertEquals(Byte.valueOf(new BigDecimal("300").byteValue()), JOOX.convert("300", Byte.class));
+        assertEquals(Short.valueOf((short) 12), JOOX.convert("12", short.class));
+        assertEquals(Long.valueOf(Long.MAX_VALUE), JOOX.convert(String.valueOf(Long.MAX_VALUE), Long.class));
+        assertEquals(Long.valueOf(Long.MIN_VALUE), JOOX.convert(String.valueOf(Long.MIN_VALUE), long.class));
+        assertEquals(new BigInteger("123456789012345678901234567890"), JOOX.convert("123456789012345678901234567890", BigInteger.class));
+        assertEquals(new BigDecimal("1.50"), JOOX.convert("1.50", BigDecimal.class));
+        assertEquals(Double.valueOf(1.5), JOOX.convert(" 1.5", Double.class));
+        assertEquals(Float.valueOf(Float.NaN), JOOX.convert("NaN", Float.class));
+
+        // Illegal values
+        for (String value : asList("", " 1", "1 ", "-", ".", "1e", "1.2.3", "abc", "1e99999999999"))
+            assertNull(value, JOOX.convert(value, Integer.class));
+
+        assertNull(JOOX.convert("abc", BigDecimal.class));
+        assertNull(JOOX.convert("abc", Double.class));
+        assertNull(JOOX.convert("1.5x", Float.class));
+        assertEquals(Integer.valueOf(0), JOOX.convert("abc", int.class));
+        assertEquals(Integer.valueOf(0), JOOX.convert((String) null, int.class));
+        assertEquals(Double.valueOf(0.0), JOOX.convert("abc", double.class));
+        assertNull(JOOX.convert((String) null, Integer.class));
+
+        // Booleans
+        for (String value : asList("1", "y", "Y", "yes", "true", "TRUE", "on", "Enabled"))
+            assertEquals(value, Boolean.TRUE, JOOX.convert(value, Boolean.class));
+        for (String value : asList("0", "n", "N", "no", "false", "False", "off", "DISABLED"))
+            assertEquals(value, Boolean.FALSE, JOOX.convert(value, Boolean.class));
+
+        assertNull(JOOX.convert("maybe", Boolean.class));
+        assertEquals(Boolean.FALSE, JOOX.convert("maybe", boolean.class));
+
+        // Arrays and lists
+        assertEquals(asList(1, 2, 3), asList(JOOX.convert("1, 2;3", Integer[].class)));
+        assertEquals(asList(1, null, 3), JOOX.convert(asList("1", "x", "3"), Integer.class));
+        assertEquals(asList(1, 2, 3, 4, 1, 3, 1, 2), $.find("book").attrs("id", Integer.class));
+
+        // Unsupported types
+        assertNull(JOOX.convert("7d0b6d3c-8b3f-4c07-9f4e-0cb1b3e1f1a2", java.util.UUID.class));
+
+        // Registered converters
+        try {
+            JOOX.converter(java.util.UUID.class, java.util.UUID::fromString);
+            JOOX.converter(Integer.class, value -> value.length());
+
+            assertEquals(java.util.UUID.fromString("7d0b6d3c-8b3f-4c07-9f4e-0cb1b3e1f1a2"),
+                JOOX.convert("7d0b6d3c-8b3f-4c07-9f4e-0cb1b3e1f1a2", java.util.UUID.class));
+            assertNull(JOOX.convert("not-a-uuid", java.util.UUID.class));
+            assertEquals(asList(null, null), $.find("book").eq(0, 1).ids(java.util.UUID.class));
+            assertEquals(Integer.valueOf(3), JOOX.convert("abc", Integer.class));
+            assertEquals(asList(1, 1, 1, 1), $.find("book").eq(0, 1, 2, 3).ids(Integer.class));
+            assertEquals(asList(3, 1), asList(JOOX.convert("abc d", Integer[].class)));
+            assertEquals(Integer.valueOf(0), JOOX.convert("abc", int.class));
+        }
+        finally {
+            JOOX.converter(java.util.UUID.class, null);
+            JOOX.converter(Integer.class, null);
+        }
+
+        assertNull(JOOX.convert("7d0b6d3c-8b3f-4c07-9f4e-0cb1b3e1f1a2", java.util.UUID.class));
+        assertEquals(Integer.valueOf(42), JOOX.convert("42", Integer.class));
+
+        try {
+            JOOX.converter(int.class, value -> 1);
+            fail();
+        }
+        catch (IllegalArgumentException expected) {}
+    }
+
     private Customer getCustomer() {
         Customer c = new Customer();
 
@@ -1977,6 +2968,8 @@ public class JOOXTest {
         assertEquals(8, $.find().filter(JOOX.namespacePrefix("")).size());
         assertEquals(4, $.find().filter(JOOX.namespacePrefix("ns")).size());
         assertEquals(2, $.find().filter(JOOX.namespacePrefix("xx")).size());
+        assertEquals(0, $.find().filter(JOOX.namespacePrefix("n")).size());
+        assertEquals(0, $.find().filter(JOOX.namespacePrefix("nsx")).size());
 
         assertEquals(2, $.find().filter(JOOX.namespaceURI("http://www.example.com/root")).size());
         assertEquals(2, $.find().filter(JOOX.namespaceURI("http://www.example.com/root/ns")).size());
@@ -2023,6 +3016,9 @@ public class JOOXTest {
         assertEquals(2, $.find("node").filter(JOOX.attr("a2", "ns:value")).size());
         assertEquals(1, $.find("node").filter(JOOX.attr("a3")).size());
         assertEquals(1, $.find("node").filter(JOOX.attr("a3", "value")).size());
+        assertEquals(0, $.find("node").filter(JOOX.attr("2")).size());
+        assertEquals(0, $.find("node").filter(JOOX.attr("s:a2")).size());
+        assertEquals(2, $.find("node").filter(JOOX.matchAttr("a2", "ns:.*")).size());
         assertEquals(asList("value", "value"), $.child("node").find().attrs("a1"));
         assertEquals(asList("ns:value", "ns:value"), $.child("node").find().attrs("a2"));
 
@@ -2137,6 +3133,52 @@ public class JOOXTest {
         assertEquals(xml, "<tag2>éâ</tag2>", $(xml).content());
     }
 
+    @Test
+    public void testBuilderStatistics() {
+        CacheStatistics before = JOOX.builderStatistics();
+
+        for (int i = 0; i < 10; i++)
+            assertEquals("<test/>", $("<test/>").toString());
+
+        CacheStatistics after = JOOX.builderStatistics();
+        assertTrue(after.hits() + after.misses() >= before.hits() + before.misses() + 10);
+        assertTrue(after.hits() > before.hits());
+        assertTrue(after.hitRate() >= 0.0 && after.hitRate() <= 1.0);
+    }
+
+    @Test
+    public void testStream() throws Exception {
+        try (Stream<Match> books = JOOX.stream(new ByteArrayInputStream(xmlExampleString.getBytes()), "library > books book")) {
+            List<Match> list = books.collect(Collectors.toList());
+
+            assertEquals(8, list.size());
+            assertEquals($.find("book").ids(), list.stream().map(Match::id).collect(Collectors.toList()));
+            assertEquals($.find("book").eq(0).toString(), list.get(0).toString());
+            assertEquals(asList("1984"), list.get(0).find("name").texts());
+        }
+
+        // Nested matches are part of their enclosing record
+        try (Stream<Match> all = JOOX.stream(new ByteArrayInputStream(xmlExampleString.getBytes()), "books *")) {
+            assertEquals(asList("book", "book", "book", "book", "book", "book", "book", "book"),
+                all.map(Match::tag).collect(Collectors.toList()));
+        }
+
+        // Namespaces declared on ancestors are kept
+        try (Stream<Match> nodes = JOOX.stream(new ByteArrayInputStream(xmlNamespacesString.getBytes()), "root > nested1 > node")) {
+            Match node = nodes.findFirst().get();
+
+            assertEquals("http://www.example.com/nested", node.namespaceURI());
+            assertEquals("http://www.example.com/nested/ns", node.children().eq(1).namespaceURI());
+            assertEquals("ns:value", node.children().get(0).getAttributeNS("http://www.example.com/nested/ns", "a3"));
+        }
+
+        try {
+            JOOX.stream(new ByteArrayInputStream(xmlExampleString.getBytes()), "book[id='1']");
+            fail();
+        }
+        catch (IllegalArgumentException expected) {}
+    }
+
     @Test
     public void testTrailingNewlines() {
         assertEquals("<test/>", $("\n<test/>\n").toString());